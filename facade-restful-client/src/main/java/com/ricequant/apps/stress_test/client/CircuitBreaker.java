@@ -0,0 +1,83 @@
+package com.ricequant.apps.stress_test.client;
+
+/**
+ * Stops sending requests of a command after too many consecutive failures, so that an overloaded facade is not kept
+ * busy by retries. After the open period, a single request is let through as a probe: the breaker closes if it
+ * succeeds, or stays open for another period if it fails.
+ *
+ * @author chenfeng
+ */
+class CircuitBreaker {
+
+  private final int iFailureThreshold;
+
+  private final long iOpenNanos;
+
+  private int iConsecutiveFailures = 0;
+
+  private boolean iOpen = false;
+
+  private boolean iProbing = false;
+
+  private long iOpenedNanos;
+
+  private CircuitBreaker(int failureThreshold, long openNanos) {
+    iFailureThreshold = failureThreshold;
+    iOpenNanos = openNanos;
+  }
+
+  /**
+   * Creates a breaker
+   *
+   * @param failureThreshold
+   *         number of consecutive failures to open the breaker, 0 or negative to never open it
+   * @param openMillis
+   *         how long the breaker stays open before letting a probe through
+   *
+   * @return the breaker
+   */
+  static CircuitBreaker create(int failureThreshold, long openMillis) {
+    return new CircuitBreaker(failureThreshold, openMillis * 1000000);
+  }
+
+  /**
+   * Ask for permission to send a request
+   *
+   * @return true if the request may be sent, false if the breaker is open
+   */
+  synchronized boolean tryAcquire() {
+    if (!iOpen)
+      return true;
+
+    if (iProbing || System.nanoTime() - iOpenedNanos < iOpenNanos)
+      return false;
+
+    iProbing = true;
+    return true;
+  }
+
+  /**
+   * Report a successful request, which closes the breaker
+   */
+  synchronized void onSuccess() {
+    iConsecutiveFailures = 0;
+    iOpen = false;
+    iProbing = false;
+  }
+
+  /**
+   * Report a failed request
+   *
+   * @return true if the failure opened the breaker
+   */
+  synchronized boolean onFailure() {
+    iConsecutiveFailures++;
+    if (iFailureThreshold <= 0 || (!iProbing && (iOpen || iConsecutiveFailures < iFailureThreshold)))
+      return false;
+
+    iProbing = false;
+    iOpen = true;
+    iOpenedNanos = System.nanoTime();
+    return true;
+  }
+}
@@ -0,0 +1,145 @@
+package com.ricequant.apps.stress_test.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link CommandMetrics} of all commands sent by a {@link FacadeClient}. Each of them is also registered as an
+ * MXBean named like "com.ricequant.apps.stress_test:type=FacadeClient,client=1,command=pull", so that they can be
+ * watched with jconsole or any JMX collector while the test is running.
+ *
+ * @author chenfeng
+ */
+public class ClientMetrics {
+
+  private static final String cDomain = "com.ricequant.apps.stress_test";
+
+  private static final AtomicInteger cNextClientID = new AtomicInteger(1);
+
+  private final int iClientID = cNextClientID.getAndIncrement();
+
+  private final Map<String, CommandMetrics> iCommands = new ConcurrentSkipListMap<>();
+
+  private final Map<String, ObjectName> iRegistered = new ConcurrentHashMap<>();
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private final PoolMetrics iPool;
+
+  private final RunMetrics iRuns = new RunMetrics();
+
+  private ObjectName iPoolName;
+
+  ClientMetrics(int maxInFlight) {
+    iPool = new PoolMetrics(maxInFlight);
+    try {
+      ObjectName name = new ObjectName(cDomain + ":type=FacadeClient,client=" + iClientID + ",name=pool");
+      ManagementFactory.getPlatformMBeanServer().registerMBean(iPool, name);
+      iPoolName = name;
+    }
+    catch (JMException e) {
+      iLogger.warn("Unable to register metrics of the connection pool to JMX", e);
+    }
+  }
+
+  /**
+   * The occupancy of the connection pool
+   *
+   * @return the metrics
+   */
+  public PoolMetrics pool() {
+    return iPool;
+  }
+
+  /**
+   * The runs played with the client which have not finished yet
+   *
+   * @return the metrics
+   */
+  public RunMetrics runs() {
+    return iRuns;
+  }
+
+  /**
+   * The metrics of a command, created on first use
+   *
+   * @param command
+   *         the command, like "play" or "pull"
+   *
+   * @return the metrics
+   */
+  public CommandMetrics command(String command) {
+    CommandMetrics metrics = iCommands.get(command);
+    if (metrics != null)
+      return metrics;
+
+    metrics = iCommands.computeIfAbsent(command, CommandMetrics::new);
+    register(command, metrics);
+    return metrics;
+  }
+
+  private synchronized void register(String command, CommandMetrics metrics) {
+    if (iRegistered.containsKey(command))
+      return;
+
+    try {
+      ObjectName name = new ObjectName(
+              cDomain + ":type=FacadeClient,client=" + iClientID + ",command=" + ObjectName.quote(command));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+      iRegistered.put(command, name);
+    }
+    catch (JMException e) {
+      iLogger.warn("Unable to register metrics of command {} to JMX", command, e);
+    }
+  }
+
+  /**
+   * Remove all MXBeans of this client from the platform MBean server
+   */
+  synchronized void unregister() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (ObjectName name : iRegistered.values()) {
+      try {
+        server.unregisterMBean(name);
+      }
+      catch (JMException e) {
+        iLogger.warn("Unable to unregister {} from JMX", name, e);
+      }
+    }
+    iRegistered.clear();
+
+    if (iPoolName != null) {
+      try {
+        server.unregisterMBean(iPoolName);
+      }
+      catch (JMException e) {
+        iLogger.warn("Unable to unregister {} from JMX", iPoolName, e);
+      }
+      iPoolName = null;
+    }
+  }
+
+  /**
+   * Summary of the connection pool, the runs and all commands, one per line
+   *
+   * @return the summary string
+   */
+  @Override
+  public String toString() {
+    StringBuilder summary = new StringBuilder();
+    summary.append(System.lineSeparator()).append('\t').append("pool: ").append(iPool);
+    summary.append(System.lineSeparator()).append('\t').append("runs: ").append(iRuns);
+    for (Map.Entry<String, CommandMetrics> entry : iCommands.entrySet())
+      summary.append(System.lineSeparator()).append('\t').append(entry.getKey()).append(": ").append(entry.getValue());
+    return summary.toString();
+  }
+}
@@ -0,0 +1,195 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counters of the HTTP requests of one command sent by a {@link FacadeClient}. Each request goes through
+ * three phases, all measured in microseconds:
+ * <ul>
+ * <li>connect wait: from issuing the request until a pooled connection is free to send it</li>
+ * <li>time to first byte: from sending the request until the response head arrives, including opening a new
+ * connection if the pool has none idle, and the time the facade takes to process the command</li>
+ * <li>body transfer: from the response head until the whole response body is received</li>
+ * </ul>
+ * Recording never blocks and never allocates, so it can stay on for the whole test.
+ *
+ * @author chenfeng
+ */
+public class CommandMetrics implements CommandMetricsMXBean {
+
+  private static final long cHighestTrackableMicros = TimeUnit.MINUTES.toMicros(10);
+
+  private final String iCommand;
+
+  private final LongAdder iRequests = new LongAdder();
+
+  private final LongAdder iFailures = new LongAdder();
+
+  private final LongAdder iRetries = new LongAdder();
+
+  private final LongAdder iGiveUps = new LongAdder();
+
+  private final LongAdder iBreakerRejections = new LongAdder();
+
+  private final LongAdder iBreakerTrips = new LongAdder();
+
+  private final LongAdder iBytesOut = new LongAdder();
+
+  private final LongAdder iBytesIn = new LongAdder();
+
+  private final LatencyHistogram iConnectWait = LatencyHistogram.create(cHighestTrackableMicros);
+
+  private final LatencyHistogram iTimeToFirstByte = LatencyHistogram.create(cHighestTrackableMicros);
+
+  private final LatencyHistogram iBodyTransfer = LatencyHistogram.create(cHighestTrackableMicros);
+
+  CommandMetrics(String command) {
+    iCommand = command;
+  }
+
+  void recordSent(long connectWaitNanos, long bytesOut) {
+    iRequests.increment();
+    iBytesOut.add(bytesOut);
+    iConnectWait.record(TimeUnit.NANOSECONDS.toMicros(connectWaitNanos));
+  }
+
+  void recordFirstByte(long timeToFirstByteNanos) {
+    iTimeToFirstByte.record(TimeUnit.NANOSECONDS.toMicros(timeToFirstByteNanos));
+  }
+
+  void recordBody(long bodyTransferNanos, long bytesIn) {
+    iBytesIn.add(bytesIn);
+    iBodyTransfer.record(TimeUnit.NANOSECONDS.toMicros(bodyTransferNanos));
+  }
+
+  void recordFailure() {
+    iFailures.increment();
+  }
+
+  void recordRetry() {
+    iRetries.increment();
+  }
+
+  void recordGiveUp() {
+    iGiveUps.increment();
+  }
+
+  void recordBreakerRejection() {
+    iBreakerRejections.increment();
+  }
+
+  void recordBreakerTrip() {
+    iBreakerTrips.increment();
+  }
+
+  /**
+   * Distribution of the time waiting for a free pooled connection
+   *
+   * @return the histogram in microseconds
+   */
+  public LatencyHistogram connectWait() {
+    return iConnectWait;
+  }
+
+  /**
+   * Distribution of the time from sending a request until the response head arrives
+   *
+   * @return the histogram in microseconds
+   */
+  public LatencyHistogram timeToFirstByte() {
+    return iTimeToFirstByte;
+  }
+
+  /**
+   * Distribution of the time receiving response bodies
+   *
+   * @return the histogram in microseconds
+   */
+  public LatencyHistogram bodyTransfer() {
+    return iBodyTransfer;
+  }
+
+  @Override
+  public String getCommand() {
+    return iCommand;
+  }
+
+  @Override
+  public long getRequests() {
+    return iRequests.sum();
+  }
+
+  @Override
+  public long getFailures() {
+    return iFailures.sum();
+  }
+
+  @Override
+  public long getRetries() {
+    return iRetries.sum();
+  }
+
+  @Override
+  public long getGiveUps() {
+    return iGiveUps.sum();
+  }
+
+  @Override
+  public long getBreakerRejections() {
+    return iBreakerRejections.sum();
+  }
+
+  @Override
+  public long getBreakerTrips() {
+    return iBreakerTrips.sum();
+  }
+
+  @Override
+  public long getBytesOut() {
+    return iBytesOut.sum();
+  }
+
+  @Override
+  public long getBytesIn() {
+    return iBytesIn.sum();
+  }
+
+  @Override
+  public double getConnectWaitMeanMicros() {
+    return iConnectWait.mean();
+  }
+
+  @Override
+  public long getConnectWaitP99Micros() {
+    return iConnectWait.percentile(0.99);
+  }
+
+  @Override
+  public double getTimeToFirstByteMeanMicros() {
+    return iTimeToFirstByte.mean();
+  }
+
+  @Override
+  public long getTimeToFirstByteP99Micros() {
+    return iTimeToFirstByte.percentile(0.99);
+  }
+
+  @Override
+  public double getBodyTransferMeanMicros() {
+    return iBodyTransfer.mean();
+  }
+
+  @Override
+  public long getBodyTransferP99Micros() {
+    return iBodyTransfer.percentile(0.99);
+  }
+
+  @Override
+  public String toString() {
+    return "{requests:" + getRequests() + ",failures:" + getFailures() + ",retries:" + getRetries() + ",give-ups:"
+            + getGiveUps() + ",breaker-rejections:" + getBreakerRejections() + ",breaker-trips:" + getBreakerTrips()
+            + ",bytes-out:" + getBytesOut() + ",bytes-in:" + getBytesIn() + ",connect-wait-us:" + iConnectWait
+            + ",ttfb-us:" + iTimeToFirstByte + ",body-us:" + iBodyTransfer + "}";
+  }
+}
@@ -0,0 +1,39 @@
+package com.ricequant.apps.stress_test.client;
+
+/**
+ * The JMX view of {@link CommandMetrics}. All times are in microseconds and cumulative since the client was created.
+ *
+ * @author chenfeng
+ */
+public interface CommandMetricsMXBean {
+
+  String getCommand();
+
+  long getRequests();
+
+  long getFailures();
+
+  long getRetries();
+
+  long getGiveUps();
+
+  long getBreakerRejections();
+
+  long getBreakerTrips();
+
+  long getBytesOut();
+
+  long getBytesIn();
+
+  double getConnectWaitMeanMicros();
+
+  long getConnectWaitP99Micros();
+
+  double getTimeToFirstByteMeanMicros();
+
+  long getTimeToFirstByteP99Micros();
+
+  double getBodyTransferMeanMicros();
+
+  long getBodyTransferP99Micros();
+}
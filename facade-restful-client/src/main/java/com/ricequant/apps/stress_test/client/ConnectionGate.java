@@ -0,0 +1,79 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Limits the requests in flight to the size of the connection pool, so that a request which has to wait for a free
+ * connection waits here, where the wait can be measured, instead of inside the pool of the HTTP client
+ *
+ * @author chenfeng
+ */
+class ConnectionGate {
+
+  private final int iMaxInFlight;
+
+  private final Queue<Runnable> iWaiting = new ArrayDeque<>();
+
+  private final PoolMetrics iMetrics;
+
+  private int iInFlight = 0;
+
+  private ConnectionGate(int maxInFlight, PoolMetrics metrics) {
+    iMaxInFlight = maxInFlight;
+    iMetrics = metrics;
+  }
+
+  /**
+   * Creates a gate
+   *
+   * @param maxInFlight
+   *         the maximum number of requests in flight, usually the maximum pool size of the HTTP client
+   * @param metrics
+   *         the metrics to record the occupancy to, created with the same maximum number of requests in flight
+   *
+   * @return the gate
+   */
+  static ConnectionGate create(int maxInFlight, PoolMetrics metrics) {
+    return new ConnectionGate(Math.max(1, maxInFlight), metrics);
+  }
+
+  /**
+   * Send a request as soon as a connection is free
+   *
+   * @param send
+   *         the task which sends the request, it must not block and {@link #release()} must be called once when the
+   *         request is done
+   */
+  void acquire(Runnable send) {
+    synchronized (this) {
+      if (iInFlight >= iMaxInFlight) {
+        iWaiting.add(send);
+        iMetrics.recordAcquire(iInFlight, iWaiting.size(), true);
+        return;
+      }
+      iInFlight++;
+      iMetrics.recordAcquire(iInFlight, iWaiting.size(), false);
+    }
+
+    send.run();
+  }
+
+  /**
+   * Free the connection of a finished request, the next waiting request, if any, takes it over
+   */
+  void release() {
+    Runnable next;
+    synchronized (this) {
+      next = iWaiting.poll();
+      if (next == null) {
+        iInFlight--;
+        iMetrics.update(iInFlight, 0);
+        return;
+      }
+      iMetrics.update(iInFlight, iWaiting.size());
+    }
+
+    next.run();
+  }
+}
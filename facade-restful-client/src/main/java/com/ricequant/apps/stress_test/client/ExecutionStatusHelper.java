@@ -16,7 +16,24 @@ public class ExecutionStatusHelper {
   }
 
   public static boolean isError(String status) {
-    return "AbnormalExit".equals(status);
+    return "AbnormalExit".equals(status) || isClientAbort(status);
+  }
+
+  /**
+   * See if the run was abandoned because the client gave up talking to the facade, after exhausting its retries or
+   * being rejected by an open circuit breaker. Such runs are also errors.
+   *
+   * @param status
+   *         the lifecycle status
+   *
+   * @return true if abandoned by the client
+   */
+  public static boolean isClientAbort(String status) {
+    return "ClientAbortExit".equals(status);
+  }
+
+  public static boolean isQueued(String status) {
+    return status == null || "Queued".equals(status) || "Pending".equals(status);
   }
 
   public static boolean isExit(String status) {
@@ -1,14 +1,36 @@
 package com.ricequant.apps.stress_test.client;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.CaseInsensitiveHeaders;
 import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
 import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * This is the client to the facade Restful API. It only serves the purpose of stress testing.
@@ -17,8 +39,14 @@ import java.util.function.Consumer;
  */
 public class FacadeClient {
 
+  private static final String cSessionTokenHeader = "X-Session-Token";
+
+  private final Vertx iVertx;
+
   private final HttpClient iHttpClient;
 
+  private final HttpClient iWebSocketClient;
+
   private final URL iUrl;
 
   private final Logger iLogger = LoggerFactory.getLogger(getClass());
@@ -29,12 +57,69 @@ public class FacadeClient {
 
   private final int iPort;
 
-  private FacadeClient(URL url, String username, String password) {
-    iHttpClient = Vertx.vertx().createHttpClient(new HttpClientOptions().setMaxPoolSize(300));
+  private final FeedsDecoder iFeedsDecoder;
+
+  private final RequestEncoder iRequestEncoder;
+
+  private final FeedsTransport iFeedsTransport;
+
+  private final String iSubscribePath;
+
+  private final FeedsBatcher iFeedsBatcher;
+
+  private final ConnectionGate iConnectionGate;
+
+  private final ClientMetrics iMetrics;
+
+  private final RetryPolicy iRetryPolicy;
+
+  private final long iRequestTimeoutMillis;
+
+  private final Map<String, CircuitBreaker> iBreakers = new ConcurrentHashMap<>();
+
+  private final int iBreakerFailureThreshold;
+
+  private final long iBreakerOpenMillis;
+
+  private final SessionAuthenticator iSession;
+
+  private final boolean iStatusOnlyPulls;
+
+  private FacadeClient(URL url, String username, String password, FacadeClientOptions options) {
+    VertxOptions vertxOptions = new VertxOptions();
+    if (options.eventLoops() > 0)
+      vertxOptions.setEventLoopPoolSize(options.eventLoops());
+    iVertx = Vertx.vertx(vertxOptions);
+    iHttpClient = iVertx.createHttpClient(
+            new HttpClientOptions().setMaxPoolSize(options.maxPoolSize()).setKeepAlive(options.keepAlive())
+                    .setPipelining(options.pipelining()).setTryUseCompression(options.compression()));
+    // connections of closed WebSockets must not be pooled together with the ones of plain requests
+    iWebSocketClient = iVertx.createHttpClient(
+            new HttpClientOptions().setMaxPoolSize(options.maxPoolSize()).setTryUseCompression(options.compression()));
+    iMetrics = new ClientMetrics(options.maxInFlightRequests());
+    iConnectionGate = ConnectionGate.create(options.maxInFlightRequests(), iMetrics.pool());
     iPort = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
     iUrl = url;
     iUsername = username;
     iPassword = password;
+    iFeedsDecoder = FeedsDecoder.create(options.retainFeeds(), options.columnarFeeds());
+    iSession = options.sessionAuth() ? SessionAuthenticator.create(this) : null;
+    iRequestEncoder = RequestEncoder.create(authenticatingMessage());
+    iSubscribePath = options.subscribePath() == null ? url.getPath() + "/subscribe" : options.subscribePath();
+    iRetryPolicy = RetryPolicy.create(options);
+    iRequestTimeoutMillis = options.requestTimeoutMillis();
+    iBreakerFailureThreshold = options.breakerFailureThreshold();
+    iBreakerOpenMillis = options.breakerOpenMillis();
+    iStatusOnlyPulls = options.statusOnlyPulls();
+
+    iFeedsBatcher = options.batchPullWindowMillis() > 0 ? FeedsBatcher
+            .create(this, iRetryPolicy, options.batchPullWindowMillis(), options.maxBatchPullSize()) : null;
+
+    FeedsTransport polling = PollingFeedsTransport.create(this, PollScheduler.create(options));
+    if (options.feedsTransport() == FacadeClientOptions.FeedsTransportType.WEBSOCKET)
+      iFeedsTransport = WebSocketFeedsTransport.create(this, polling);
+    else
+      iFeedsTransport = polling;
   }
 
   /**
@@ -50,7 +135,25 @@ public class FacadeClient {
    * @return the instance of the client
    */
   public static FacadeClient create(URL url, String username, String password) {
-    return new FacadeClient(url, username, password);
+    return create(url, username, password, new FacadeClientOptions());
+  }
+
+  /**
+   * Creates an instance of FacadeClient who communicates with the url specified.
+   *
+   * @param url
+   *         the url to connect to, like new URL("http://test.ricequant.com/backend-restful")
+   * @param username
+   *         the user name distributed by Ricequant
+   * @param password
+   *         the password associated with the user name, also distributed by Ricequant
+   * @param options
+   *         options to tune the client
+   *
+   * @return the instance of the client
+   */
+  public static FacadeClient create(URL url, String username, String password, FacadeClientOptions options) {
+    return new FacadeClient(url, username, password, options);
   }
 
   /**
@@ -59,23 +162,19 @@ public class FacadeClient {
    * @param playParams
    *         parameters needed to run a strategy
    * @param resultAcceptor
-   *         callback to receive the responses.
+   *         callback to receive the responses. If the client gives up sending the command, the response is a failure
+   *         with {@link PlayResponse#isClientFailure()} being true
    */
   public void play(PlayParams playParams, Consumer<PlayResponse> resultAcceptor) {
-    JsonObject message = authenticatingMessage();
-    message.put("command", "play");
-    playParams.appendToJsonObject(message);
-    iHttpClient.post(iPort, iUrl.getHost(), iUrl.getPath(), rsp -> rsp.bodyHandler(buffer -> {
+    // a failed play may still have started the run, so it is not sent again to avoid running a backtest nobody stops
+    post("play", iRequestEncoder.play(playParams), false, buffer -> {
       if (iLogger.isDebugEnabled())
-        iLogger.debug("<- " + buffer);
+        iLogger.debug("<- {}", buffer);
 
       JsonObject ret = buffer.toJsonObject();
       resultAcceptor.accept(new PlayResponse(ret));
-    })).exceptionHandler(e -> {
-      if (iLogger.isDebugEnabled())
-        iLogger.debug("Error sending play command", e);
-      play(playParams, resultAcceptor);
-    }).end(message.toString(), "utf-8");
+      return true;
+    }, e -> resultAcceptor.accept(PlayResponse.clientFailure(e)));
   }
 
   /**
@@ -87,65 +186,153 @@ public class FacadeClient {
    *         callback to receive the feeds
    */
   public void getFeeds(GetFeedsRequest request, Consumer<FeedsReturns> feedsAcceptor) {
-    JsonObject message = authenticatingMessage();
-    message.put("command", "pull");
-    message.put("feeds-params", request.toJsonObject());
-
-    iHttpClient.post(iPort, iUrl.getHost(), iUrl.getPath(), rsp -> rsp.bodyHandler(buffer -> {
-      if (iLogger.isDebugEnabled())
-        iLogger.debug("<- " + buffer);
+    getFeeds(request, feedsAcceptor,
+            e -> iLogger.error("Gave up getting feeds of run-id <{}>", request.runID(), e));
+  }
 
-      JsonObject ret = buffer.toJsonObject();
-      Integer statusCode = ret.getInteger("status");
-      if (statusCode == null || statusCode != 0) {
-        iLogger.error("Error getting results from server: " + buffer);
-        return;
+  /**
+   * Get feeds of a specific run-id in certain ranges asynchronously
+   *
+   * @param request
+   *         the request object
+   * @param feedsAcceptor
+   *         callback to receive the feeds
+   * @param onFailure
+   *         callback when the client gives up getting the feeds, after the retries configured in
+   *         {@link FacadeClientOptions}
+   */
+  public void getFeeds(GetFeedsRequest request, Consumer<FeedsReturns> feedsAcceptor, Consumer<Throwable> onFailure) {
+    post("pull", iRequestEncoder.pull(request), buffer -> {
+      if (iLogger.isTraceEnabled())
+        iLogger.trace("<- {}", buffer);
+      else if (iLogger.isDebugEnabled())
+        iLogger.debug("<- pull of run-id <{}>: {} bytes", request.runID(), buffer.length());
+
+      FeedsReturns feeds;
+      try {
+        feeds = iFeedsDecoder.decode(buffer, request);
+      }
+      catch (IOException e) {
+        iLogger.error("Error decoding results from server: {}", buffer, e);
+        return false;
       }
 
-      JsonObject results = ret.getJsonObject("results");
-      FeedsReturns feeds = FeedsReturns.create(request);
-      if (results.containsKey("status"))
-        feeds.status(results.getJsonObject("status"));
-
-      if (results.containsKey("portfolios"))
-        feeds.portfolios(FeedsReturn.fromSlice(results.getJsonObject("portfolios"), "Portfolios"));
-
-      if (results.containsKey("benchmark-portfolios"))
-        feeds.benchmarkPortfolios(FeedsReturn.fromSlice(results.getJsonObject("benchmark-portfolios"), "Portfolios"));
-
-      if (results.containsKey("positions"))
-        feeds.positions(FeedsReturn.fromSlice(results.getJsonObject("positions"), "Positions"));
+      if (feeds == null) {
+        iLogger.error("Error getting results from server: {}", buffer);
+        return false;
+      }
 
-      if (results.containsKey("risks"))
-        feeds.risks(FeedsReturn.fromSlice(results.getJsonObject("risks"), "PortfolioRisks"));
+      feedsAcceptor.accept(feeds);
+      return true;
+    }, onFailure);
 
-      if (results.containsKey("trades"))
-        feeds.trades(FeedsReturn.fromSlice(results.getJsonObject("trades"), "Trades"));
+    if (iLogger.isDebugEnabled())
+      iLogger.debug("-> {}", request);
+  }
 
-      if (results.containsKey("orders"))
-        feeds.orders(FeedsReturn.fromSlice(results.getJsonObject("orders"), "Orders"));
+  /**
+   * Get feeds of several runs with a single request asynchronously
+   *
+   * @param requests
+   *         the requests, at most one for each run-id
+   * @param feedsAcceptor
+   *         callback to receive the feeds, called once for each run the server returns successfully
+   */
+  public void getFeedsBatch(Collection<GetFeedsRequest> requests, Consumer<FeedsReturns> feedsAcceptor) {
+    getFeedsBatch(requests, feedsAcceptor,
+            e -> iLogger.error("Gave up getting feeds of a batch of {} runs", requests.size(), e));
+  }
 
-      if (results.containsKey("plots"))
-        feeds.plots(FeedsReturn.fromSlice(results.getJsonObject("plots"), "Plots"));
+  /**
+   * Get feeds of several runs with a single request asynchronously
+   *
+   * @param requests
+   *         the requests, at most one for each run-id
+   * @param feedsAcceptor
+   *         callback to receive the feeds, called once for each run the server returns successfully
+   * @param onFailure
+   *         callback when the client gives up getting the batch, after the retries configured in
+   *         {@link FacadeClientOptions}
+   */
+  public void getFeedsBatch(Collection<GetFeedsRequest> requests, Consumer<FeedsReturns> feedsAcceptor,
+          Consumer<Throwable> onFailure) {
+    getFeedsBatch(requests, feedsAcceptor, request -> {
+    }, onFailure);
+  }
 
-      if (results.containsKey("logs"))
-        feeds.logs(FeedsReturn.fromSlice(results.getJsonObject("logs"), "Logs"));
+  /**
+   * Get feeds of several runs with a single request asynchronously
+   *
+   * @param requests
+   *         the requests, at most one for each run-id
+   * @param feedsAcceptor
+   *         callback to receive the feeds, called once for each run the server returns successfully
+   * @param onMissing
+   *         callback called once for each request whose run is missing from the response of the server, after the
+   *         feeds of the other runs are handed to feedsAcceptor
+   * @param onFailure
+   *         callback when the client gives up getting the batch, after the retries configured in
+   *         {@link FacadeClientOptions}
+   */
+  public void getFeedsBatch(Collection<GetFeedsRequest> requests, Consumer<FeedsReturns> feedsAcceptor,
+          Consumer<GetFeedsRequest> onMissing, Consumer<Throwable> onFailure) {
+    Map<Long, GetFeedsRequest> requestsByRunID = new HashMap<>();
+    for (GetFeedsRequest request : requests)
+      requestsByRunID.put(request.runID(), request);
+
+    post("pull-batch", iRequestEncoder.pullBatch(requests), buffer -> {
+      if (iLogger.isTraceEnabled())
+        iLogger.trace("<- {}", buffer);
+      else if (iLogger.isDebugEnabled())
+        iLogger.debug("<- batch of {}: {} bytes", requestsByRunID.size(), buffer.length());
+
+      List<FeedsReturns> batch;
+      try {
+        batch = iFeedsDecoder.decodeBatch(buffer, requestsByRunID);
+      }
+      catch (IOException e) {
+        iLogger.error("Error decoding batch results from server: {}", buffer, e);
+        return false;
+      }
 
-      if (results.containsKey("portfolio-grids"))
-        feeds.portfolioGrids(FeedsReturn.fromFeeds(results.getJsonArray("portfolio-grids")));
+      if (batch == null) {
+        iLogger.error("Error getting batch results from server: {}", buffer);
+        return false;
+      }
 
-      if (results.containsKey("risk-grids"))
-        feeds.riskGrids(FeedsReturn.fromFeeds(results.getJsonArray("risk-grids")));
+      if (batch.size() < requestsByRunID.size())
+        iLogger.error("Error getting results of {} of {} runs from server: {}", requestsByRunID.size() - batch.size(),
+                requestsByRunID.size(), buffer);
 
-      feedsAcceptor.accept(feeds);
-    })).exceptionHandler(e -> {
-      if (iLogger.isDebugEnabled())
-        iLogger.debug("Error getting feeds", e);
-      getFeeds(request, feedsAcceptor);
-    }).end(message.toString(), "utf-8");
+      Map<Long, GetFeedsRequest> missing = new HashMap<>(requestsByRunID);
+      for (FeedsReturns feeds : batch) {
+        missing.remove(feeds.runID());
+        feedsAcceptor.accept(feeds);
+      }
+      for (GetFeedsRequest request : missing.values())
+        onMissing.accept(request);
+      return true;
+    }, onFailure);
 
     if (iLogger.isDebugEnabled())
-      iLogger.debug("-> " + request);
+      iLogger.debug("-> batch of {} {}", requestsByRunID.size(), requests);
+  }
+
+  /**
+   * Keep receiving feeds of a specific run-id through the feeds transport configured in {@link FacadeClientOptions}
+   *
+   * @param request
+   *         the request describing the feeds to receive and the indices to start with
+   * @param feedsAcceptor
+   *         callback to receive the feeds, returns true to keep receiving, false to stop
+   * @param onFailure
+   *         callback when the client gives up receiving feeds, no feeds will be delivered afterwards
+   *
+   * @return the subscription which can be canceled at any time
+   */
+  public FeedsSubscription subscribeFeeds(GetFeedsRequest request, Predicate<FeedsReturns> feedsAcceptor,
+          Consumer<Throwable> onFailure) {
+    return iFeedsTransport.subscribe(request, feedsAcceptor, onFailure);
   }
 
   /**
@@ -155,18 +342,13 @@ public class FacadeClient {
    *         the runID returned by the play method
    */
   public void stopStrategy(long runID) {
-    JsonObject message = authenticatingMessage();
-    message.put("command", "stop");
-    message.put("run-id", runID);
-
-    String messageString = message.toString();
-    iHttpClient.post(iPort, iUrl.getHost(), iUrl.getPath()).exceptionHandler(e -> {
+    post("stop", iRequestEncoder.stop(runID), buffer -> {
       if (iLogger.isDebugEnabled())
-        iLogger.debug("Error sending stop strategy command", e);
-      stopStrategy(runID);
-    }).end(messageString, "utf-8");
+        iLogger.debug("<- {}", buffer);
+      return true;
+    }, e -> iLogger.error("Gave up stopping strategy with run-id <{}>", runID, e));
     if (iLogger.isDebugEnabled())
-      iLogger.debug("-> " + messageString);
+      iLogger.debug("-> stop {}", runID);
   }
 
   /**
@@ -176,31 +358,204 @@ public class FacadeClient {
    *         callback when all strategies stopped
    */
   public void stopAllStrategies(Runnable onStopResponse) {
-    JsonObject message = authenticatingMessage();
-    message.put("command", "stop-all");
+    stopAllStrategies(onStopResponse, e -> iLogger.error("Gave up stopping all strategies", e));
+  }
 
-    String messageString = message.toString();
-    iHttpClient.post(iPort, iUrl.getHost(), iUrl.getPath(), rsp -> rsp.bodyHandler(buffer -> {
+  /**
+   * Kill all running strategies to form a clean environment
+   *
+   * @param onStopResponse
+   *         callback when all strategies stopped
+   * @param onFailure
+   *         callback when the client gives up stopping all strategies, after the retries configured in
+   *         {@link FacadeClientOptions}
+   */
+  public void stopAllStrategies(Runnable onStopResponse, Consumer<Throwable> onFailure) {
+    post("stop-all", iRequestEncoder.stopAll(), buffer -> {
       if (iLogger.isDebugEnabled())
-        iLogger.debug("<- " + buffer);
+        iLogger.debug("<- {}", buffer);
 
       JsonObject ret = buffer.toJsonObject();
       Integer statusCode = ret.getInteger("status");
       if (statusCode == null || statusCode != 0) {
-        iLogger.error("Getting error status from server: " + buffer);
-        iLogger.info("Retry stop all strategies...");
-        stopAllStrategies(onStopResponse);
-        return;
+        iLogger.error("Getting error status from server: {}", buffer);
+        return false;
       }
 
       onStopResponse.run();
-    })).exceptionHandler(e -> {
-      if (iLogger.isDebugEnabled())
-        iLogger.debug("Error sending stop all strategies command", e);
-      stopAllStrategies(onStopResponse);
-    }).end(messageString, "utf-8");
+      return true;
+    }, onFailure);
     if (iLogger.isDebugEnabled())
-      iLogger.debug("-> " + messageString);
+      iLogger.debug("-> stop-all");
+  }
+
+  // posts a command to the facade, retrying failed attempts as the retry policy allows. An attempt fails if the
+  // request fails or times out, the response is not 200, or the body handler rejects the body by returning false. The
+  // body is released once the command succeeds or is given up on
+  private void post(String command, ByteBuf body, Predicate<Buffer> bodyHandler, Consumer<Throwable> onGiveUp) {
+    post(command, body, true, bodyHandler, onGiveUp);
+  }
+
+  // as above, but a command which is not idempotent is only retried if its failed attempt was never written
+  private void post(String command, ByteBuf body, boolean idempotent, Predicate<Buffer> bodyHandler,
+          Consumer<Throwable> onGiveUp) {
+    send(new Exchange(command, body, idempotent, bodyHandler, onGiveUp, iSession != null));
+  }
+
+  // sends one attempt, with a session token if needed
+  private void send(Exchange exchange) {
+    if (!exchange.authenticated) {
+      send(exchange, null);
+      return;
+    }
+
+    iSession.withToken(token -> send(exchange, token), e -> retryOrGiveUp(exchange, e));
+  }
+
+  // sends one attempt once a pooled connection is free, and records the timings of each phase
+  private void send(Exchange exchange, String token) {
+    CommandMetrics metrics = exchange.metrics;
+    if (!exchange.breaker.tryAcquire()) {
+      metrics.recordBreakerRejection();
+      retryOrGiveUp(exchange, new IOException("Circuit breaker of command <" + exchange.command + "> is open"));
+      return;
+    }
+
+    long issuedNanos = System.nanoTime();
+    exchange.written = false;
+    iConnectionGate.acquire(() -> {
+      AtomicBoolean done = new AtomicBoolean(false);
+      Handler<Throwable> onFailure = e -> {
+        if (!done.compareAndSet(false, true))
+          return;
+
+        iConnectionGate.release();
+        // Vert.x does not tell when the request is on the wire, only a failure to connect proves it never was
+        exchange.written = !isConnectFailure(e);
+        onAttemptFailed(exchange, e);
+      };
+
+      long sentNanos = System.nanoTime();
+      metrics.recordSent(sentNanos - issuedNanos, exchange.body.readableBytes());
+      HttpClientRequest request = iHttpClient.post(iPort, iUrl.getHost(), iUrl.getPath(), rsp -> {
+        long firstByteNanos = System.nanoTime();
+        exchange.written = true;
+        metrics.recordFirstByte(firstByteNanos - sentNanos);
+        rsp.exceptionHandler(onFailure);
+        rsp.bodyHandler(buffer -> {
+          if (!done.compareAndSet(false, true))
+            return;
+
+          iConnectionGate.release();
+          metrics.recordBody(System.nanoTime() - firstByteNanos, buffer.length());
+          onResponse(exchange, token, rsp.statusCode(), rsp.statusMessage(), buffer);
+        });
+      });
+      if (token != null)
+        request.putHeader(cSessionTokenHeader, token);
+      if (iRequestTimeoutMillis > 0)
+        request.setTimeout(iRequestTimeoutMillis);
+      // Buffer.buffer wraps the pooled body without taking ownership of it, the exchange owns it and releases it once
+      // the command completes or is given up on, so the same bytes are sent again by the retries
+      request.exceptionHandler(onFailure).end(Buffer.buffer(exchange.body));
+    });
+  }
+
+  // whether the attempt failed before a connection was established, so that no byte of it reached the facade. A
+  // timeout or a reset may come after the request was written and is not one of them
+  private static boolean isConnectFailure(Throwable e) {
+    return e instanceof ConnectException || e instanceof UnknownHostException || e instanceof NoRouteToHostException;
+  }
+
+  private void onResponse(Exchange exchange, String token, int statusCode, String statusMessage, Buffer buffer) {
+    if (statusCode == 401 && token != null && !exchange.reauthenticated) {
+      // the session expired, which says nothing about the health of the command: log in again and resend at once
+      iSession.invalidate(token);
+      exchange.reauthenticated = true;
+      exchange.breaker.onSuccess();
+      send(exchange);
+      return;
+    }
+
+    Throwable failure = null;
+    try {
+      if (statusCode != 200)
+        failure = new IOException("HTTP " + statusCode + " " + statusMessage + ": " + buffer);
+      else if (!exchange.bodyHandler.test(buffer))
+        failure = new IOException("Unexpected response: " + buffer);
+    }
+    catch (DecodeException e) {
+      failure = e;
+    }
+
+    if (failure == null) {
+      exchange.breaker.onSuccess();
+      exchange.body.release();
+    }
+    else
+      onAttemptFailed(exchange, failure);
+  }
+
+  private void onAttemptFailed(Exchange exchange, Throwable cause) {
+    exchange.metrics.recordFailure();
+    if (exchange.breaker.onFailure()) {
+      exchange.metrics.recordBreakerTrip();
+      iLogger.warn("Too many consecutive failures of command <{}>, circuit breaker opened for {}ms: {}",
+              exchange.command, iBreakerOpenMillis, cause.getMessage());
+    }
+
+    retryOrGiveUp(exchange, cause);
+  }
+
+  private void retryOrGiveUp(Exchange exchange, Throwable cause) {
+    if (!iRetryPolicy.canRetry(exchange.attempt) || (exchange.written && !exchange.idempotent)) {
+      exchange.metrics.recordGiveUp();
+      exchange.body.release();
+      exchange.onGiveUp.accept(cause);
+      return;
+    }
+
+    long delayMillis = iRetryPolicy.delayMillis(exchange.attempt);
+    if (iLogger.isDebugEnabled())
+      iLogger.debug("Attempt {} of command <{}> failed, retry in {}ms", exchange.attempt, exchange.command, delayMillis,
+              cause);
+    exchange.metrics.recordRetry();
+    exchange.attempt++;
+    setTimer(delayMillis, () -> send(exchange));
+  }
+
+  /**
+   * Timings and counters of the requests sent by this client
+   *
+   * @return the metrics
+   */
+  public ClientMetrics metrics() {
+    return iMetrics;
+  }
+
+  /**
+   * Schedule a task on the shared event-loop timers of this client, so that all players sharing the client share the
+   * same threads regardless of how many of them are running
+   *
+   * @param delayMillis
+   *         milliseconds to wait before running the task
+   * @param task
+   *         the task to run, it must not block
+   *
+   * @return the timer id which can be passed to {@link #cancelTimer(long)}
+   */
+  public long setTimer(long delayMillis, Runnable task) {
+    return iVertx.setTimer(delayMillis < 1 ? 1 : delayMillis, id -> task.run());
+  }
+
+  /**
+   * Cancel a timer created by {@link #setTimer(long, Runnable)}
+   *
+   * @param timerID
+   *         the timer id
+   */
+  public void cancelTimer(long timerID) {
+    iVertx.cancelTimer(timerID);
   }
 
   /**
@@ -215,14 +570,129 @@ public class FacadeClient {
         e.printStackTrace();
       }
       iHttpClient.close();
+      iWebSocketClient.close();
+      iMetrics.unregister();
+      iVertx.close();
     }).start();
   }
 
-  private JsonObject authenticatingMessage() {
+  /**
+   * Pull feeds for a feeds transport, coalesced into batches if configured in {@link FacadeClientOptions}
+   *
+   * @param request
+   *         the request object
+   * @param feedsAcceptor
+   *         callback to receive the feeds
+   * @param onFailure
+   *         callback when the client gives up pulling
+   */
+  void pullFeeds(GetFeedsRequest request, Consumer<FeedsReturns> feedsAcceptor, Consumer<Throwable> onFailure) {
+    if (iFeedsBatcher == null)
+      getFeeds(request, feedsAcceptor, onFailure);
+    else
+      iFeedsBatcher.submit(request, feedsAcceptor, onFailure);
+  }
+
+  void websocket(Handler<WebSocket> wsConnect, Handler<Throwable> failureHandler) {
+    if (iSession == null) {
+      iWebSocketClient.websocket(iPort, iUrl.getHost(), iSubscribePath, wsConnect, failureHandler);
+      return;
+    }
+
+    iSession.withToken(token -> {
+      MultiMap headers = new CaseInsensitiveHeaders().add(cSessionTokenHeader, token);
+      iWebSocketClient.websocket(iPort, iUrl.getHost(), iSubscribePath, headers, wsConnect, failureHandler);
+    }, failureHandler::handle);
+  }
+
+  /**
+   * Log in to obtain a session token, used by the {@link SessionAuthenticator}
+   *
+   * @param onResponse
+   *         callback to receive the response carrying the token
+   * @param onFailure
+   *         callback when the client gives up logging in
+   */
+  void login(Consumer<JsonObject> onResponse, Consumer<Throwable> onFailure) {
+    JsonObject message = credentials();
+    message.put("command", "login");
+    send(new Exchange("login", Unpooled.copiedBuffer(message.encode(), StandardCharsets.UTF_8), true, buffer -> {
+      JsonObject ret = buffer.toJsonObject();
+      Integer status = ret.getInteger("status");
+      if (status == null || status != 0 || ret.getString("token") == null) {
+        iLogger.error("Error logging in: {}", ret.getString("reason", buffer.toString()));
+        return false;
+      }
+
+      onResponse.accept(ret);
+      return true;
+    }, onFailure, false));
+
+    if (iLogger.isDebugEnabled())
+      iLogger.debug("-> login");
+  }
+
+  boolean statusOnlyPulls() {
+    return iStatusOnlyPulls;
+  }
+
+  FeedsDecoder feedsDecoder() {
+    return iFeedsDecoder;
+  }
+
+  // the fields every command starts with: the credentials, or nothing if the session token is sent in a header
+  JsonObject authenticatingMessage() {
+    return iSession == null ? credentials() : new JsonObject();
+  }
+
+  private JsonObject credentials() {
     JsonObject message = new JsonObject();
     message.put("username", iUsername);
     message.put("password", iPassword);
     return message;
   }
 
+  // a command being sent, with its attempts so far
+  private class Exchange {
+
+    final String command;
+
+    final CommandMetrics metrics;
+
+    final CircuitBreaker breaker;
+
+    // owned by the exchange, which releases it once the command succeeds or is given up on, so that every attempt
+    // sends the same bytes
+    final ByteBuf body;
+
+    final boolean idempotent;
+
+    final Predicate<Buffer> bodyHandler;
+
+    final Consumer<Throwable> onGiveUp;
+
+    final boolean authenticated;
+
+    int attempt = 1;
+
+    boolean reauthenticated = false;
+
+    // whether the current attempt may have reached the facade, which may then have acted on it: it did once a
+    // response arrives, and may have unless the attempt failed to connect or never got a connection
+    boolean written = false;
+
+    Exchange(String command, ByteBuf body, boolean idempotent, Predicate<Buffer> bodyHandler,
+            Consumer<Throwable> onGiveUp, boolean authenticated) {
+      this.command = command;
+      this.metrics = iMetrics.command(command);
+      this.breaker = iBreakers
+              .computeIfAbsent(command, c -> CircuitBreaker.create(iBreakerFailureThreshold, iBreakerOpenMillis));
+      this.body = body;
+      this.idempotent = idempotent;
+      this.bodyHandler = bodyHandler;
+      this.onGiveUp = onGiveUp;
+      this.authenticated = authenticated;
+    }
+  }
+
 }
@@ -0,0 +1,558 @@
+package com.ricequant.apps.stress_test.client;
+
+/**
+ * Options to tune the behaviour of the {@link FacadeClient}
+ *
+ * @author chenfeng
+ */
+public class FacadeClientOptions {
+
+  private boolean iRetainFeeds = true;
+
+  private boolean iColumnarFeeds = false;
+
+  private boolean iStatusOnlyPulls = false;
+
+  private FeedsTransportType iFeedsTransport = FeedsTransportType.POLLING;
+
+  private String iSubscribePath;
+
+  private long iMinPollDelayMillis = 1000;
+
+  private long iMaxPollDelayMillis = 5000;
+
+  private double iPollBackoffFactor = 2;
+
+  private double iPollJitter = 0.1;
+
+  private double iMaxPullsPerSecond = 0;
+
+  private long iBatchPullWindowMillis = 0;
+
+  private int iMaxBatchPullSize = 100;
+
+  private int iMaxAttempts = 5;
+
+  private long iRequestTimeoutMillis = 30000;
+
+  private long iRetryMinDelayMillis = 200;
+
+  private long iRetryMaxDelayMillis = 5000;
+
+  private double iRetryBackoffFactor = 2;
+
+  private double iRetryJitter = 0.2;
+
+  private int iBreakerFailureThreshold = 20;
+
+  private long iBreakerOpenMillis = 5000;
+
+  private int iMaxPoolSize = 300;
+
+  private int iMaxInFlightRequests = 0;
+
+  private boolean iKeepAlive = true;
+
+  private boolean iPipelining = false;
+
+  private boolean iCompression = false;
+
+  private int iEventLoops = 0;
+
+  private boolean iSessionAuth = false;
+
+  /**
+   * Whether the feed records pulled from the server should be decoded and kept in {@link FeedsReturn#feeds()}. When
+   * set to false, records are only counted and skipped by the decoder, which is enough for capacity testing.
+   *
+   * @param retainFeeds
+   *         true to keep the feed records, false to count them only
+   *
+   * @return this object
+   */
+  public FacadeClientOptions retainFeeds(boolean retainFeeds) {
+    iRetainFeeds = retainFeeds;
+    return this;
+  }
+
+  public boolean retainFeeds() {
+    return iRetainFeeds;
+  }
+
+  /**
+   * How retained feed records are kept. By default each record is a JsonObject in {@link FeedsReturn#feeds()}. When
+   * set to true, records are decoded straight into the primitive columns of {@link FeedsReturn#columns()} instead,
+   * which takes a fraction of the memory when the feeds of many runs are kept for validation. Keep the columns rather
+   * than the {@link FeedsReturns}, which also references the raw response.
+   *
+   * @param columnarFeeds
+   *         true to keep feed records in columns, false to keep them as JsonObjects
+   *
+   * @return this object
+   */
+  public FacadeClientOptions columnarFeeds(boolean columnarFeeds) {
+    iColumnarFeeds = columnarFeeds;
+    return this;
+  }
+
+  public boolean columnarFeeds() {
+    return iColumnarFeeds;
+  }
+
+  /**
+   * Whether the runs played by {@link StrategyPlayer} should only pull the status of the strategy, without any feeds.
+   * It cuts the size of the pulls to the minimum for pure capacity tests where the feeds are not examined, the exit of
+   * the runs is detected from the status the same way.
+   *
+   * @param statusOnlyPulls
+   *         true to pull the status only, false to pull the feeds too
+   *
+   * @return this object
+   */
+  public FacadeClientOptions statusOnlyPulls(boolean statusOnlyPulls) {
+    iStatusOnlyPulls = statusOnlyPulls;
+    return this;
+  }
+
+  public boolean statusOnlyPulls() {
+    return iStatusOnlyPulls;
+  }
+
+  /**
+   * How the feeds of running strategies are delivered to the client
+   *
+   * @param feedsTransport
+   *         POLLING to pull feeds periodically, WEBSOCKET to have them pushed by the server
+   *
+   * @return this object
+   */
+  public FacadeClientOptions feedsTransport(FeedsTransportType feedsTransport) {
+    iFeedsTransport = feedsTransport;
+    return this;
+  }
+
+  public FeedsTransportType feedsTransport() {
+    return iFeedsTransport;
+  }
+
+  /**
+   * The path of the WebSocket endpoint used by the WEBSOCKET feeds transport
+   *
+   * @param subscribePath
+   *         the path, or null to use the path of the facade url followed by "/subscribe"
+   *
+   * @return this object
+   */
+  public FacadeClientOptions subscribePath(String subscribePath) {
+    iSubscribePath = subscribePath;
+    return this;
+  }
+
+  public String subscribePath() {
+    return iSubscribePath;
+  }
+
+  /**
+   * The delay before the next pull when the previous pull brought new feeds or a new lifecycle status
+   *
+   * @param minPollDelayMillis
+   *         milliseconds
+   *
+   * @return this object
+   */
+  public FacadeClientOptions minPollDelayMillis(long minPollDelayMillis) {
+    iMinPollDelayMillis = minPollDelayMillis;
+    return this;
+  }
+
+  public long minPollDelayMillis() {
+    return iMinPollDelayMillis;
+  }
+
+  /**
+   * The upper bound of the delay between pulls while nothing changes
+   *
+   * @param maxPollDelayMillis
+   *         milliseconds
+   *
+   * @return this object
+   */
+  public FacadeClientOptions maxPollDelayMillis(long maxPollDelayMillis) {
+    iMaxPollDelayMillis = maxPollDelayMillis;
+    return this;
+  }
+
+  public long maxPollDelayMillis() {
+    return iMaxPollDelayMillis;
+  }
+
+  /**
+   * How fast the delay between pulls grows after each pull which brings nothing new
+   *
+   * @param pollBackoffFactor
+   *         multiplier in range [1, +infinity)
+   *
+   * @return this object
+   */
+  public FacadeClientOptions pollBackoffFactor(double pollBackoffFactor) {
+    iPollBackoffFactor = pollBackoffFactor;
+    return this;
+  }
+
+  public double pollBackoffFactor() {
+    return iPollBackoffFactor;
+  }
+
+  /**
+   * Randomize each delay between pulls by up to this ratio in both directions, e.g. 0.1 means +/-10%
+   *
+   * @param pollJitter
+   *         ratio in range [0, 1]
+   *
+   * @return this object
+   */
+  public FacadeClientOptions pollJitter(double pollJitter) {
+    iPollJitter = pollJitter;
+    return this;
+  }
+
+  public double pollJitter() {
+    return iPollJitter;
+  }
+
+  /**
+   * The maximum number of periodic pulls per second sent by the client for all runs together
+   *
+   * @param maxPullsPerSecond
+   *         the rate, 0 for unlimited
+   *
+   * @return this object
+   */
+  public FacadeClientOptions maxPullsPerSecond(double maxPullsPerSecond) {
+    iMaxPullsPerSecond = maxPullsPerSecond;
+    return this;
+  }
+
+  public double maxPullsPerSecond() {
+    return iMaxPullsPerSecond;
+  }
+
+  /**
+   * When positive, periodic pulls of all runs submitted within this window are sent together as one pull-batch
+   * request, see {@link FacadeClient#getFeedsBatch(java.util.Collection, java.util.function.Consumer)}
+   *
+   * @param batchPullWindowMillis
+   *         milliseconds, 0 to send each pull separately
+   *
+   * @return this object
+   */
+  public FacadeClientOptions batchPullWindowMillis(long batchPullWindowMillis) {
+    iBatchPullWindowMillis = batchPullWindowMillis;
+    return this;
+  }
+
+  public long batchPullWindowMillis() {
+    return iBatchPullWindowMillis;
+  }
+
+  /**
+   * The maximum number of runs in one pull-batch request, a batch is sent as soon as it is full
+   *
+   * @param maxBatchPullSize
+   *         number of runs
+   *
+   * @return this object
+   */
+  public FacadeClientOptions maxBatchPullSize(int maxBatchPullSize) {
+    iMaxBatchPullSize = maxBatchPullSize;
+    return this;
+  }
+
+  public int maxBatchPullSize() {
+    return iMaxBatchPullSize;
+  }
+
+  /**
+   * The maximum number of times a request is sent before the client gives up on it
+   *
+   * @param maxAttempts
+   *         number of attempts including the first one, 0 or negative to retry forever
+   *
+   * @return this object
+   */
+  public FacadeClientOptions maxAttempts(int maxAttempts) {
+    iMaxAttempts = maxAttempts;
+    return this;
+  }
+
+  public int maxAttempts() {
+    return iMaxAttempts;
+  }
+
+  /**
+   * How long an attempt of a request waits for the response to begin before it fails and is retried, so that a facade
+   * which stops answering counts as failing rather than holding the connection forever
+   *
+   * @param requestTimeoutMillis
+   *         milliseconds, 0 to wait forever
+   *
+   * @return this object
+   */
+  public FacadeClientOptions requestTimeoutMillis(long requestTimeoutMillis) {
+    iRequestTimeoutMillis = requestTimeoutMillis;
+    return this;
+  }
+
+  public long requestTimeoutMillis() {
+    return iRequestTimeoutMillis;
+  }
+
+  /**
+   * The delay before the first retry of a failed request
+   *
+   * @param retryMinDelayMillis
+   *         milliseconds
+   *
+   * @return this object
+   */
+  public FacadeClientOptions retryMinDelayMillis(long retryMinDelayMillis) {
+    iRetryMinDelayMillis = retryMinDelayMillis;
+    return this;
+  }
+
+  public long retryMinDelayMillis() {
+    return iRetryMinDelayMillis;
+  }
+
+  /**
+   * The upper bound of the delay between retries
+   *
+   * @param retryMaxDelayMillis
+   *         milliseconds
+   *
+   * @return this object
+   */
+  public FacadeClientOptions retryMaxDelayMillis(long retryMaxDelayMillis) {
+    iRetryMaxDelayMillis = retryMaxDelayMillis;
+    return this;
+  }
+
+  public long retryMaxDelayMillis() {
+    return iRetryMaxDelayMillis;
+  }
+
+  /**
+   * How fast the delay between retries grows after each failed attempt
+   *
+   * @param retryBackoffFactor
+   *         multiplier in range [1, +infinity)
+   *
+   * @return this object
+   */
+  public FacadeClientOptions retryBackoffFactor(double retryBackoffFactor) {
+    iRetryBackoffFactor = retryBackoffFactor;
+    return this;
+  }
+
+  public double retryBackoffFactor() {
+    return iRetryBackoffFactor;
+  }
+
+  /**
+   * Randomize each delay between retries by up to this ratio in both directions
+   *
+   * @param retryJitter
+   *         ratio in range [0, 1]
+   *
+   * @return this object
+   */
+  public FacadeClientOptions retryJitter(double retryJitter) {
+    iRetryJitter = retryJitter;
+    return this;
+  }
+
+  public double retryJitter() {
+    return iRetryJitter;
+  }
+
+  /**
+   * Number of consecutive failed requests of a command which opens its circuit breaker. While open, requests of the
+   * command fail without being sent.
+   *
+   * @param breakerFailureThreshold
+   *         number of failures, 0 to disable the breaker
+   *
+   * @return this object
+   */
+  public FacadeClientOptions breakerFailureThreshold(int breakerFailureThreshold) {
+    iBreakerFailureThreshold = breakerFailureThreshold;
+    return this;
+  }
+
+  public int breakerFailureThreshold() {
+    return iBreakerFailureThreshold;
+  }
+
+  /**
+   * How long a circuit breaker stays open before letting a probe request through
+   *
+   * @param breakerOpenMillis
+   *         milliseconds
+   *
+   * @return this object
+   */
+  public FacadeClientOptions breakerOpenMillis(long breakerOpenMillis) {
+    iBreakerOpenMillis = breakerOpenMillis;
+    return this;
+  }
+
+  public long breakerOpenMillis() {
+    return iBreakerOpenMillis;
+  }
+
+  /**
+   * The maximum number of pooled connections to the facade
+   *
+   * @param maxPoolSize
+   *         number of connections
+   *
+   * @return this object
+   */
+  public FacadeClientOptions maxPoolSize(int maxPoolSize) {
+    iMaxPoolSize = maxPoolSize;
+    return this;
+  }
+
+  public int maxPoolSize() {
+    return iMaxPoolSize;
+  }
+
+  /**
+   * The maximum number of requests in flight. Requests beyond it wait in the client, where the wait is measured as
+   * the connect wait and the queue depth of the pool metrics.
+   *
+   * @param maxInFlightRequests
+   *         number of requests, 0 or negative to use the maximum pool size. Only raise it above the pool size together
+   *         with pipelining, which sends several requests over one connection
+   *
+   * @return this object
+   */
+  public FacadeClientOptions maxInFlightRequests(int maxInFlightRequests) {
+    iMaxInFlightRequests = maxInFlightRequests;
+    return this;
+  }
+
+  public int maxInFlightRequests() {
+    return iMaxInFlightRequests > 0 ? iMaxInFlightRequests : iMaxPoolSize;
+  }
+
+  /**
+   * Whether connections are kept open and reused by the following requests
+   *
+   * @param keepAlive
+   *         true to reuse connections, false to open one for each request
+   *
+   * @return this object
+   */
+  public FacadeClientOptions keepAlive(boolean keepAlive) {
+    iKeepAlive = keepAlive;
+    return this;
+  }
+
+  public boolean keepAlive() {
+    return iKeepAlive;
+  }
+
+  /**
+   * Whether requests are pipelined, i.e. sent on a kept-alive connection before the responses of the previous ones
+   * arrive
+   *
+   * @param pipelining
+   *         true to pipeline, false otherwise
+   *
+   * @return this object
+   */
+  public FacadeClientOptions pipelining(boolean pipelining) {
+    iPipelining = pipelining;
+    return this;
+  }
+
+  public boolean pipelining() {
+    return iPipelining;
+  }
+
+  /**
+   * Whether the client asks the facade to compress responses
+   *
+   * @param compression
+   *         true to accept gzip or deflate encoded responses, false otherwise
+   *
+   * @return this object
+   */
+  public FacadeClientOptions compression(boolean compression) {
+    iCompression = compression;
+    return this;
+  }
+
+  public boolean compression() {
+    return iCompression;
+  }
+
+  /**
+   * Number of event-loop threads of the client, which send the requests and run all callbacks
+   *
+   * @param eventLoops
+   *         number of threads, 0 or negative to use the default of twice the number of cores
+   *
+   * @return this object
+   */
+  public FacadeClientOptions eventLoops(int eventLoops) {
+    iEventLoops = eventLoops;
+    return this;
+  }
+
+  public int eventLoops() {
+    return iEventLoops;
+  }
+
+  /**
+   * Whether the client logs in once to obtain a session token, sent in the "X-Session-Token" header of every request,
+   * instead of putting the credentials in the body of every request. The token is refreshed before it expires, or as
+   * soon as the facade rejects it with HTTP 401.
+   *
+   * @param sessionAuth
+   *         true to authenticate with a session token, false to send the credentials with every request
+   *
+   * @return this object
+   */
+  public FacadeClientOptions sessionAuth(boolean sessionAuth) {
+    iSessionAuth = sessionAuth;
+    return this;
+  }
+
+  public boolean sessionAuth() {
+    return iSessionAuth;
+  }
+
+  @Override
+  public String toString() {
+    return "{retain-feeds:" + iRetainFeeds + ",feeds-transport:" + iFeedsTransport + ",subscribe-path:"
+            + iSubscribePath + ",min-poll-delay:" + iMinPollDelayMillis + ",max-poll-delay:" + iMaxPollDelayMillis
+            + ",poll-backoff-factor:" + iPollBackoffFactor + ",poll-jitter:" + iPollJitter + ",max-pulls-per-second:"
+            + iMaxPullsPerSecond + ",batch-pull-window:" + iBatchPullWindowMillis + ",max-batch-pull-size:"
+            + iMaxBatchPullSize + ",max-attempts:" + iMaxAttempts + ",retry-min-delay:" + iRetryMinDelayMillis
+            + ",retry-max-delay:" + iRetryMaxDelayMillis + ",retry-backoff-factor:" + iRetryBackoffFactor
+            + ",retry-jitter:" + iRetryJitter + ",breaker-failure-threshold:" + iBreakerFailureThreshold
+            + ",breaker-open:" + iBreakerOpenMillis + ",max-pool-size:" + iMaxPoolSize + ",max-in-flight-requests:"
+            + maxInFlightRequests() + ",keep-alive:" + iKeepAlive + ",pipelining:" + iPipelining + ",compression:"
+            + iCompression + ",event-loops:" + iEventLoops + ",session-auth:" + iSessionAuth + "}";
+  }
+
+  /**
+   * Available ways to deliver feeds, see {@link FeedsTransport}
+   */
+  public enum FeedsTransportType {
+    POLLING,
+    WEBSOCKET
+  }
+}
@@ -0,0 +1,196 @@
+package com.ricequant.apps.stress_test.client;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Captures the raw feeds responses of the runs into memory-mapped segment files, see {@link FeedArchiveReader} to read
+ * them back.
+ * <p>
+ * The archive is a directory of segments, each made of a data file "NNNNN.data" holding the responses back to back,
+ * and an index file "NNNNN.index" of fixed size records, one for each kind of feed asked by the request of a response:
+ * run-id (long), capture time in epoch milliseconds (long), the ordinal of the {@link FeedType} or -1 if the request
+ * asks for the status only (int), the start index asked for the feed (int), the offset of the response in the data
+ * file (int) and its size (int). Both files are preallocated when the segment is started, so a record of size 0 marks
+ * the end of the index. A new segment is started when either file is full.
+ * <p>
+ * Responses are appended on the event loops, so the segments left behind are flushed to disk on a thread of their own,
+ * and only the last one is flushed in {@link #close()}.
+ *
+ * @author chenfeng
+ */
+public class FeedArchive implements Closeable {
+
+  static final String cDataSuffix = ".data";
+
+  static final String cIndexSuffix = ".index";
+
+  static final int cIndexRecordBytes = 32;
+
+  private final File iDir;
+
+  private final int iSegmentBytes;
+
+  private final ExecutorService iFlusher = Executors.newSingleThreadExecutor(task -> {
+    Thread thread = new Thread(task, "feed-archive-flusher");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private int iNextSegment;
+
+  private MappedByteBuffer iData;
+
+  private MappedByteBuffer iIndex;
+
+  private boolean iClosed = false;
+
+  private FeedArchive(File dir, int segmentBytes, int nextSegment) {
+    iDir = dir;
+    iSegmentBytes = segmentBytes;
+    iNextSegment = nextSegment;
+  }
+
+  /**
+   * Open an archive to append to, segments already in the directory are kept and new ones are numbered after them
+   *
+   * @param dir
+   *         the directory of the archive, created if not existing
+   * @param segmentBytes
+   *         size of the data file of a segment, a response larger than it gets a segment of its own
+   *
+   * @return the archive
+   *
+   * @throws IOException
+   *         if the directory cannot be created
+   */
+  public static FeedArchive open(File dir, int segmentBytes) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs())
+      throw new IOException("Unable to create feed archive directory: " + dir);
+
+    int nextSegment = 0;
+    for (File segment : FeedArchiveReader.listSegments(dir))
+      nextSegment = Math.max(nextSegment, FeedArchiveReader.segmentNumber(segment) + 1);
+
+    return new FeedArchive(dir, segmentBytes, nextSegment);
+  }
+
+  /**
+   * The directory of the archive
+   *
+   * @return the directory
+   */
+  public File dir() {
+    return iDir;
+  }
+
+  /**
+   * Append the raw response of the feeds, the bytes are copied straight from the received message into the mapped
+   * data file
+   *
+   * @param feeds
+   *         the feeds, ignored if they are not decoded from a response
+   *
+   * @throws IOException
+   *         if a new segment cannot be mapped
+   */
+  public synchronized void append(FeedsReturns feeds) throws IOException {
+    Buffer raw = feeds.raw();
+    if (raw == null || iClosed)
+      return;
+
+    GetFeedsRequest request = feeds.request();
+    int numTypes = 0;
+    for (FeedType type : FeedType.values()) {
+      if (type.params(request) != null)
+        numTypes++;
+    }
+
+    int size = raw.length();
+    int numRecords = Math.max(1, numTypes);
+    if (iData == null || iData.remaining() < size || iIndex.remaining() < (numRecords + 1) * cIndexRecordBytes)
+      roll(size, numRecords);
+
+    int offset = iData.position();
+    ByteBuffer target = iData.duplicate();
+    target.limit(offset + size);
+    ByteBuf source = raw.getByteBuf();
+    source.getBytes(source.readerIndex(), target);
+    iData.position(offset + size);
+
+    long now = System.currentTimeMillis();
+    if (numTypes == 0)
+      putRecord(request.runID(), now, -1, 0, offset, size);
+    else {
+      for (FeedType type : FeedType.values()) {
+        GetFeedsRequest.IndexParams params = type.params(request);
+        if (params != null)
+          putRecord(request.runID(), now, type.ordinal(), params.startIndex(), offset, size);
+      }
+    }
+  }
+
+  /**
+   * Stop capturing and flush the mapped segments to the files, waiting for those left behind to be flushed
+   */
+  @Override
+  public synchronized void close() {
+    if (iClosed)
+      return;
+
+    iClosed = true;
+    iFlusher.shutdown();
+    try {
+      iFlusher.awaitTermination(1, TimeUnit.MINUTES);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    force(iData, iIndex);
+    iData = null;
+    iIndex = null;
+  }
+
+  private void putRecord(long runID, long captureMillis, int type, int startIndex, int offset, int size) {
+    iIndex.putLong(runID).putLong(captureMillis).putInt(type).putInt(startIndex).putInt(offset).putInt(size);
+  }
+
+  private void roll(int size, int numRecords) throws IOException {
+    MappedByteBuffer data = iData;
+    MappedByteBuffer index = iIndex;
+    if (data != null)
+      iFlusher.execute(() -> force(data, index));
+
+    int dataBytes = Math.max(iSegmentBytes, size);
+    // room for a record every 256 bytes of data, plus the terminating record
+    int indexBytes = (Math.max(numRecords, Math.max(1024, iSegmentBytes / 256)) + 1) * cIndexRecordBytes;
+    String name = FeedArchiveReader.segmentName(iNextSegment++);
+    iData = map(new File(iDir, name + cDataSuffix), dataBytes);
+    iIndex = map(new File(iDir, name + cIndexSuffix), indexBytes);
+  }
+
+  private static void force(MappedByteBuffer data, MappedByteBuffer index) {
+    if (data != null)
+      data.force();
+    if (index != null)
+      index.force();
+  }
+
+  // the mapping stays valid after the channel is closed, and is released when the buffer is collected
+  private static MappedByteBuffer map(File file, int bytes) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+    }
+  }
+}
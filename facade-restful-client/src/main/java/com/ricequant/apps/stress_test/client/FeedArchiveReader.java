@@ -0,0 +1,196 @@
+package com.ricequant.apps.stress_test.client;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reads back the responses captured by {@link FeedArchive}. Segments are mapped read-only, the body of an entry is a
+ * view of the mapped data file rather than a copy.
+ *
+ * @author chenfeng
+ */
+public class FeedArchiveReader {
+
+  private final List<Entry> iEntries;
+
+  private FeedArchiveReader(List<Entry> entries) {
+    iEntries = entries;
+  }
+
+  /**
+   * Map all segments of an archive and load their indexes
+   *
+   * @param dir
+   *         the directory of the archive
+   *
+   * @return the reader
+   *
+   * @throws IOException
+   *         if a segment cannot be mapped
+   */
+  public static FeedArchiveReader open(File dir) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    for (File data : listSegments(dir)) {
+      String path = data.getPath();
+      File index = new File(path.substring(0, path.length() - FeedArchive.cDataSuffix.length())
+              + FeedArchive.cIndexSuffix);
+      if (!index.exists())
+        continue;
+
+      readSegment(map(data), map(index), entries);
+    }
+
+    return new FeedArchiveReader(entries);
+  }
+
+  /**
+   * All index entries of the archive in capture order. A response is listed once for each kind of feed its request
+   * asked for, so entries sharing the same body are next to each other.
+   *
+   * @return the entries
+   */
+  public List<Entry> entries() {
+    return Collections.unmodifiableList(iEntries);
+  }
+
+  /**
+   * The index entries of a run in capture order
+   *
+   * @param runID
+   *         the run-id
+   *
+   * @return the entries
+   */
+  public List<Entry> entries(long runID) {
+    return iEntries.stream().filter(entry -> entry.runID() == runID).collect(Collectors.toList());
+  }
+
+  static List<File> listSegments(File dir) {
+    File[] files = dir.listFiles((d, name) -> name.endsWith(FeedArchive.cDataSuffix));
+    if (files == null)
+      return Collections.emptyList();
+
+    Arrays.sort(files);
+    return Arrays.asList(files);
+  }
+
+  static String segmentName(int number) {
+    return String.format("%05d", number);
+  }
+
+  static int segmentNumber(File data) {
+    String name = data.getName();
+    try {
+      return Integer.parseInt(name.substring(0, name.length() - FeedArchive.cDataSuffix.length()));
+    }
+    catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void readSegment(MappedByteBuffer data, MappedByteBuffer index, List<Entry> entries) {
+    while (index.remaining() >= FeedArchive.cIndexRecordBytes) {
+      long runID = index.getLong();
+      long captureMillis = index.getLong();
+      int type = index.getInt();
+      int startIndex = index.getInt();
+      int offset = index.getInt();
+      int size = index.getInt();
+      if (size == 0)
+        break;
+
+      ByteBuffer body = data.duplicate();
+      body.position(offset).limit(offset + size);
+      entries.add(new Entry(runID, captureMillis, type < 0 ? null : FeedType.values()[type], startIndex,
+              Buffer.buffer(Unpooled.wrappedBuffer(body.slice()))));
+    }
+  }
+
+  private static MappedByteBuffer map(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /**
+   * An index entry of the archive
+   */
+  public static class Entry {
+
+    private final long iRunID;
+
+    private final long iCaptureMillis;
+
+    private final FeedType iType;
+
+    private final int iStartIndex;
+
+    private final Buffer iBody;
+
+    Entry(long runID, long captureMillis, FeedType type, int startIndex, Buffer body) {
+      iRunID = runID;
+      iCaptureMillis = captureMillis;
+      iType = type;
+      iStartIndex = startIndex;
+      iBody = body;
+    }
+
+    public long runID() {
+      return iRunID;
+    }
+
+    /**
+     * When the response was captured
+     *
+     * @return epoch milliseconds
+     */
+    public long captureMillis() {
+      return iCaptureMillis;
+    }
+
+    /**
+     * The kind of feed the entry is about
+     *
+     * @return the feed type, or null if the request asked for the status only
+     */
+    public FeedType type() {
+      return iType;
+    }
+
+    /**
+     * The start index the request asked for the feed
+     *
+     * @return the index, 0 if the request asked for the status only
+     */
+    public int startIndex() {
+      return iStartIndex;
+    }
+
+    /**
+     * The captured response, in the same format as the response of a single pull
+     *
+     * @return the response body
+     */
+    public Buffer body() {
+      return iBody;
+    }
+
+    @Override
+    public String toString() {
+      return "{run-id:" + iRunID + ",capture-millis:" + iCaptureMillis + ",type:" + iType + ",start-index:"
+              + iStartIndex + ",size:" + iBody.length() + "}";
+    }
+  }
+}
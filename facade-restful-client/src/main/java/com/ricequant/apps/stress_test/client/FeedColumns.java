@@ -0,0 +1,450 @@
+package com.ricequant.apps.stress_test.client;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feed records of one kind kept column by column instead of one JsonObject per record. Each field becomes a column
+ * backed by a primitive array: integral numbers by long[], other numbers by double[] and strings by int[] codes into a
+ * dictionary of the distinct values of the column. Booleans, nested objects and arrays are kept as their JSON text in
+ * string columns. A column which sees different kinds of values is widened: long to double, and numbers to strings.
+ * <p>
+ * Rows are appended while decoding the response, see {@link FacadeClientOptions#columnarFeeds(boolean)}, and the
+ * columns of the pulls of a run can be concatenated with {@link #append(FeedColumns)}.
+ *
+ * @author chenfeng
+ */
+public class FeedColumns {
+
+  private final Map<String, Column> iColumns = new LinkedHashMap<>();
+
+  private int iSize = 0;
+
+  private FeedColumns() {
+  }
+
+  /**
+   * Creates an empty instance, records of pulls can be collected into it with {@link #append(FeedColumns)}
+   *
+   * @return the instance
+   */
+  public static FeedColumns create() {
+    return new FeedColumns();
+  }
+
+  /**
+   * Number of records
+   *
+   * @return the number
+   */
+  public int size() {
+    return iSize;
+  }
+
+  /**
+   * Names of the fields seen in the records, in the order they are first seen
+   *
+   * @return the names
+   */
+  public List<String> names() {
+    return Collections.unmodifiableList(new ArrayList<>(iColumns.keySet()));
+  }
+
+  /**
+   * Get the column of a field
+   *
+   * @param name
+   *         name of the field
+   *
+   * @return the column, or null if no record has the field
+   */
+  public Column column(String name) {
+    return iColumns.get(name);
+  }
+
+  /**
+   * Rebuild a record as a JsonObject, mainly for printing and comparing with the row representation
+   *
+   * @param row
+   *         index of the record
+   *
+   * @return the record, fields kept as JSON text are returned as strings
+   */
+  public JsonObject row(int row) {
+    JsonObject ret = new JsonObject();
+    for (Map.Entry<String, Column> entry : iColumns.entrySet()) {
+      Column column = entry.getValue();
+      if (column.isPresent(row))
+        ret.put(entry.getKey(), column.value(row));
+    }
+    return ret;
+  }
+
+  /**
+   * Append all records of another instance, usually the following pull of the same feed of a run
+   *
+   * @param other
+   *         the records to append
+   *
+   * @return this object
+   */
+  public FeedColumns append(FeedColumns other) {
+    for (int row = 0; row < other.iSize; row++, iSize++) {
+      for (Map.Entry<String, Column> entry : other.iColumns.entrySet()) {
+        Column source = entry.getValue();
+        if (!source.isPresent(row))
+          continue;
+
+        Column target = columnFor(entry.getKey());
+        switch (source.iType) {
+          case LONG:
+            target.setLong(iSize, source.iLongs[row]);
+            break;
+          case DOUBLE:
+            target.setDouble(iSize, source.iDoubles[row]);
+            break;
+          default:
+            target.setString(iSize, source.iDictionary.get(source.iCodes[row]));
+        }
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Decode a record from the parser positioned at its START_OBJECT and append it as a new row
+   *
+   * @param parser
+   *         the parser
+   *
+   * @throws IOException
+   *         if the record is not a valid JSON object
+   */
+  void readRow(JsonParser parser) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      Column column = columnFor(parser.getCurrentName());
+      JsonToken token = parser.nextToken();
+      switch (token) {
+        case VALUE_NUMBER_INT:
+          if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER)
+            column.setDouble(iSize, parser.getDoubleValue());
+          else
+            column.setLong(iSize, parser.getLongValue());
+          break;
+        case VALUE_NUMBER_FLOAT:
+          column.setDouble(iSize, parser.getDoubleValue());
+          break;
+        case VALUE_STRING:
+        case VALUE_TRUE:
+        case VALUE_FALSE:
+          column.setString(iSize, parser.getText());
+          break;
+        case START_OBJECT:
+        case START_ARRAY:
+          column.setString(iSize, Json.encode(Json.mapper.readValue(parser, Object.class)));
+          break;
+        case VALUE_NULL:
+          break;
+        default:
+          throw new JsonParseException("Unexpected token in feed record: " + token, parser.getCurrentLocation());
+      }
+    }
+    iSize++;
+  }
+
+  // release the spare capacity of the columns once decoding is done
+  void trim() {
+    for (Column column : iColumns.values())
+      column.trim(iSize);
+  }
+
+  private Column columnFor(String name) {
+    Column column = iColumns.get(name);
+    if (column == null) {
+      column = new Column();
+      iColumns.put(name, column);
+    }
+    return column;
+  }
+
+  @Override
+  public String toString() {
+    return "{size:" + iSize + ",columns:" + iColumns + "}";
+  }
+
+  /**
+   * The kind of values a column keeps
+   */
+  public enum ColumnType {
+    LONG,
+    DOUBLE,
+    STRING
+  }
+
+  /**
+   * The values of one field of all records, rows without the field are absent
+   */
+  public static class Column {
+
+    private static final int cInitialCapacity = 16;
+
+    private final BitSet iPresent = new BitSet();
+
+    private ColumnType iType;
+
+    private long[] iLongs;
+
+    private double[] iDoubles;
+
+    private int[] iCodes;
+
+    private List<String> iDictionary;
+
+    private Map<String, Integer> iDictionaryCodes;
+
+    Column() {
+    }
+
+    /**
+     * The kind of values the column keeps
+     *
+     * @return the type, or null if the field is null in all records
+     */
+    public ColumnType type() {
+      return iType;
+    }
+
+    /**
+     * See if a record has the field
+     *
+     * @param row
+     *         index of the record
+     *
+     * @return true if the record has a non-null value for the field
+     */
+    public boolean isPresent(int row) {
+      return iPresent.get(row);
+    }
+
+    /**
+     * Get the value of a LONG column, or the value of a DOUBLE column truncated
+     *
+     * @param row
+     *         index of the record
+     *
+     * @return the value, 0 if absent
+     *
+     * @throws IllegalStateException
+     *         if the column is a STRING column
+     */
+    public long longValue(int row) {
+      if (!isPresent(row))
+        return 0;
+      if (iType == ColumnType.LONG)
+        return iLongs[row];
+      if (iType == ColumnType.DOUBLE)
+        return (long) iDoubles[row];
+      throw new IllegalStateException("Not a numeric column");
+    }
+
+    /**
+     * Get the value of a numeric column
+     *
+     * @param row
+     *         index of the record
+     *
+     * @return the value, NaN if absent
+     *
+     * @throws IllegalStateException
+     *         if the column is a STRING column
+     */
+    public double doubleValue(int row) {
+      if (!isPresent(row))
+        return Double.NaN;
+      if (iType == ColumnType.DOUBLE)
+        return iDoubles[row];
+      if (iType == ColumnType.LONG)
+        return iLongs[row];
+      throw new IllegalStateException("Not a numeric column");
+    }
+
+    /**
+     * Get the value as a string, numbers are formatted
+     *
+     * @param row
+     *         index of the record
+     *
+     * @return the value, or null if absent
+     */
+    public String stringValue(int row) {
+      if (!isPresent(row))
+        return null;
+      if (iType == ColumnType.STRING)
+        return iDictionary.get(iCodes[row]);
+      return iType == ColumnType.LONG ? Long.toString(iLongs[row]) : Double.toString(iDoubles[row]);
+    }
+
+    /**
+     * Get the dictionary code of the value of a STRING column, records with equal values have equal codes
+     *
+     * @param row
+     *         index of the record
+     *
+     * @return the index of the value in {@link #dictionary()}, or -1 if absent
+     *
+     * @throws IllegalStateException
+     *         if the column is not a STRING column
+     */
+    public int code(int row) {
+      if (iType != ColumnType.STRING)
+        throw new IllegalStateException("Not a string column");
+      return isPresent(row) ? iCodes[row] : -1;
+    }
+
+    /**
+     * The distinct values of a STRING column in the order they are first seen
+     *
+     * @return the values, empty for numeric columns
+     */
+    public List<String> dictionary() {
+      return iDictionary == null ? Collections.emptyList() : Collections.unmodifiableList(iDictionary);
+    }
+
+    Object value(int row) {
+      if (iType == ColumnType.LONG)
+        return iLongs[row];
+      if (iType == ColumnType.DOUBLE)
+        return iDoubles[row];
+      return iDictionary.get(iCodes[row]);
+    }
+
+    void setLong(int row, long value) {
+      if (iType == null) {
+        iType = ColumnType.LONG;
+        iLongs = new long[cInitialCapacity];
+      }
+
+      if (iType == ColumnType.DOUBLE)
+        setDouble(row, value);
+      else if (iType == ColumnType.STRING)
+        setString(row, Long.toString(value));
+      else {
+        iLongs = ensureCapacity(iLongs, row);
+        iLongs[row] = value;
+        iPresent.set(row);
+      }
+    }
+
+    void setDouble(int row, double value) {
+      if (iType == null) {
+        iType = ColumnType.DOUBLE;
+        iDoubles = new double[cInitialCapacity];
+      }
+      else if (iType == ColumnType.LONG)
+        widenToDouble();
+
+      if (iType == ColumnType.STRING)
+        setString(row, Double.toString(value));
+      else {
+        iDoubles = ensureCapacity(iDoubles, row);
+        iDoubles[row] = value;
+        iPresent.set(row);
+      }
+    }
+
+    void setString(int row, String value) {
+      if (iType == null) {
+        iType = ColumnType.STRING;
+        iCodes = new int[cInitialCapacity];
+        iDictionary = new ArrayList<>();
+        iDictionaryCodes = new HashMap<>();
+      }
+      else if (iType != ColumnType.STRING)
+        widenToString();
+
+      if (iDictionaryCodes == null) {
+        iDictionaryCodes = new HashMap<>();
+        for (int i = 0; i < iDictionary.size(); i++)
+          iDictionaryCodes.put(iDictionary.get(i), i);
+      }
+
+      Integer code = iDictionaryCodes.get(value);
+      if (code == null) {
+        code = iDictionary.size();
+        iDictionary.add(value);
+        iDictionaryCodes.put(value, code);
+      }
+
+      iCodes = ensureCapacity(iCodes, row);
+      iCodes[row] = code;
+      iPresent.set(row);
+    }
+
+    void trim(int size) {
+      if (iLongs != null && iLongs.length > size)
+        iLongs = Arrays.copyOf(iLongs, size);
+      if (iDoubles != null && iDoubles.length > size)
+        iDoubles = Arrays.copyOf(iDoubles, size);
+      if (iCodes != null && iCodes.length > size)
+        iCodes = Arrays.copyOf(iCodes, size);
+      // only needed to encode more values, rebuilt if the column is appended to
+      iDictionaryCodes = null;
+    }
+
+    private void widenToDouble() {
+      double[] doubles = new double[iLongs.length];
+      for (int row = iPresent.nextSetBit(0); row >= 0; row = iPresent.nextSetBit(row + 1))
+        doubles[row] = iLongs[row];
+
+      iDoubles = doubles;
+      iLongs = null;
+      iType = ColumnType.DOUBLE;
+    }
+
+    private void widenToString() {
+      String[] values = new String[iType == ColumnType.LONG ? iLongs.length : iDoubles.length];
+      for (int row = iPresent.nextSetBit(0); row >= 0; row = iPresent.nextSetBit(row + 1))
+        values[row] = stringValue(row);
+
+      iLongs = null;
+      iDoubles = null;
+      iType = ColumnType.STRING;
+      iCodes = new int[values.length];
+      iDictionary = new ArrayList<>();
+      iDictionaryCodes = new HashMap<>();
+      for (int row = iPresent.nextSetBit(0); row >= 0; row = iPresent.nextSetBit(row + 1))
+        setString(row, values[row]);
+    }
+
+    private static long[] ensureCapacity(long[] array, int row) {
+      return row < array.length ? array : Arrays.copyOf(array, Math.max(row + 1, array.length * 2));
+    }
+
+    private static double[] ensureCapacity(double[] array, int row) {
+      return row < array.length ? array : Arrays.copyOf(array, Math.max(row + 1, array.length * 2));
+    }
+
+    private static int[] ensureCapacity(int[] array, int row) {
+      return row < array.length ? array : Arrays.copyOf(array, Math.max(row + 1, array.length * 2));
+    }
+
+    @Override
+    public String toString() {
+      return "{type:" + iType + ",present:" + iPresent.cardinality() + (iType == ColumnType.STRING ? ",distinct:"
+              + iDictionary.size() : "") + "}";
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The position of each kind of feed of a run, tracked across pulls so that a pull only asks for the feeds which are
+ * likely to have new records. A kind of feed is unchanged when a pull returns no records for it and its NextIndex
+ * stays where the pull started. It is then left out of the following pulls, for twice as many pulls each time it is
+ * found unchanged again, up to {@link #cMaxSkippedPulls}. The cursors never move backwards, so the last pull of the run
+ * still fetches every remaining record, see {@link #lastRequest(long, boolean)}.
+ * <p>
+ * The cursors are attached to the first request of a run, and consulted by {@link FeedsReturns#nextRequest()} and
+ * {@link FeedsReturns#lastRequest(boolean)}.
+ *
+ * @author chenfeng
+ */
+class FeedCursors {
+
+  static final int cMaxSkippedPulls = 8;
+
+  private final Map<FeedType, Cursor> iCursors = new EnumMap<>(FeedType.class);
+
+  private FeedsReturns iLastUpdate;
+
+  private FeedCursors() {
+  }
+
+  /**
+   * Creates the cursors of the feeds asked by the first request of a run, grids are not tracked
+   *
+   * @param request
+   *         the first request
+   *
+   * @return the cursors
+   */
+  static FeedCursors create(GetFeedsRequest request) {
+    FeedCursors ret = new FeedCursors();
+    for (FeedType type : FeedType.values()) {
+      GetFeedsRequest.IndexParams params = type.params(request);
+      if (params != null && type != FeedType.PORTFOLIO_GRIDS && type != FeedType.RISK_GRIDS)
+        ret.iCursors.put(type, new Cursor(params.startIndex(), params.length()));
+    }
+    return ret;
+  }
+
+  /**
+   * Move the cursors past the feeds received and build the next request
+   *
+   * @param feeds
+   *         the feeds just received
+   *
+   * @return the next request, leaving out the feeds found unchanged recently
+   */
+  synchronized GetFeedsRequest nextRequest(FeedsReturns feeds) {
+    update(feeds);
+
+    GetFeedsRequest req = GetFeedsRequest.create(feeds.runID()).cursors(this);
+    for (Map.Entry<FeedType, Cursor> entry : iCursors.entrySet()) {
+      Cursor cursor = entry.getValue();
+      if (cursor.skipRemaining == 0)
+        ask(req, entry.getKey(), cursor.next, cursor.length);
+    }
+    return req;
+  }
+
+  /**
+   * Move the cursors past the feeds received and build the request which fetches all remaining feeds
+   *
+   * @param feeds
+   *         the feeds just received
+   * @param includeGrids
+   *         whether grids should be pulled too
+   *
+   * @return the request
+   */
+  synchronized GetFeedsRequest lastRequest(FeedsReturns feeds, boolean includeGrids) {
+    update(feeds);
+    return lastRequest(feeds.runID(), includeGrids);
+  }
+
+  private GetFeedsRequest lastRequest(long runID, boolean includeGrids) {
+    GetFeedsRequest req = GetFeedsRequest.create(runID).cursors(this);
+    for (Map.Entry<FeedType, Cursor> entry : iCursors.entrySet())
+      ask(req, entry.getKey(), entry.getValue().next, Integer.MAX_VALUE);
+
+    if (includeGrids) {
+      req.riskGrids(0, Integer.MAX_VALUE);
+      req.portfolioGrids(0, Integer.MAX_VALUE);
+    }
+    return req;
+  }
+
+  // idempotent for the same feeds, the transports and the player may both ask for the next request
+  private void update(FeedsReturns feeds) {
+    if (feeds == iLastUpdate)
+      return;
+    iLastUpdate = feeds;
+
+    for (Map.Entry<FeedType, Cursor> entry : iCursors.entrySet()) {
+      Cursor cursor = entry.getValue();
+      FeedsReturn returned = feeds.feeds(entry.getKey());
+      if (returned == null) {
+        if (cursor.skipRemaining > 0)
+          cursor.skipRemaining--;
+        continue;
+      }
+
+      int nextIndex = returned.nextIndex() >= 0 ? returned.nextIndex() : cursor.next;
+      if (returned.count() == 0 && nextIndex == cursor.next) {
+        cursor.skipRemaining = Math.min(cMaxSkippedPulls, 1 << Math.min(cursor.unchanged, 30));
+        cursor.unchanged++;
+      }
+      else {
+        cursor.skipRemaining = 0;
+        cursor.unchanged = 0;
+      }
+      cursor.next = Math.max(cursor.next, nextIndex);
+    }
+  }
+
+  private static void ask(GetFeedsRequest req, FeedType type, int startIndex, int length) {
+    switch (type) {
+      case PORTFOLIOS:
+        req.portfolios(startIndex, length);
+        break;
+      case BENCHMARK_PORTFOLIOS:
+        req.benchmarkPortfolios(startIndex, length);
+        break;
+      case POSITIONS:
+        req.positions(startIndex, length);
+        break;
+      case RISKS:
+        req.risks(startIndex, length);
+        break;
+      case TRADES:
+        req.trades(startIndex, length);
+        break;
+      case ORDERS:
+        req.orders(startIndex, length);
+        break;
+      case LOGS:
+        req.logs(startIndex, length);
+        break;
+      case PLOTS:
+        req.plots(startIndex, length);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static class Cursor {
+
+    private final int length;
+
+    private int next;
+
+    private int unchanged = 0;
+
+    private int skipRemaining = 0;
+
+    private Cursor(int next, int length) {
+      this.next = next;
+      this.length = length;
+    }
+  }
+}
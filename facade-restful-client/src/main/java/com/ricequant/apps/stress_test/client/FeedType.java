@@ -0,0 +1,59 @@
+package com.ricequant.apps.stress_test.client;
+
+/**
+ * The kinds of feeds a {@link GetFeedsRequest} can ask for
+ *
+ * @author chenfeng
+ */
+public enum FeedType {
+  PORTFOLIOS("portfolios"),
+  BENCHMARK_PORTFOLIOS("benchmark-portfolios"),
+  POSITIONS("positions"),
+  RISKS("risks"),
+  TRADES("trades"),
+  ORDERS("orders"),
+  PORTFOLIO_GRIDS("portfolio-grids"),
+  RISK_GRIDS("risk-grids"),
+  LOGS("logs"),
+  PLOTS("plots");
+
+  private final String iKey;
+
+  FeedType(String key) {
+    iKey = key;
+  }
+
+  /**
+   * The key of the feed in the pull command and its response
+   *
+   * @return the key
+   */
+  public String key() {
+    return iKey;
+  }
+
+  GetFeedsRequest.IndexParams params(GetFeedsRequest request) {
+    switch (this) {
+      case PORTFOLIOS:
+        return request.portfolios();
+      case BENCHMARK_PORTFOLIOS:
+        return request.benchmarkPortfolios();
+      case POSITIONS:
+        return request.positions();
+      case RISKS:
+        return request.risks();
+      case TRADES:
+        return request.trades();
+      case ORDERS:
+        return request.orders();
+      case PORTFOLIO_GRIDS:
+        return request.portfolioGrids();
+      case RISK_GRIDS:
+        return request.riskGrids();
+      case LOGS:
+        return request.logs();
+      default:
+        return request.plots();
+    }
+  }
+}
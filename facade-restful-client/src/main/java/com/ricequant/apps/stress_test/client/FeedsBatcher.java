@@ -0,0 +1,151 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces the pulls submitted by all players within a short window into a single pull-batch request, and hands the
+ * feeds of each run back to the callback which submitted the pull. A run missing from the response of a batch is put
+ * into the next batch, as many times as the {@link RetryPolicy} allows.
+ *
+ * @author chenfeng
+ */
+class FeedsBatcher {
+
+  private final FacadeClient iClient;
+
+  private final RetryPolicy iRetryPolicy;
+
+  private final long iWindowMillis;
+
+  private final int iMaxBatchSize;
+
+  private final Object iLock = new Object();
+
+  private Map<Long, PendingPull> iPending = new HashMap<>();
+
+  private boolean iFlushScheduled = false;
+
+  private FeedsBatcher(FacadeClient client, RetryPolicy retryPolicy, long windowMillis, int maxBatchSize) {
+    iClient = client;
+    iRetryPolicy = retryPolicy;
+    iWindowMillis = windowMillis;
+    iMaxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * Creates a batcher
+   *
+   * @param client
+   *         the client to send the batches
+   * @param retryPolicy
+   *         decides how many batches a run may be missing from before its pull fails
+   * @param windowMillis
+   *         how long a pull may wait for others to join its batch
+   * @param maxBatchSize
+   *         a batch is sent immediately when it reaches this number of runs
+   *
+   * @return the batcher
+   */
+  static FeedsBatcher create(FacadeClient client, RetryPolicy retryPolicy, long windowMillis, int maxBatchSize) {
+    return new FeedsBatcher(client, retryPolicy, windowMillis, Math.max(1, maxBatchSize));
+  }
+
+  /**
+   * Submit a pull to be sent with the next batch. If a pull of the same run is already pending, it is replaced.
+   *
+   * @param request
+   *         the request
+   * @param feedsAcceptor
+   *         callback to receive the feeds of the run
+   * @param onFailure
+   *         callback when the client gives up sending the batch the pull is in, or when the run is missing from the
+   *         responses of more batches than the retry policy allows
+   */
+  void submit(GetFeedsRequest request, Consumer<FeedsReturns> feedsAcceptor, Consumer<Throwable> onFailure) {
+    enqueue(new PendingPull(request, feedsAcceptor, onFailure, 1), true);
+  }
+
+  // the run was missing from the response of the batch, pull it again with the next batch unless a newer pull of the
+  // run is already waiting
+  private void onMissing(PendingPull pull) {
+    if (!iRetryPolicy.canRetry(pull.attempt)) {
+      pull.onFailure.accept(new IOException(
+              "No feeds of run-id <" + pull.request.runID() + "> in " + pull.attempt + " pull-batch responses"));
+      return;
+    }
+
+    enqueue(new PendingPull(pull.request, pull.feedsAcceptor, pull.onFailure, pull.attempt + 1), false);
+  }
+
+  private void enqueue(PendingPull pull, boolean replace) {
+    Map<Long, PendingPull> full = null;
+
+    synchronized (iLock) {
+      if (replace)
+        iPending.put(pull.request.runID(), pull);
+      else
+        iPending.putIfAbsent(pull.request.runID(), pull);
+      if (iPending.size() >= iMaxBatchSize) {
+        full = iPending;
+        iPending = new HashMap<>();
+      }
+      else if (!iFlushScheduled) {
+        iFlushScheduled = true;
+        iClient.setTimer(iWindowMillis, this::flush);
+      }
+    }
+
+    if (full != null)
+      send(full);
+  }
+
+  private void flush() {
+    Map<Long, PendingPull> pending;
+    synchronized (iLock) {
+      iFlushScheduled = false;
+      pending = iPending;
+      iPending = new HashMap<>();
+    }
+
+    if (!pending.isEmpty())
+      send(pending);
+  }
+
+  private void send(Map<Long, PendingPull> pulls) {
+    List<GetFeedsRequest> requests = new ArrayList<>(pulls.size());
+    for (PendingPull pull : pulls.values())
+      requests.add(pull.request);
+
+    iClient.getFeedsBatch(requests, feeds -> pulls.get(feeds.runID()).feedsAcceptor.accept(feeds),
+            request -> onMissing(pulls.get(request.runID())),
+            e -> {
+              for (PendingPull pull : pulls.values())
+                pull.onFailure.accept(e);
+            });
+  }
+
+  private static class PendingPull {
+
+    final GetFeedsRequest request;
+
+    final Consumer<FeedsReturns> feedsAcceptor;
+
+    final Consumer<Throwable> onFailure;
+
+    // number of batches the pull has been sent in
+    final int attempt;
+
+    PendingPull(GetFeedsRequest request, Consumer<FeedsReturns> feedsAcceptor, Consumer<Throwable> onFailure,
+            int attempt) {
+      this.request = request;
+      this.feedsAcceptor = feedsAcceptor;
+      this.onFailure = onFailure;
+      this.attempt = attempt;
+    }
+  }
+}
@@ -0,0 +1,254 @@
+package com.ricequant.apps.stress_test.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the response of the pull command with a streaming parser directly into {@link FeedsReturns}, without
+ * building the JSON tree of the whole response first. Feed records are either decoded one by one or only counted.
+ *
+ * @author chenfeng
+ */
+class FeedsDecoder {
+
+  private final boolean iRetainFeeds;
+
+  private final boolean iColumnarFeeds;
+
+  private FeedsDecoder(boolean retainFeeds, boolean columnarFeeds) {
+    iRetainFeeds = retainFeeds;
+    iColumnarFeeds = columnarFeeds;
+  }
+
+  /**
+   * Creates a decoder
+   *
+   * @param retainFeeds
+   *         true to decode every feed record, false to only count them
+   * @param columnarFeeds
+   *         true to decode retained records into {@link FeedColumns}, false to decode them into JsonObjects
+   *
+   * @return the decoder
+   */
+  static FeedsDecoder create(boolean retainFeeds, boolean columnarFeeds) {
+    return new FeedsDecoder(retainFeeds, columnarFeeds);
+  }
+
+  /**
+   * Decode the response body of a pull request
+   *
+   * @param buffer
+   *         the response body
+   * @param request
+   *         the request sent to the server
+   *
+   * @return the feeds, or null if the server returns an error status
+   *
+   * @throws IOException
+   *         if the body is not a valid response
+   */
+  FeedsReturns decode(Buffer buffer, GetFeedsRequest request) throws IOException {
+    try (JsonParser parser = createParser(buffer)) {
+      parser.nextToken();
+      FeedsReturns feeds = decodeResponse(parser, request);
+      return feeds == null ? null : feeds.raw(buffer);
+    }
+  }
+
+  /**
+   * Decode the response body of a pull-batch request. The results of a batch is an object keyed by run-id, each value
+   * has the same format as the response of a single pull.
+   *
+   * @param buffer
+   *         the response body
+   * @param requests
+   *         the requests sent to the server, keyed by run-id
+   *
+   * @return the feeds of all runs which the server returns successfully, or null if the server returns an error status
+   * for the whole batch
+   *
+   * @throws IOException
+   *         if the body is not a valid response
+   */
+  List<FeedsReturns> decodeBatch(Buffer buffer, Map<Long, GetFeedsRequest> requests) throws IOException {
+    List<FeedsReturns> ret = new ArrayList<>(requests.size());
+    Integer statusCode = null;
+
+    try (JsonParser parser = createParser(buffer)) {
+      expect(parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        if ("status".equals(name) && token == JsonToken.VALUE_NUMBER_INT)
+          statusCode = parser.getIntValue();
+        else if ("results".equals(name) && token == JsonToken.START_OBJECT) {
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            GetFeedsRequest request = requests.get(Long.parseLong(parser.getCurrentName()));
+            parser.nextToken();
+            if (request == null) {
+              parser.skipChildren();
+              continue;
+            }
+
+            // the byte range of the run's own object, so that it can be captured without copying the response. The
+            // token location of a value follows its field name, but the current location is right after the brace
+            int start = (int) parser.getCurrentLocation().getByteOffset() - 1;
+            FeedsReturns feeds = decodeResponse(parser, request);
+            if (feeds != null)
+              ret.add(feeds.raw(buffer.slice(start, (int) parser.getCurrentLocation().getByteOffset())));
+          }
+        }
+        else
+          parser.skipChildren();
+      }
+    }
+
+    if (statusCode == null || statusCode != 0)
+      return null;
+
+    return ret;
+  }
+
+  private FeedsReturns decodeResponse(JsonParser parser, GetFeedsRequest request) throws IOException {
+    expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+
+    FeedsReturns feeds = FeedsReturns.create(request);
+    Integer statusCode = null;
+    boolean hasResults = false;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if ("status".equals(name) && token == JsonToken.VALUE_NUMBER_INT)
+        statusCode = parser.getIntValue();
+      else if ("results".equals(name) && token == JsonToken.START_OBJECT) {
+        decodeResults(parser, feeds);
+        hasResults = true;
+      }
+      else
+        parser.skipChildren();
+    }
+
+    if (statusCode == null || statusCode != 0 || !hasResults)
+      return null;
+
+    return feeds;
+  }
+
+  private static JsonParser createParser(Buffer buffer) throws IOException {
+    return Json.mapper.getFactory().createParser(new ByteBufInputStream(buffer.getByteBuf()));
+  }
+
+  private void decodeResults(JsonParser parser, FeedsReturns feeds) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if (token == JsonToken.VALUE_NULL)
+        continue;
+
+      switch (name) {
+        case "status":
+          feeds.status(readObject(parser));
+          break;
+        case "portfolios":
+          feeds.portfolios(readSlice(parser, "Portfolios"));
+          break;
+        case "benchmark-portfolios":
+          feeds.benchmarkPortfolios(readSlice(parser, "Portfolios"));
+          break;
+        case "positions":
+          feeds.positions(readSlice(parser, "Positions"));
+          break;
+        case "risks":
+          feeds.risks(readSlice(parser, "PortfolioRisks"));
+          break;
+        case "trades":
+          feeds.trades(readSlice(parser, "Trades"));
+          break;
+        case "orders":
+          feeds.orders(readSlice(parser, "Orders"));
+          break;
+        case "plots":
+          feeds.plots(readSlice(parser, "Plots"));
+          break;
+        case "logs":
+          feeds.logs(readSlice(parser, "Logs"));
+          break;
+        case "portfolio-grids":
+          feeds.portfolioGrids(readFeeds(parser, new FeedsReturn()));
+          break;
+        case "risk-grids":
+          feeds.riskGrids(readFeeds(parser, new FeedsReturn()));
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+  }
+
+  private FeedsReturn readSlice(JsonParser parser, String feedsKeyName) throws IOException {
+    expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+
+    FeedsReturn ret = new FeedsReturn();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if ("NextIndex".equals(name) && token == JsonToken.VALUE_NUMBER_INT)
+        ret.nextIndex(parser.getIntValue());
+      else if (feedsKeyName.equals(name) && token == JsonToken.START_ARRAY)
+        readFeeds(parser, ret);
+      else
+        parser.skipChildren();
+    }
+
+    return ret;
+  }
+
+  private FeedsReturn readFeeds(JsonParser parser, FeedsReturn ret) throws IOException {
+    expect(parser.getCurrentToken(), JsonToken.START_ARRAY);
+
+    FeedColumns columns = iRetainFeeds && iColumnarFeeds ? FeedColumns.create() : null;
+    List<JsonObject> feedsList = iRetainFeeds && columns == null ? new ArrayList<>() : Collections.emptyList();
+    int count = 0;
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (columns != null) {
+        expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+        columns.readRow(parser);
+      }
+      else if (iRetainFeeds)
+        feedsList.add(readObject(parser));
+      else
+        parser.skipChildren();
+      count++;
+    }
+
+    if (columns != null) {
+      columns.trim();
+      ret.columns(columns);
+    }
+    ret.feeds(feedsList);
+    ret.count(count);
+    return ret;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static JsonObject readObject(JsonParser parser) throws IOException {
+    expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+    return new JsonObject(Json.mapper.readValue(parser, Map.class));
+  }
+
+  private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+    if (actual != expected)
+      throw new IOException("Unexpected token in feeds response, expected " + expected + " but was " + actual);
+  }
+}
@@ -1,9 +1,7 @@
 package com.ricequant.apps.stress_test.client;
 
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -16,31 +14,11 @@ public class FeedsReturn {
 
   private List<JsonObject> iFeeds = Collections.emptyList();
 
-  private int iNextIndex = 0;
-
-  static FeedsReturn fromFeeds(JsonArray feeds) {
-    FeedsReturn ret = new FeedsReturn();
-    convertJsonArrayToList(feeds, ret);
-    return ret;
-  }
-
-  static FeedsReturn fromSlice(JsonObject feedsSlice, String feedsKeyName) {
-    FeedsReturn ret = new FeedsReturn();
-    ret.nextIndex(feedsSlice.getInteger("NextIndex"));
-
-    JsonArray jsonArray = feedsSlice.getJsonArray(feedsKeyName, new JsonArray());
-    convertJsonArrayToList(jsonArray, ret);
-
-    return ret;
-  }
+  private FeedColumns iColumns;
 
-  private static void convertJsonArrayToList(JsonArray jsonArray, FeedsReturn ret) {
-    List<JsonObject> feedsList = new ArrayList<>(jsonArray.size());
-    for (int i = 0; i < jsonArray.size(); i++)
-      feedsList.add(i, jsonArray.getJsonObject(i));
+  private int iNextIndex = 0;
 
-    ret.feeds(feedsList);
-  }
+  private int iCount = 0;
 
   /**
    * Get the feeds
@@ -51,6 +29,25 @@ public class FeedsReturn {
     return iFeeds;
   }
 
+  /**
+   * Get the feeds kept in columns, see {@link FacadeClientOptions#columnarFeeds(boolean)}
+   *
+   * @return the columns, or null unless the client is configured to keep feeds in columns
+   */
+  public FeedColumns columns() {
+    return iColumns;
+  }
+
+  /**
+   * Number of feeds returned by the server. It equals to the size of {@link #feeds()} unless the client is configured
+   * not to retain feeds, see {@link FacadeClientOptions#retainFeeds(boolean)}, or to keep them in {@link #columns()}
+   *
+   * @return number of feeds returned
+   */
+  public int count() {
+    return iCount;
+  }
+
   /**
    * If the client want to pull again, it should use this index as the "start-index"
    *
@@ -64,6 +61,14 @@ public class FeedsReturn {
     iFeeds = feeds;
   }
 
+  void columns(FeedColumns columns) {
+    iColumns = columns;
+  }
+
+  void count(int count) {
+    iCount = count;
+  }
+
   void nextIndex(int index) {
     iNextIndex = index;
   }
@@ -71,6 +76,6 @@ public class FeedsReturn {
 
   @Override
   public String toString() {
-    return "{next-index:" + iNextIndex + ",feeds:" + iFeeds + "}";
+    return "{next-index:" + iNextIndex + ",count:" + iCount + ",feeds:" + (iColumns != null ? iColumns : iFeeds) + "}";
   }
 }
@@ -1,5 +1,6 @@
 package com.ricequant.apps.stress_test.client;
 
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 
 /**
@@ -33,6 +34,8 @@ public class FeedsReturns {
 
   private JsonObject iStatus;
 
+  private Buffer iRaw;
+
   private FeedsReturns(GetFeedsRequest req) {
     iReq = req;
   }
@@ -66,6 +69,20 @@ public class FeedsReturns {
     return this;
   }
 
+  /**
+   * Set the raw response the feeds are decoded from
+   *
+   * @param raw
+   *         the response body of a single pull or a pushed message, or the slice of a batch response which belongs to
+   *         this run
+   *
+   * @return this object
+   */
+  FeedsReturns raw(Buffer raw) {
+    iRaw = raw;
+    return this;
+  }
+
   public FeedsReturns portfolios(FeedsReturn feeds) {
     iPortfoliosReturn = feeds;
     return this;
@@ -120,6 +137,16 @@ public class FeedsReturns {
     return iStatus;
   }
 
+  /**
+   * The raw response the feeds are decoded from, in the same format as the response of a single pull. It shares the
+   * memory of the received message, see {@link FeedArchive} to capture it.
+   *
+   * @return the raw response, or null if the feeds are not decoded from a response
+   */
+  public Buffer raw() {
+    return iRaw;
+  }
+
   public FeedsReturn portfolios() {
     return iPortfoliosReturn;
   }
@@ -165,6 +192,81 @@ public class FeedsReturns {
     return iPlotsReturn;
   }
 
+  /**
+   * See if any kind of feeds returned new records
+   *
+   * @return true if at least one record is returned
+   */
+  public boolean hasNewFeeds() {
+    for (FeedType type : FeedType.values()) {
+      FeedsReturn feeds = feeds(type);
+      if (feeds != null && feeds.count() > 0)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Number of records returned by all kinds of feeds
+   *
+   * @return the number
+   */
+  public int numRecords() {
+    int ret = 0;
+    for (FeedType type : FeedType.values()) {
+      FeedsReturn feeds = feeds(type);
+      if (feeds != null)
+        ret += feeds.count();
+    }
+    return ret;
+  }
+
+  /**
+   * Get the feeds of a kind
+   *
+   * @param type
+   *         the kind of feeds
+   *
+   * @return the feeds, or null if they are not returned
+   */
+  public FeedsReturn feeds(FeedType type) {
+    switch (type) {
+      case PORTFOLIOS:
+        return iPortfoliosReturn;
+      case BENCHMARK_PORTFOLIOS:
+        return iBenchmarkPortfoliosReturn;
+      case POSITIONS:
+        return iPositionsReturn;
+      case RISKS:
+        return iRisksReturn;
+      case TRADES:
+        return iTradesReturn;
+      case ORDERS:
+        return iOrdersReturn;
+      case PORTFOLIO_GRIDS:
+        return iPortfolioGridsReturn;
+      case RISK_GRIDS:
+        return iRiskGridsReturn;
+      case LOGS:
+        return iLogsReturn;
+      default:
+        return iPlotsReturn;
+    }
+  }
+
+  /**
+   * Get the feeds of a kind kept in columns, see {@link FacadeClientOptions#columnarFeeds(boolean)}
+   *
+   * @param type
+   *         the kind of feeds
+   *
+   * @return the columns, or null if the feeds are not returned or not kept in columns
+   */
+  public FeedColumns columns(FeedType type) {
+    FeedsReturn feeds = feeds(type);
+    return feeds == null ? null : feeds.columns();
+  }
+
   @Override
   public String toString() {
     return "{status:" + iStatus + ", portfolios:" + iPortfoliosReturn + "," + "benchmark-portfolios:"
@@ -174,11 +276,15 @@ public class FeedsReturns {
   }
 
   /**
-   * Figure out what will be the following request based on the previous returned feeds
+   * Figure out what will be the following request based on the previous returned feeds. If the run tracks its feeds
+   * with cursors, as {@link StrategyPlayer} does, the kinds of feeds found unchanged recently are left out.
    *
    * @return the GetFeedsRequest object which could be sent directly to the server
    */
   public GetFeedsRequest nextRequest() {
+    if (iReq.cursors() != null)
+      return iReq.cursors().nextRequest(this);
+
     GetFeedsRequest req = GetFeedsRequest.create(iReq.runID());
     if (iReq.portfolios() != null)
       req.portfolios(
@@ -209,7 +315,7 @@ public class FeedsReturns {
 
   /**
    * When NormalExit status has been detected by the client, to avoid synchronization problem, this request pulls
-   * everything if has not been pulled already
+   * everything if has not been pulled already, including the kinds of feeds left out by the cursors of the run
    *
    * @param includeGrids
    *         if grids are needed to be pulled, usually true when "run", false for "build" actions
@@ -217,6 +323,9 @@ public class FeedsReturns {
    * @return the GetFeedsRequest object which could be sent directly to the server
    */
   public GetFeedsRequest lastRequest(boolean includeGrids) {
+    if (iReq.cursors() != null)
+      return iReq.cursors().lastRequest(this, includeGrids);
+
     GetFeedsRequest req = GetFeedsRequest.create(iReq.runID());
     if (iReq.portfolios() != null)
       req.portfolios(
@@ -0,0 +1,15 @@
+package com.ricequant.apps.stress_test.client;
+
+/**
+ * A handle of the feeds being delivered by a {@link FeedsTransport}
+ *
+ * @author chenfeng
+ */
+public interface FeedsSubscription {
+
+  /**
+   * Stop receiving feeds and release the resources held by the subscription. No feeds will be delivered after the
+   * method returns.
+   */
+  void cancel();
+}
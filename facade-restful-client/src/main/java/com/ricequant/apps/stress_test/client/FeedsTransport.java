@@ -0,0 +1,27 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The way feeds of a running strategy are delivered from the facade to the client
+ *
+ * @author chenfeng
+ */
+public interface FeedsTransport {
+
+  /**
+   * Start receiving feeds of a run
+   *
+   * @param request
+   *         the request describing the run-id and the feeds to receive, with the start indices to begin with
+   * @param feedsAcceptor
+   *         callback to receive the feeds, returns true to keep receiving the following feeds, false to stop
+   * @param onFailure
+   *         callback when the transport gives up delivering feeds, no feeds will be delivered afterwards
+   *
+   * @return the subscription which can be used to stop receiving feeds at any time
+   */
+  FeedsSubscription subscribe(GetFeedsRequest request, Predicate<FeedsReturns> feedsAcceptor,
+          Consumer<Throwable> onFailure);
+}
@@ -32,6 +32,8 @@ public class GetFeedsRequest {
 
   private IndexParams iBenchmarkPortfoliosParams;
 
+  private FeedCursors iCursors;
+
   private GetFeedsRequest(long runID) {
     iRunID = runID;
   }
@@ -48,6 +50,15 @@ public class GetFeedsRequest {
     return new GetFeedsRequest(runID);
   }
 
+  GetFeedsRequest cursors(FeedCursors cursors) {
+    iCursors = cursors;
+    return this;
+  }
+
+  FeedCursors cursors() {
+    return iCursors;
+  }
+
   IndexParams portfolios() {
     return iPortfoliosParams;
   }
@@ -219,6 +230,14 @@ public class GetFeedsRequest {
       this.length = length;
     }
 
+    String portfolioName() {
+      return portfolioName;
+    }
+
+    int startIndex() {
+      return startIndex;
+    }
+
     int length() {
       return length;
     }
@@ -0,0 +1,181 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative long values with a fixed memory footprint. Values are kept in log-linear
+ * buckets in the same spirit as HdrHistogram: every power of two is split into 64 linear sub-buckets, so the error of
+ * any reported value is below 1.6%. Recording a value never allocates.
+ *
+ * @author chenfeng
+ */
+public class LatencyHistogram {
+
+  private static final int cSubBucketBits = 7;
+
+  private static final int cSubBucketCount = 1 << cSubBucketBits;
+
+  private static final int cSubBucketHalfCount = cSubBucketCount >> 1;
+
+  private final long iHighestTrackableValue;
+
+  private final AtomicLongArray iCounts;
+
+  private final AtomicLong iTotalCount = new AtomicLong(0);
+
+  private final AtomicLong iTotalValue = new AtomicLong(0);
+
+  private final AtomicLong iMin = new AtomicLong(Long.MAX_VALUE);
+
+  private final AtomicLong iMax = new AtomicLong(0);
+
+  private LatencyHistogram(long highestTrackableValue) {
+    iHighestTrackableValue = highestTrackableValue;
+    iCounts = new AtomicLongArray(bucketIndex(highestTrackableValue) + 1);
+  }
+
+  /**
+   * Creates an empty histogram
+   *
+   * @param highestTrackableValue
+   *         values above this are recorded as this value, it decides the memory used by the histogram
+   *
+   * @return the histogram
+   */
+  public static LatencyHistogram create(long highestTrackableValue) {
+    if (highestTrackableValue < cSubBucketCount)
+      highestTrackableValue = cSubBucketCount;
+    return new LatencyHistogram(highestTrackableValue);
+  }
+
+  private static int bucketIndex(long value) {
+    if (value < cSubBucketCount)
+      return (int) value;
+
+    int shift = 64 - Long.numberOfLeadingZeros(value) - cSubBucketBits;
+    return shift * cSubBucketHalfCount + (int) (value >>> shift);
+  }
+
+  private static long highestEquivalentValue(int index) {
+    if (index < cSubBucketCount)
+      return index;
+
+    int shift = index / cSubBucketHalfCount - 1;
+    long lowest = (long) (index - shift * cSubBucketHalfCount) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  /**
+   * Record a value
+   *
+   * @param value
+   *         the value, negative values are recorded as 0
+   */
+  public void record(long value) {
+    if (value < 0)
+      value = 0;
+    if (value > iHighestTrackableValue)
+      value = iHighestTrackableValue;
+
+    iCounts.incrementAndGet(bucketIndex(value));
+    iTotalCount.incrementAndGet();
+    iTotalValue.addAndGet(value);
+
+    long min;
+    while (value < (min = iMin.get()) && !iMin.compareAndSet(min, value))
+      ;
+
+    long max;
+    while (value > (max = iMax.get()) && !iMax.compareAndSet(max, value))
+      ;
+  }
+
+  /**
+   * Number of values recorded
+   *
+   * @return the count
+   */
+  public long count() {
+    return iTotalCount.get();
+  }
+
+  /**
+   * The exact arithmetic mean of recorded values
+   *
+   * @return the mean, or 0 if nothing was recorded
+   */
+  public double mean() {
+    long count = iTotalCount.get();
+    return count == 0 ? 0 : (double) iTotalValue.get() / count;
+  }
+
+  /**
+   * The exact smallest value recorded
+   *
+   * @return the minimum, or 0 if nothing was recorded
+   */
+  public long min() {
+    return iTotalCount.get() == 0 ? 0 : iMin.get();
+  }
+
+  /**
+   * The exact largest value recorded
+   *
+   * @return the maximum, or 0 if nothing was recorded
+   */
+  public long max() {
+    return iMax.get();
+  }
+
+  /**
+   * The value at the given percentile
+   *
+   * @param percentile
+   *         a number in range [0, 1], e.g. 0.99 for p99
+   *
+   * @return the highest value equivalent to the bucket which the percentile falls in, bounded by {@link #max()}; 0 if
+   * nothing was recorded
+   */
+  public long percentile(double percentile) {
+    long count = iTotalCount.get();
+    if (count == 0)
+      return 0;
+
+    long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 1) * count);
+    if (rank < 1)
+      rank = 1;
+
+    long seen = 0;
+    for (int i = 0; i < iCounts.length(); i++) {
+      seen += iCounts.get(i);
+      if (seen >= rank)
+        return Math.min(highestEquivalentValue(i), max());
+    }
+
+    return max();
+  }
+
+  /**
+   * Clear all recorded values. Not atomic with regard to concurrent recording.
+   */
+  public void reset() {
+    for (int i = 0; i < iCounts.length(); i++)
+      iCounts.set(i, 0);
+    iTotalCount.set(0);
+    iTotalValue.set(0);
+    iMin.set(Long.MAX_VALUE);
+    iMax.set(0);
+  }
+
+  /**
+   * Summary of the distribution, like: {count:10,mean:12.3,p50:12,p90:15,p99:20,p999:20,max:20}
+   *
+   * @return the summary string
+   */
+  @Override
+  public String toString() {
+    return "{count:" + count() + ",mean:" + String.format("%.1f", mean()) + ",p50:" + percentile(0.5) + ",p90:"
+            + percentile(0.9) + ",p99:" + percentile(0.99) + ",p999:" + percentile(0.999) + ",max:" + max() + "}";
+  }
+}
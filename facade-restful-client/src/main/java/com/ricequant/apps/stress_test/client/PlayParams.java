@@ -2,6 +2,8 @@ package com.ricequant.apps.stress_test.client;
 
 import io.vertx.core.json.JsonObject;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Parameters needed to run the strategy
  *
@@ -31,58 +33,71 @@ public class PlayParams {
 
   private String iPortfolioName;
 
+  private volatile byte[] iEncoded;
+
   public PlayParams portfolioName(String portfolioName) {
     iPortfolioName = portfolioName;
+    iEncoded = null;
     return this;
   }
 
   public PlayParams benchmarkName(String benchmarkName) {
     iBenchmarkName = benchmarkName;
+    iEncoded = null;
     return this;
   }
 
   public PlayParams startDate(int date) {
     iStartDate = date;
+    iEncoded = null;
     return this;
   }
 
   public PlayParams endDate(int date) {
     iEndDate = date;
+    iEncoded = null;
     return this;
   }
 
   public PlayParams code(String code) {
     iCode = code;
+    iEncoded = null;
     return this;
   }
 
   public PlayParams owner(String owner) {
     iOwner = owner;
+    iEncoded = null;
     return this;
   }
 
   public PlayParams initialCash(double cash) {
     iCash = cash;
+    iEncoded = null;
     return this;
   }
 
   public PlayParams runType(String runType) {
     iRunType = runType;
+    iEncoded = null;
     return this;
   }
 
   public PlayParams title(String title) {
     iTitle = title;
+    iEncoded = null;
     return this;
   }
 
   public PlayParams timeUnit(String timeUnit) {
     iTimeUnit = timeUnit;
+    iEncoded = null;
     return this;
   }
 
   public PlayParams language(String language) {
     iLanguage = language;
+    iEncoded = null;
     return this;
   }
 
@@ -100,9 +115,52 @@ public class PlayParams {
     obj.put("benchmark-name", iBenchmarkName);
   }
 
-  public String toString() {
+  // the encoded JSON form, kept until a parameter changes since it is the same for every run
+  byte[] encoded() {
+    byte[] encoded = iEncoded;
+    if (encoded == null) {
+      encoded = toJsonObject().encode().getBytes(StandardCharsets.UTF_8);
+      iEncoded = encoded;
+    }
+    return encoded;
+  }
+
+  /**
+   * Convert to the JSON form used by the play command
+   *
+   * @return a new JSON object
+   */
+  public JsonObject toJsonObject() {
     JsonObject json = new JsonObject();
     appendToJsonObject(json);
-    return json.toString();
+    return json;
+  }
+
+  /**
+   * Restore the parameters converted by {@link #toJsonObject()}
+   *
+   * @param json
+   *         the JSON object
+   *
+   * @return the parameters
+   */
+  public static PlayParams fromJsonObject(JsonObject json) {
+    PlayParams params = new PlayParams();
+    params.iCode = json.getString("code", params.iCode);
+    params.iOwner = json.getString("owner", params.iOwner);
+    params.iTitle = json.getString("title", params.iTitle);
+    params.iTimeUnit = json.getString("time-unit", params.iTimeUnit);
+    params.iLanguage = json.getString("language", params.iLanguage);
+    params.iStartDate = json.getInteger("start-date", params.iStartDate);
+    params.iEndDate = json.getInteger("end-date", params.iEndDate);
+    params.iCash = json.getDouble("initial-cash", params.iCash);
+    params.iRunType = json.getString("run-type", params.iRunType);
+    params.iPortfolioName = json.getString("portfolio-name");
+    params.iBenchmarkName = json.getString("benchmark-name");
+    return params;
+  }
+
+  public String toString() {
+    return toJsonObject().toString();
   }
 }
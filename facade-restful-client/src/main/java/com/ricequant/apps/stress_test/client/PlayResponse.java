@@ -13,7 +13,16 @@ public class PlayResponse {
 
   private final long iRunID;
 
+  private final boolean iClientFailure;
+
+  private PlayResponse(String reason) {
+    iReason = reason;
+    iRunID = -1;
+    iClientFailure = true;
+  }
+
   PlayResponse(JsonObject ret) {
+    iClientFailure = false;
     Integer status = ret.getInteger("status");
 
     if (status == null || status != 0) {
@@ -38,6 +47,10 @@ public class PlayResponse {
     }
   }
 
+  static PlayResponse clientFailure(Throwable cause) {
+    return new PlayResponse("Client gave up sending the play command: " + cause.getMessage());
+  }
+
   /**
    * See if the play command succeeds
    *
@@ -47,6 +60,15 @@ public class PlayResponse {
     return iReason == null;
   }
 
+  /**
+   * See if the play command failed because the client gave up sending it, rather than being refused by the server
+   *
+   * @return true if the client gave up
+   */
+  public boolean isClientFailure() {
+    return iClientFailure;
+  }
+
   /**
    * The reason of failures
    *
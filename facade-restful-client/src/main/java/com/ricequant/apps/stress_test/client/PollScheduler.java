@@ -0,0 +1,84 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long to wait before the next pull. The delay drops to the minimum whenever a pull brings new feeds or a
+ * change of the lifecycle status, and grows exponentially up to the maximum while nothing changes. Every delay is
+ * randomized by the jitter ratio so that players started together do not pull together, and all pulls of the client
+ * share a global {@link RequestBudget}.
+ *
+ * @author chenfeng
+ */
+class PollScheduler {
+
+  private final long iMinDelayMillis;
+
+  private final long iMaxDelayMillis;
+
+  private final double iBackoffFactor;
+
+  private final double iJitter;
+
+  private final RequestBudget iBudget;
+
+  private PollScheduler(FacadeClientOptions options) {
+    iMinDelayMillis = Math.max(1, options.minPollDelayMillis());
+    iMaxDelayMillis = Math.max(iMinDelayMillis, options.maxPollDelayMillis());
+    iBackoffFactor = Math.max(1, options.pollBackoffFactor());
+    iJitter = Math.min(Math.max(0, options.pollJitter()), 1);
+    iBudget = RequestBudget.create(options.maxPullsPerSecond());
+  }
+
+  static PollScheduler create(FacadeClientOptions options) {
+    return new PollScheduler(options);
+  }
+
+  long minDelayMillis() {
+    return iMinDelayMillis;
+  }
+
+  /**
+   * The delay before the next pull, without jitter
+   *
+   * @param currentDelayMillis
+   *         the delay used before the last pull
+   * @param progressed
+   *         true if the last pull returned new feeds or a new lifecycle status
+   *
+   * @return the delay in milliseconds
+   */
+  long nextDelayMillis(long currentDelayMillis, boolean progressed) {
+    if (progressed)
+      return iMinDelayMillis;
+
+    return Math.min(iMaxDelayMillis, Math.max(iMinDelayMillis, (long) (currentDelayMillis * iBackoffFactor)));
+  }
+
+  /**
+   * Apply jitter to the delay
+   *
+   * @param delayMillis
+   *         the delay returned by {@link #nextDelayMillis(long, boolean)}
+   *
+   * @return milliseconds to wait before the pull is due, after which it still waits for {@link #budgetDelayMillis()}
+   */
+  long delayBeforePull(long delayMillis) {
+    if (iJitter > 0)
+      delayMillis = (long) (delayMillis * (1 + iJitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1)));
+
+    return delayMillis;
+  }
+
+  /**
+   * Reserve a slot in the request budget for a pull which is due now. It is only called once the delay of the pull has
+   * passed, so that a run backing off does not hold back the pulls of other runs due before it.
+   *
+   * @return milliseconds to wait for the slot before sending the pull, 0 to send it at once
+   */
+  long budgetDelayMillis() {
+    long now = System.nanoTime();
+    return TimeUnit.NANOSECONDS.toMillis(iBudget.reserve(now) - now);
+  }
+}
@@ -0,0 +1,96 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Delivers feeds by pulling them periodically, with delays decided by the {@link PollScheduler}
+ *
+ * @author chenfeng
+ */
+class PollingFeedsTransport implements FeedsTransport {
+
+  private final FacadeClient iClient;
+
+  private final PollScheduler iScheduler;
+
+  private PollingFeedsTransport(FacadeClient client, PollScheduler scheduler) {
+    iClient = client;
+    iScheduler = scheduler;
+  }
+
+  static PollingFeedsTransport create(FacadeClient client, PollScheduler scheduler) {
+    return new PollingFeedsTransport(client, scheduler);
+  }
+
+  @Override
+  public FeedsSubscription subscribe(GetFeedsRequest request, Predicate<FeedsReturns> feedsAcceptor,
+          Consumer<Throwable> onFailure) {
+    PollingSubscription subscription = new PollingSubscription(feedsAcceptor, onFailure);
+    subscription.poll(request);
+    return subscription;
+  }
+
+  private class PollingSubscription implements FeedsSubscription {
+
+    private final Predicate<FeedsReturns> iFeedsAcceptor;
+
+    private final Consumer<Throwable> iOnFailure;
+
+    private volatile boolean iCancelled = false;
+
+    private volatile long iTimerID = -1;
+
+    private long iDelayMillis = iScheduler.minDelayMillis();
+
+    private String iLastStatus;
+
+    private PollingSubscription(Predicate<FeedsReturns> feedsAcceptor, Consumer<Throwable> onFailure) {
+      iFeedsAcceptor = feedsAcceptor;
+      iOnFailure = onFailure;
+    }
+
+    private void poll(GetFeedsRequest req) {
+      if (iCancelled)
+        return;
+
+      iClient.pullFeeds(req, feeds -> {
+        if (iCancelled)
+          return;
+
+        if (!iFeedsAcceptor.test(feeds)) {
+          iCancelled = true;
+          return;
+        }
+
+        GetFeedsRequest next = feeds.nextRequest();
+        String status = feeds.status() == null ? null : feeds.status().getString("LifeCycleStatus");
+        boolean progressed = feeds.hasNewFeeds() || !Objects.equals(status, iLastStatus);
+        iLastStatus = status;
+        iDelayMillis = iScheduler.nextDelayMillis(iDelayMillis, progressed);
+
+        iTimerID = iClient.setTimer(iScheduler.delayBeforePull(iDelayMillis), () -> pollWithinBudget(next));
+      }, e -> {
+        if (!iCancelled)
+          iOnFailure.accept(e);
+      });
+    }
+
+    // the pull is due, wait for its slot in the request budget if the budget is used up
+    private void pollWithinBudget(GetFeedsRequest req) {
+      long delayMillis = iScheduler.budgetDelayMillis();
+      if (delayMillis <= 0)
+        poll(req);
+      else
+        iTimerID = iClient.setTimer(delayMillis, () -> poll(req));
+    }
+
+    @Override
+    public void cancel() {
+      iCancelled = true;
+      if (iTimerID >= 0)
+        iClient.cancelTimer(iTimerID);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Occupancy of the connection pool of a {@link FacadeClient}: how many requests are in flight, and how many are
+ * waiting for a free connection. The queue depth is sampled each time a request asks for a connection, so if it stays
+ * at 0 the client is not the bottleneck of the test.
+ *
+ * @author chenfeng
+ */
+public class PoolMetrics implements PoolMetricsMXBean {
+
+  private static final long cHighestTrackableDepth = 1000000;
+
+  private final int iMaxInFlight;
+
+  private final LongAdder iAcquired = new LongAdder();
+
+  private final LongAdder iQueued = new LongAdder();
+
+  private final LatencyHistogram iQueueDepth = LatencyHistogram.create(cHighestTrackableDepth);
+
+  private volatile int iInFlight = 0;
+
+  private volatile int iWaiting = 0;
+
+  private volatile int iPeakWaiting = 0;
+
+  PoolMetrics(int maxInFlight) {
+    iMaxInFlight = maxInFlight;
+  }
+
+  // called by the connection gate while holding its lock
+  void recordAcquire(int inFlight, int waiting, boolean queued) {
+    iAcquired.increment();
+    if (queued)
+      iQueued.increment();
+    iQueueDepth.record(queued ? waiting : 0);
+    update(inFlight, waiting);
+  }
+
+  // called by the connection gate while holding its lock
+  void update(int inFlight, int waiting) {
+    iInFlight = inFlight;
+    iWaiting = waiting;
+    if (waiting > iPeakWaiting)
+      iPeakWaiting = waiting;
+  }
+
+  /**
+   * Distribution of the number of requests waiting for a free connection, including the request itself, seen by each
+   * request when it is issued. Requests which get a connection immediately count as 0.
+   *
+   * @return the histogram
+   */
+  public LatencyHistogram queueDepth() {
+    return iQueueDepth;
+  }
+
+  @Override
+  public int getMaxInFlight() {
+    return iMaxInFlight;
+  }
+
+  @Override
+  public int getInFlight() {
+    return iInFlight;
+  }
+
+  @Override
+  public int getWaiting() {
+    return iWaiting;
+  }
+
+  @Override
+  public int getPeakWaiting() {
+    return iPeakWaiting;
+  }
+
+  @Override
+  public long getAcquired() {
+    return iAcquired.sum();
+  }
+
+  @Override
+  public long getQueued() {
+    return iQueued.sum();
+  }
+
+  @Override
+  public double getQueueDepthMean() {
+    return iQueueDepth.mean();
+  }
+
+  @Override
+  public long getQueueDepthP99() {
+    return iQueueDepth.percentile(0.99);
+  }
+
+  @Override
+  public String toString() {
+    return "{max-in-flight:" + iMaxInFlight + ",in-flight:" + iInFlight + ",waiting:" + iWaiting + ",peak-waiting:"
+            + iPeakWaiting + ",acquired:" + getAcquired() + ",queued:" + getQueued() + ",queue-depth:" + iQueueDepth
+            + "}";
+  }
+}
@@ -0,0 +1,25 @@
+package com.ricequant.apps.stress_test.client;
+
+/**
+ * The JMX view of {@link PoolMetrics}
+ *
+ * @author chenfeng
+ */
+public interface PoolMetricsMXBean {
+
+  int getMaxInFlight();
+
+  int getInFlight();
+
+  int getWaiting();
+
+  int getPeakWaiting();
+
+  long getAcquired();
+
+  long getQueued();
+
+  double getQueueDepthMean();
+
+  long getQueueDepthP99();
+}
@@ -0,0 +1,56 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free rate limiter shared by all requests of a kind. Instead of blocking, it hands out the earliest time slot
+ * at which a request may be sent, so that requests are spread evenly and never exceed the configured rate. Slots are
+ * handed out in the order they are reserved, so a request reserves its slot once it is due rather than ahead of time,
+ * or a request due late would hold back the ones due before it.
+ *
+ * @author chenfeng
+ */
+class RequestBudget {
+
+  private final long iIntervalNanos;
+
+  private final AtomicLong iNextFreeNanos = new AtomicLong(Long.MIN_VALUE);
+
+  private RequestBudget(long intervalNanos) {
+    iIntervalNanos = intervalNanos;
+  }
+
+  /**
+   * Creates a budget
+   *
+   * @param maxRequestsPerSecond
+   *         the maximum number of requests per second, 0 or negative for unlimited
+   *
+   * @return the budget
+   */
+  static RequestBudget create(double maxRequestsPerSecond) {
+    return new RequestBudget(
+            maxRequestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond) : 0);
+  }
+
+  /**
+   * Reserve a slot for one request which is due now
+   *
+   * @param nowNanos
+   *         the current {@link System#nanoTime()}
+   *
+   * @return the {@link System#nanoTime()} at which the request may be sent, never earlier than nowNanos
+   */
+  long reserve(long nowNanos) {
+    if (iIntervalNanos == 0)
+      return nowNanos;
+
+    while (true) {
+      long nextFree = iNextFreeNanos.get();
+      long slot = nextFree == Long.MIN_VALUE || nowNanos - nextFree > 0 ? nowNanos : nextFree;
+      if (iNextFreeNanos.compareAndSet(nextFree, slot + iIntervalNanos))
+        return slot;
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package com.ricequant.apps.stress_test.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes the bodies of the commands sent by a {@link FacadeClient} straight into pooled Netty buffers. Everything
+ * constant, such as the credentials, the command names, the keys and the encoded {@link PlayParams}, is encoded to
+ * bytes once as a template and copied as is, and the numbers which change between requests, such as run-ids and start
+ * indices, are written as ASCII digits in place, so that no JSON object, intermediate string or buffer is built per
+ * request. The bodies are the same bytes as the encoded JSON objects the commands used to build.
+ * <p>
+ * Every body is a new buffer from the pooled allocator, owned by the caller, who must release it once the command is
+ * done with, including all its retries.
+ *
+ * @author chenfeng
+ */
+class RequestEncoder {
+
+  private static final byte[] cFeedsParamsKey = bytes(",\"feeds-params\":");
+
+  private static final byte[] cRunIDKey = bytes("{\"run-id\":");
+
+  private static final byte[] cPortfolioNameKey = bytes(":{\"portfolio-name\":");
+
+  private static final byte[] cStartIndexKey = bytes(",\"start-index\":");
+
+  private static final byte[] cUnnamedStartIndexKey = bytes(":{\"start-index\":");
+
+  private static final byte[] cLengthKey = bytes(",\"length\":");
+
+  private static final byte[] cPrecisionTail = bytes(",\"precision\":1}");
+
+  private static final byte[] cStopRunIDKey = bytes(",\"run-id\":");
+
+  private static final byte[][] cFeedKeys = {bytes(",\"portfolios\""), bytes(",\"benchmark-portfolios\""),
+          bytes(",\"positions\""), bytes(",\"trades\""), bytes(",\"orders\""), bytes(",\"risks\""), bytes(",\"logs\""),
+          bytes(",\"plots\""), bytes(",\"portfolio-grids\""), bytes(",\"risk-grids\"")};
+
+  private static final Map<String, byte[]> cEncodedNames = new ConcurrentHashMap<>();
+
+  private static final ByteBufAllocator cAllocator = PooledByteBufAllocator.DEFAULT;
+
+  private final byte[] iPlayPrefix;
+
+  private final byte[] iPullPrefix;
+
+  private final byte[] iPullBatchPrefix;
+
+  private final byte[] iStopPrefix;
+
+  private final byte[] iStopAll;
+
+  private RequestEncoder(JsonObject authenticatingMessage) {
+    iPlayPrefix = prefix(authenticatingMessage, "play");
+    iPullPrefix = prefix(authenticatingMessage, "pull");
+    iPullBatchPrefix = prefix(authenticatingMessage, "pull-batch");
+    iStopPrefix = prefix(authenticatingMessage, "stop");
+    iStopAll = bytes(command(authenticatingMessage, "stop-all").encode());
+  }
+
+  /**
+   * Creates an encoder
+   *
+   * @param authenticatingMessage
+   *         the message carrying the credentials, which every command starts with
+   *
+   * @return the encoder
+   */
+  static RequestEncoder create(JsonObject authenticatingMessage) {
+    return new RequestEncoder(authenticatingMessage);
+  }
+
+  ByteBuf play(PlayParams params) {
+    byte[] encoded = params.encoded();
+    // the encoded parameters start with '{', which is replaced by the ',' following the command
+    return cAllocator.directBuffer(iPlayPrefix.length + encoded.length).writeBytes(iPlayPrefix).writeByte(',')
+            .writeBytes(encoded, 1, encoded.length - 1);
+  }
+
+  ByteBuf pull(GetFeedsRequest request) {
+    ByteBuf buffer = cAllocator.directBuffer(iPullPrefix.length + 512).writeBytes(iPullPrefix)
+            .writeBytes(cFeedsParamsKey);
+    appendFeedsParams(buffer, request);
+    return buffer.writeByte('}');
+  }
+
+  ByteBuf pullBatch(Collection<GetFeedsRequest> requests) {
+    ByteBuf buffer = cAllocator.directBuffer(iPullBatchPrefix.length + 512 * requests.size())
+            .writeBytes(iPullBatchPrefix).writeBytes(cFeedsParamsKey).writeByte('[');
+    boolean first = true;
+    for (GetFeedsRequest request : requests) {
+      if (!first)
+        buffer.writeByte(',');
+      first = false;
+      appendFeedsParams(buffer, request);
+    }
+    return buffer.writeByte(']').writeByte('}');
+  }
+
+  ByteBuf stop(long runID) {
+    ByteBuf buffer = cAllocator.directBuffer(iStopPrefix.length + 32).writeBytes(iStopPrefix)
+            .writeBytes(cStopRunIDKey);
+    appendLong(buffer, runID);
+    return buffer.writeByte('}');
+  }
+
+  ByteBuf stopAll() {
+    return cAllocator.directBuffer(iStopAll.length).writeBytes(iStopAll);
+  }
+
+  // same order of keys as GetFeedsRequest#toJsonObject
+  private static void appendFeedsParams(ByteBuf buffer, GetFeedsRequest request) {
+    buffer.writeBytes(cRunIDKey);
+    appendLong(buffer, request.runID());
+    appendIndexParams(buffer, 0, request.portfolios());
+    appendIndexParams(buffer, 1, request.benchmarkPortfolios());
+    appendIndexParams(buffer, 2, request.positions());
+    appendIndexParams(buffer, 3, request.trades());
+    appendIndexParams(buffer, 4, request.orders());
+    appendIndexParams(buffer, 5, request.risks());
+    appendIndexParams(buffer, 6, request.logs());
+    appendIndexParams(buffer, 7, request.plots());
+    appendIndexParams(buffer, 8, request.portfolioGrids());
+    appendIndexParams(buffer, 9, request.riskGrids());
+    buffer.writeByte('}');
+  }
+
+  private static void appendIndexParams(ByteBuf buffer, int feedKey, GetFeedsRequest.IndexParams params) {
+    if (params == null)
+      return;
+
+    buffer.writeBytes(cFeedKeys[feedKey]);
+    if (params.portfolioName() != null) {
+      buffer.writeBytes(cPortfolioNameKey)
+              .writeBytes(cEncodedNames.computeIfAbsent(params.portfolioName(), RequestEncoder::encodeString))
+              .writeBytes(cStartIndexKey);
+    }
+    else
+      buffer.writeBytes(cUnnamedStartIndexKey);
+    appendLong(buffer, params.startIndex());
+    buffer.writeBytes(cLengthKey);
+    appendLong(buffer, params.length());
+    buffer.writeBytes(cPrecisionTail);
+  }
+
+  /**
+   * Append the decimal form of a number as ASCII digits, without building a string
+   *
+   * @param buffer
+   *         the buffer to append to
+   * @param value
+   *         the number
+   */
+  static void appendLong(ByteBuf buffer, long value) {
+    if (value == Long.MIN_VALUE) {
+      buffer.writeBytes(bytes(Long.toString(value)));
+      return;
+    }
+
+    if (value < 0) {
+      buffer.writeByte('-');
+      value = -value;
+    }
+
+    long divisor = 1;
+    while (divisor <= value / 10)
+      divisor *= 10;
+
+    for (; divisor > 0; divisor /= 10)
+      buffer.writeByte((int) ('0' + value / divisor % 10));
+  }
+
+  // the message up to the command, without the closing brace
+  private static byte[] prefix(JsonObject authenticatingMessage, String command) {
+    String encoded = command(authenticatingMessage, command).encode();
+    return bytes(encoded.substring(0, encoded.length() - 1));
+  }
+
+  // the message of a command as the commands used to build it, keeping the order of the keys which copy() loses
+  private static JsonObject command(JsonObject authenticatingMessage, String command) {
+    return new JsonObject(new LinkedHashMap<>(authenticatingMessage.getMap())).put("command", command);
+  }
+
+  private static byte[] encodeString(String value) {
+    String encoded = new JsonObject().put("v", value).encode();
+    return bytes(encoded.substring("{\"v\":".length(), encoded.length() - 1));
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
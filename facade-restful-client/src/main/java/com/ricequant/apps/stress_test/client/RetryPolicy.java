@@ -0,0 +1,62 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed request is sent again. The delay starts at the minimum and grows exponentially up
+ * to the maximum with each attempt, randomized by the jitter ratio so that requests failed together are not retried
+ * together. Shared by all commands of a {@link FacadeClient}.
+ *
+ * @author chenfeng
+ */
+class RetryPolicy {
+
+  private final int iMaxAttempts;
+
+  private final long iMinDelayMillis;
+
+  private final long iMaxDelayMillis;
+
+  private final double iBackoffFactor;
+
+  private final double iJitter;
+
+  private RetryPolicy(FacadeClientOptions options) {
+    iMaxAttempts = options.maxAttempts();
+    iMinDelayMillis = Math.max(1, options.retryMinDelayMillis());
+    iMaxDelayMillis = Math.max(iMinDelayMillis, options.retryMaxDelayMillis());
+    iBackoffFactor = Math.max(1, options.retryBackoffFactor());
+    iJitter = Math.min(Math.max(0, options.retryJitter()), 1);
+  }
+
+  static RetryPolicy create(FacadeClientOptions options) {
+    return new RetryPolicy(options);
+  }
+
+  /**
+   * See if a request may be sent again
+   *
+   * @param attempts
+   *         number of times the request has been sent
+   *
+   * @return true to retry, false to give up
+   */
+  boolean canRetry(int attempts) {
+    return iMaxAttempts <= 0 || attempts < iMaxAttempts;
+  }
+
+  /**
+   * The delay before sending a request again
+   *
+   * @param attempts
+   *         number of times the request has been sent
+   *
+   * @return milliseconds
+   */
+  long delayMillis(int attempts) {
+    double delay = Math.min(iMaxDelayMillis, iMinDelayMillis * Math.pow(iBackoffFactor, attempts - 1));
+    if (iJitter > 0)
+      delay *= 1 + iJitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+    return Math.max(1, (long) delay);
+  }
+}
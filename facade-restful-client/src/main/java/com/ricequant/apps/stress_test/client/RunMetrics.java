@@ -0,0 +1,101 @@
+package com.ricequant.apps.stress_test.client;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The runs played by the {@link StrategyPlayer}s of a {@link FacadeClient} which have not finished yet, counted by the
+ * last lifecycle status seen for them, and the number of feed records they received.
+ *
+ * @author chenfeng
+ */
+public class RunMetrics {
+
+  private final Map<String, AtomicInteger> iByStatus = new ConcurrentHashMap<>();
+
+  private final AtomicInteger iInFlight = new AtomicInteger(0);
+
+  private final AtomicInteger iStarting = new AtomicInteger(0);
+
+  private final LongAdder iFeedRecords = new LongAdder();
+
+  RunMetrics() {
+  }
+
+  void started() {
+    iInFlight.incrementAndGet();
+    counter(null).incrementAndGet();
+  }
+
+  void moved(String from, String to) {
+    if (from != null && from.equals(to))
+      return;
+
+    counter(from).decrementAndGet();
+    counter(to).incrementAndGet();
+  }
+
+  void finished(String last) {
+    counter(last).decrementAndGet();
+    iInFlight.decrementAndGet();
+  }
+
+  void recordFeeds(int numRecords) {
+    iFeedRecords.add(numRecords);
+  }
+
+  /**
+   * Number of runs started and not finished
+   *
+   * @return the number
+   */
+  public int inFlight() {
+    return iInFlight.get();
+  }
+
+  /**
+   * Number of runs started and not seen with any lifecycle status yet, including those being submitted
+   *
+   * @return the number
+   */
+  public int starting() {
+    return iStarting.get();
+  }
+
+  /**
+   * Number of unfinished runs by the last lifecycle status seen
+   *
+   * @return a snapshot of the counts, statuses without runs left out
+   */
+  public Map<String, Integer> byStatus() {
+    Map<String, Integer> ret = new TreeMap<>();
+    for (Map.Entry<String, AtomicInteger> entry : iByStatus.entrySet()) {
+      int count = entry.getValue().get();
+      if (count > 0)
+        ret.put(entry.getKey(), count);
+    }
+    return ret;
+  }
+
+  /**
+   * Number of feed records received by all runs so far, grids included
+   *
+   * @return the number
+   */
+  public long feedRecords() {
+    return iFeedRecords.sum();
+  }
+
+  private AtomicInteger counter(String status) {
+    return status == null ? iStarting : iByStatus.computeIfAbsent(status, s -> new AtomicInteger(0));
+  }
+
+  @Override
+  public String toString() {
+    return "{in-flight:" + iInFlight.get() + ",starting:" + iStarting.get() + ",by-status:" + byStatus()
+            + ",feed-records:" + feedRecords() + "}";
+  }
+}
@@ -0,0 +1,170 @@
+package com.ricequant.apps.stress_test.client;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the time of a strategy run was spent, reported by {@link StrategyPlayer} when the run exits. All components
+ * observed by the client are taken from the monotonic {@link System#nanoTime()} clock:
+ * <pre>
+ * play called    run-id received    first non-queued status    exit status seen    last feeds received
+ *      |--- submit ---|                     |                          |                    |
+ *      |------------ time to running -------|--------- running --------|------ drain -------|
+ *      |----------------------------------------- total -------------------------------------|
+ * </pre>
+ * Components never reached, e.g. running of a run rejected by the facade, are -1.
+ *
+ * @author chenfeng
+ */
+public class RunTiming {
+
+  private final String iStatus;
+
+  private final long iSubmitNanos;
+
+  private final long iTimeToRunningNanos;
+
+  private final long iRunningNanos;
+
+  private final long iDrainNanos;
+
+  private final long iTotalNanos;
+
+  private final long iServerExecutionMillis;
+
+  RunTiming(String status, long submitNanos, long timeToRunningNanos, long runningNanos, long drainNanos,
+          long totalNanos, long serverExecutionMillis) {
+    iStatus = status;
+    iSubmitNanos = submitNanos;
+    iTimeToRunningNanos = timeToRunningNanos;
+    iRunningNanos = runningNanos;
+    iDrainNanos = drainNanos;
+    iTotalNanos = totalNanos;
+    iServerExecutionMillis = serverExecutionMillis;
+  }
+
+  /**
+   * The timing of a run whose result is lost, e.g. because the process playing it is gone, which is treated as
+   * "AbnormalExit"
+   *
+   * @param totalNanos
+   *         nanoseconds from starting the run until the result is known to be lost
+   *
+   * @return the timing
+   */
+  public static RunTiming lost(long totalNanos) {
+    return new RunTiming("AbnormalExit", -1, -1, -1, -1, totalNanos, -1);
+  }
+
+  /**
+   * Restore a timing converted by {@link #toJsonObject()}
+   *
+   * @param json
+   *         the JSON object
+   *
+   * @return the timing
+   */
+  public static RunTiming fromJsonObject(JsonObject json) {
+    return new RunTiming(json.getString("status"), json.getLong("submit-nanos", -1L),
+            json.getLong("time-to-running-nanos", -1L), json.getLong("running-nanos", -1L),
+            json.getLong("drain-nanos", -1L), json.getLong("total-nanos", 0L),
+            json.getLong("server-execution-millis", -1L));
+  }
+
+  /**
+   * The lifecycle status the run exited with, see {@link ExecutionStatusHelper}
+   *
+   * @return the status
+   */
+  public String status() {
+    return iStatus;
+  }
+
+  /**
+   * From calling play until the facade answers with the run-id
+   *
+   * @return nanoseconds, or -1 if never answered
+   */
+  public long submitNanos() {
+    return iSubmitNanos;
+  }
+
+  /**
+   * From calling play until the first status which is not queued is received, i.e. the submit latency plus the
+   * queueing in the backend plus up to one poll delay
+   *
+   * @return nanoseconds, or -1 if the run was never seen running
+   */
+  public long timeToRunningNanos() {
+    return iTimeToRunningNanos;
+  }
+
+  /**
+   * From the first status which is not queued until the exit status is received
+   *
+   * @return nanoseconds, or -1 if the run was never seen running
+   */
+  public long runningNanos() {
+    return iRunningNanos;
+  }
+
+  /**
+   * From receiving the exit status until the remaining feeds are received
+   *
+   * @return nanoseconds, or -1 if the exit status was never received
+   */
+  public long drainNanos() {
+    return iDrainNanos;
+  }
+
+  /**
+   * From calling play until the result is reported, which is what the client observes
+   *
+   * @return nanoseconds
+   */
+  public long totalNanos() {
+    return iTotalNanos;
+  }
+
+  /**
+   * The execution time reported by the facade in the status of the run
+   *
+   * @return milliseconds, or -1 if not reported
+   */
+  public long serverExecutionMillis() {
+    return iServerExecutionMillis;
+  }
+
+  /**
+   * {@link #totalNanos()} in milliseconds
+   *
+   * @return milliseconds
+   */
+  public long totalMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(iTotalNanos);
+  }
+
+  /**
+   * Convert to JSON, for passing the timing between processes
+   *
+   * @return a new JSON object
+   */
+  public JsonObject toJsonObject() {
+    return new JsonObject().put("status", iStatus).put("submit-nanos", iSubmitNanos)
+            .put("time-to-running-nanos", iTimeToRunningNanos).put("running-nanos", iRunningNanos)
+            .put("drain-nanos", iDrainNanos).put("total-nanos", iTotalNanos)
+            .put("server-execution-millis", iServerExecutionMillis);
+  }
+
+  @Override
+  public String toString() {
+    return "{status:" + iStatus + ",submit-ms:" + millis(iSubmitNanos) + ",time-to-running-ms:" + millis(
+            iTimeToRunningNanos) + ",running-ms:" + millis(iRunningNanos) + ",drain-ms:" + millis(iDrainNanos)
+            + ",total-ms:" + millis(iTotalNanos) + ",server-execution-ms:" + iServerExecutionMillis + "}";
+  }
+
+  private static long millis(long nanos) {
+    return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
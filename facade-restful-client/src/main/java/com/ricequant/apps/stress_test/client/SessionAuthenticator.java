@@ -0,0 +1,131 @@
+package com.ricequant.apps.stress_test.client;
+
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Holds the session token of a {@link FacadeClient} when session authentication is enabled. The token is obtained with
+ * a single login command and shared by all requests. Requests issued while no valid token is held wait for the login in
+ * progress instead of logging in on their own. The token is refreshed once most of its lifetime has passed, or as soon
+ * as the facade rejects it.
+ *
+ * @author chenfeng
+ */
+class SessionAuthenticator {
+
+  // a token is refreshed after this part of its lifetime, so that requests in flight do not carry an expired one
+  private static final double cRefreshRatio = 0.9;
+
+  private final FacadeClient iClient;
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private final List<Waiter> iWaiting = new ArrayList<>();
+
+  private String iToken;
+
+  private long iRefreshAtNanos;
+
+  private boolean iLoggingIn = false;
+
+  private SessionAuthenticator(FacadeClient client) {
+    iClient = client;
+  }
+
+  static SessionAuthenticator create(FacadeClient client) {
+    return new SessionAuthenticator(client);
+  }
+
+  /**
+   * Get a valid token, logging in first if none is held
+   *
+   * @param onToken
+   *         callback to receive the token
+   * @param onFailure
+   *         callback when the login fails
+   */
+  void withToken(Consumer<String> onToken, Consumer<Throwable> onFailure) {
+    String token;
+    boolean login = false;
+    synchronized (this) {
+      token = iToken;
+      if (token == null || System.nanoTime() - iRefreshAtNanos > 0) {
+        token = null;
+        iWaiting.add(new Waiter(onToken, onFailure));
+        if (!iLoggingIn) {
+          iLoggingIn = true;
+          login = true;
+        }
+      }
+    }
+
+    if (token != null)
+      onToken.accept(token);
+    else if (login)
+      iClient.login(this::onLogin, this::onLoginFailed);
+  }
+
+  /**
+   * Drop a token rejected by the facade, the next request will log in again
+   *
+   * @param token
+   *         the rejected token, nothing is dropped if a new token was obtained meanwhile
+   */
+  synchronized void invalidate(String token) {
+    if (token != null && token.equals(iToken))
+      iToken = null;
+  }
+
+  private void onLogin(JsonObject response) {
+    String token = response.getString("token");
+    Long expiresInMillis = response.getLong("expires-in-millis");
+    long lifetimeNanos = expiresInMillis == null ? TimeUnit.DAYS.toNanos(365)
+            : (long) (TimeUnit.MILLISECONDS.toNanos(expiresInMillis) * cRefreshRatio);
+
+    List<Waiter> waiting;
+    synchronized (this) {
+      iToken = token;
+      iRefreshAtNanos = System.nanoTime() + lifetimeNanos;
+      iLoggingIn = false;
+      waiting = new ArrayList<>(iWaiting);
+      iWaiting.clear();
+    }
+
+    if (iLogger.isDebugEnabled())
+      iLogger.debug("Logged in, token expires in {}ms", expiresInMillis);
+
+    for (Waiter waiter : waiting)
+      waiter.onToken.accept(token);
+  }
+
+  private void onLoginFailed(Throwable cause) {
+    List<Waiter> waiting;
+    synchronized (this) {
+      iLoggingIn = false;
+      waiting = new ArrayList<>(iWaiting);
+      iWaiting.clear();
+    }
+
+    iLogger.error("Unable to log in: {}", cause.getMessage());
+    for (Waiter waiter : waiting)
+      waiter.onFailure.accept(cause);
+  }
+
+  private static class Waiter {
+
+    final Consumer<String> onToken;
+
+    final Consumer<Throwable> onFailure;
+
+    Waiter(Consumer<String> onToken, Consumer<Throwable> onFailure) {
+      this.onToken = onToken;
+      this.onFailure = onFailure;
+    }
+  }
+}
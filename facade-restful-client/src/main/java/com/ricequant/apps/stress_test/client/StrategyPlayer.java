@@ -4,12 +4,11 @@ import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
-import java.util.function.BiConsumer;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
-import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * The class to manage lifecycle of a single strategy run
@@ -18,57 +17,77 @@ import java.util.function.Function;
  */
 public class StrategyPlayer {
 
+  private static final String cServerExecutionTimeKey = "ExecutionTimeMillis";
+
+  private static final String cClientAbortStatus = "ClientAbortExit";
+
   private final PlayParams iParams;
 
   private final FacadeClient iClient;
 
   private final PlayStats iPlayStats = new PlayStats();
 
-  private final ScheduledExecutorService iExecutor = Executors.newSingleThreadScheduledExecutor();
+  private final AtomicBoolean iFinished = new AtomicBoolean(false);
+
+  private volatile long iTimeCheckTimerID = -1;
 
   private final Logger iLogger = LoggerFactory.getLogger(getClass());
 
-  private Function<Boolean, Consumer<FeedsReturns>> iFeedsConsumer;
+  private final Predicate<FeedsReturns> iFeedsAcceptor;
+
+  private volatile FeedsSubscription iSubscription;
+
+  private FeedArchive iArchive;
+
+  private String iCountedStatus;
 
   private StrategyPlayer(PlayParams params, FacadeClient client) {
     iParams = params;
     iClient = client;
 
-    iFeedsConsumer = stopNextFetching -> feeds -> {
-      if (iLogger.isDebugEnabled())
-        iLogger.debug("Received feeds for run-id <" + feeds.runID() + ">: " + feeds.toString());
+    iFeedsAcceptor = feeds -> {
+      if (iLogger.isTraceEnabled())
+        iLogger.trace("Received feeds for run-id <{}>: {}", feeds.runID(), feeds);
+      capture(feeds);
+      iClient.metrics().runs().recordFeeds(feeds.numRecords());
+
+      if (iFinished.get())
+        return false;
 
       JsonObject statusJson = feeds.status();
       String lifeCycleStatus = statusJson.getString("LifeCycleStatus");
       iPlayStats.status = lifeCycleStatus;
+      countAs(lifeCycleStatus);
 
-      if (stopNextFetching) {
-        notifyResult();
-        return;
+      long now = System.nanoTime();
+      if (iPlayStats.runningNanos == 0 && !ExecutionStatusHelper.isQueued(lifeCycleStatus))
+        iPlayStats.runningNanos = now;
+
+      if (ExecutionStatusHelper.isExit(lifeCycleStatus)) {
+        iPlayStats.exitNanos = now;
+        Long serverExecutionMillis = statusJson.getLong(cServerExecutionTimeKey);
+        if (serverExecutionMillis != null)
+          iPlayStats.serverExecutionMillis = serverExecutionMillis;
       }
 
-      if (ExecutionStatusHelper.isSuccess(lifeCycleStatus)) {
+      if (ExecutionStatusHelper.isSuccess(lifeCycleStatus) && iClient.statusOnlyPulls()) {
+        // no feeds to catch up with, the status is all there is to know
+        notifyResult();
+        return false;
+      }
+      else if (ExecutionStatusHelper.isSuccess(lifeCycleStatus)) {
         // normal exit, fetch the remaining feeds and grids if any, and stop the next fetching
         GetFeedsRequest req = feeds.lastRequest(true);
-        iClient.getFeeds(req, iFeedsConsumer.apply(true));
-        return;
+        iClient.getFeeds(req, this::onLastFeeds, this::onClientAbort);
+        return false;
       }
       else if (ExecutionStatusHelper.isError(lifeCycleStatus) || ExecutionStatusHelper.isCanceled(lifeCycleStatus)) {
-        iLogger.info("Execution of run-id <" + feeds.runID() + "> interrupted due to: " + lifeCycleStatus);
+        iLogger.info("Execution of run-id <{}> interrupted due to: {}", feeds.runID(), lifeCycleStatus);
         notifyResult();
-        return;
+        return false;
       }
 
-      if (iExecutor.isShutdown())
-        return;
-
-      GetFeedsRequest req = feeds.nextRequest();
-
-      if (req.equals(feeds.request()))
-        iExecutor.schedule(() -> iClient.getFeeds(req, iFeedsConsumer.apply(false)), 5, TimeUnit.SECONDS);
-      else {
-        iExecutor.schedule(() -> iClient.getFeeds(req, iFeedsConsumer.apply(false)), 1, TimeUnit.SECONDS);
-      }
+      return true;
     };
   }
 
@@ -86,16 +105,41 @@ public class StrategyPlayer {
     return new StrategyPlayer(params, client);
   }
 
+  /**
+   * Capture the raw feeds received by the run into an archive
+   *
+   * @param archive
+   *         the archive, which may be shared by many players
+   *
+   * @return this object
+   */
+  public StrategyPlayer archive(FeedArchive archive) {
+    iArchive = archive;
+    return this;
+  }
+
+  private void capture(FeedsReturns feeds) {
+    if (iArchive == null)
+      return;
+
+    try {
+      iArchive.append(feeds);
+    }
+    catch (IOException e) {
+      iLogger.error("Unable to capture feeds of run-id <{}> into {}", feeds.runID(), iArchive.dir(), e);
+    }
+  }
+
   private boolean checkTime() {
     if (iLogger.isDebugEnabled())
-      iLogger.debug("Still waiting: " + iPlayStats.runID);
+      iLogger.debug("Still waiting: {}", iPlayStats.runID);
 
     if (iPlayStats.waitMillis == 0)
       return true;
 
-    long time = System.currentTimeMillis();
-    if (time - iPlayStats.startMillis > iPlayStats.waitMillis) {
-      iLogger.warn("Strategy run-id=" + iPlayStats.runID + " runs over hard deadline, canceling...");
+    long time = System.nanoTime();
+    if (time - iPlayStats.startNanos > TimeUnit.MILLISECONDS.toNanos(iPlayStats.waitMillis)) {
+      iLogger.warn("Strategy run-id={} runs over hard deadline, canceling...", iPlayStats.runID);
       iPlayStats.status = "AbnormalExit";
       iClient.stopStrategy(iPlayStats.runID);
       notifyResult();
@@ -105,17 +149,78 @@ public class StrategyPlayer {
     return true;
   }
 
+  // the client gave up talking to the facade about this run, stop it if it was started and report it as abandoned
+  private void onClientAbort(Throwable cause) {
+    if (iFinished.get())
+      return;
+
+    iLogger.warn("Abandoning run-id <{}>, client gave up: {}", iPlayStats.runID, cause.getMessage());
+    iPlayStats.status = cClientAbortStatus;
+    if (iPlayStats.runID > 0)
+      iClient.stopStrategy(iPlayStats.runID);
+    notifyResult();
+  }
+
+  private void onLastFeeds(FeedsReturns feeds) {
+    if (iLogger.isTraceEnabled())
+      iLogger.trace("Received last feeds for run-id <{}>: {}", feeds.runID(), feeds);
+    capture(feeds);
+    iClient.metrics().runs().recordFeeds(feeds.numRecords());
+
+    iPlayStats.status = feeds.status().getString("LifeCycleStatus");
+    notifyResult();
+  }
+
   private void notifyResult() {
-    iExecutor.shutdownNow();
+    if (!iFinished.compareAndSet(false, true))
+      return;
+    uncount();
 
-    if (iPlayStats.resultAcceptor != null) {
-      iPlayStats.resultAcceptor.accept(iPlayStats.status, System.currentTimeMillis() - iPlayStats.startMillis);
-    }
+    if (iTimeCheckTimerID >= 0)
+      iClient.cancelTimer(iTimeCheckTimerID);
+
+    FeedsSubscription subscription = iSubscription;
+    if (subscription != null)
+      subscription.cancel();
+
+    RunTiming timing = timing(System.nanoTime());
+    if (iLogger.isDebugEnabled())
+      iLogger.debug("Timing of run-id <{}>: {}", iPlayStats.runID, timing);
+
+    if (iPlayStats.resultAcceptor != null)
+      iPlayStats.resultAcceptor.accept(timing);
+  }
+
+  // keep the run counted under its last status in the run metrics of the client, until it is finished
+  private synchronized void countAs(String status) {
+    if (iFinished.get())
+      return;
+
+    iClient.metrics().runs().moved(iCountedStatus, status);
+    iCountedStatus = status;
+  }
+
+  private synchronized void uncount() {
+    iClient.metrics().runs().finished(iCountedStatus);
+  }
+
+  private RunTiming timing(long endNanos) {
+    PlayStats stats = iPlayStats;
+    long start = stats.startNanos;
+    long submitted = stats.submittedNanos;
+    long running = stats.runningNanos;
+    long exited = stats.exitNanos;
+    return new RunTiming(stats.status, submitted == 0 ? -1 : submitted - start, running == 0 ? -1 : running - start,
+            running == 0 ? -1 : (exited == 0 ? endNanos : exited) - running, exited == 0 ? -1 : endNanos - exited,
+            endNanos - start, stats.serverExecutionMillis);
   }
 
   private void scheduleTime() {
+    if (iFinished.get())
+      return;
+
     if (checkTime())
-      iExecutor.schedule(this::scheduleTime, 5000, TimeUnit.MILLISECONDS);
+      iTimeCheckTimerID = iClient.setTimer(5000, this::scheduleTime);
   }
 
   /**
@@ -124,37 +229,48 @@ public class StrategyPlayer {
    * @param waitMillis
    *         milliseconds to wait before kill the strategy
    * @param resultAcceptor
-   *         callback to accept the finishing status of the strategy. The first parameter has three possible values:
-   *         "NormalExit", "AbnormalExit" and "CancelExit". It is recommended to use {@link ExecutionStatusHelper} to
-   *         identify the status; the second parameter is the milliseconds taken to run the strategy
+   *         callback to accept how the run exited and how its time was spent. The status has four possible values:
+   *         "NormalExit", "AbnormalExit", "CancelExit" and "ClientAbortExit". It is recommended to use
+   *         {@link ExecutionStatusHelper} to identify the status
    */
-  public void play(int waitMillis, BiConsumer<String, Long> resultAcceptor) {
+  public void play(int waitMillis, Consumer<RunTiming> resultAcceptor) {
     iPlayStats.waitMillis = waitMillis;
-    iPlayStats.startMillis = System.currentTimeMillis();
+    iPlayStats.startNanos = System.nanoTime();
     iPlayStats.resultAcceptor = resultAcceptor;
+    iClient.metrics().runs().started();
 
     scheduleTime();
 
     iClient.play(iParams, ret -> {
+      iPlayStats.submittedNanos = System.nanoTime();
       iPlayStats.runID = ret.runID();
-      if (!ret.isSuccess()) {
-        iLogger.info("Error running strategy for run-id <" + ret.runID() + ">: " + ret.reason());
+      if (ret.isClientFailure()) {
+        onClientAbort(new IOException(ret.reason()));
+        return;
+      }
+      else if (!ret.isSuccess()) {
+        iLogger.info("Error running strategy for run-id <{}>: {}", ret.runID(), ret.reason());
         iPlayStats.status = "AbnormalExit";
         notifyResult();
         return;
       }
       else {
-        iLogger.info("Successfully started strategy with run-id=" + ret.runID());
+        iLogger.info("Successfully started strategy with run-id={}", ret.runID());
       }
 
       GetFeedsRequest req = GetFeedsRequest.create(ret.runID());
-      req.portfolios(0, 100);
-      req.benchmarkPortfolios(0, 100);
-      req.positions(0, 100);
-      req.risks(0, 100);
-      req.trades(0, 100);
+      if (!iClient.statusOnlyPulls()) {
+        req.portfolios(0, 100);
+        req.benchmarkPortfolios(0, 100);
+        req.positions(0, 100);
+        req.risks(0, 100);
+        req.trades(0, 100);
+        req.cursors(FeedCursors.create(req));
+      }
 
-      iClient.getFeeds(req, iFeedsConsumer.apply(false));
+      iSubscription = iClient.subscribeFeeds(req, iFeedsAcceptor, this::onClientAbort);
+      if (iFinished.get())
+        iSubscription.cancel();
     });
   }
 
@@ -162,12 +278,20 @@ public class StrategyPlayer {
 
     public String status;
 
-    public BiConsumer<String, Long> resultAcceptor;
+    public Consumer<RunTiming> resultAcceptor;
 
     long runID;
 
     int waitMillis;
 
-    long startMillis;
+    long startNanos;
+
+    volatile long submittedNanos;
+
+    volatile long runningNanos;
+
+    volatile long exitNanos;
+
+    volatile long serverExecutionMillis = -1;
   }
 }
@@ -0,0 +1,153 @@
+package com.ricequant.apps.stress_test.client;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Delivers feeds pushed by the facade over a WebSocket kept open for each run. The client sends a "subscribe" command
+ * carrying the same "feeds-params" as a pull, then every message pushed by the server has the same format as the
+ * response of a pull. If the WebSocket cannot be opened or is closed before the subscription is canceled, the
+ * subscription falls back to polling from where it stopped.
+ *
+ * @author chenfeng
+ */
+class WebSocketFeedsTransport implements FeedsTransport {
+
+  private final FacadeClient iClient;
+
+  private final FeedsTransport iFallback;
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private WebSocketFeedsTransport(FacadeClient client, FeedsTransport fallback) {
+    iClient = client;
+    iFallback = fallback;
+  }
+
+  static WebSocketFeedsTransport create(FacadeClient client, FeedsTransport fallback) {
+    return new WebSocketFeedsTransport(client, fallback);
+  }
+
+  @Override
+  public FeedsSubscription subscribe(GetFeedsRequest request, Predicate<FeedsReturns> feedsAcceptor,
+          Consumer<Throwable> onFailure) {
+    WebSocketSubscription subscription = new WebSocketSubscription(request, feedsAcceptor, onFailure);
+    subscription.open();
+    return subscription;
+  }
+
+  private class WebSocketSubscription implements FeedsSubscription {
+
+    private final Predicate<FeedsReturns> iFeedsAcceptor;
+
+    private final Consumer<Throwable> iOnFailure;
+
+    private volatile GetFeedsRequest iRequest;
+
+    private volatile boolean iCancelled = false;
+
+    private volatile WebSocket iWebSocket;
+
+    private volatile FeedsSubscription iFallbackSubscription;
+
+    private Buffer iPendingMessage = Buffer.buffer();
+
+    private WebSocketSubscription(GetFeedsRequest request, Predicate<FeedsReturns> feedsAcceptor,
+            Consumer<Throwable> onFailure) {
+      iRequest = request;
+      iFeedsAcceptor = feedsAcceptor;
+      iOnFailure = onFailure;
+    }
+
+    private void open() {
+      iClient.websocket(ws -> {
+        if (iCancelled) {
+          ws.close();
+          return;
+        }
+
+        iWebSocket = ws;
+        ws.frameHandler(this::onFrame);
+        ws.exceptionHandler(e -> {
+          if (iLogger.isDebugEnabled())
+            iLogger.debug("Error on feeds subscription of run-id <{}>", iRequest.runID(), e);
+        });
+        ws.closeHandler(v -> fallback(null));
+
+        JsonObject message = iClient.authenticatingMessage();
+        message.put("command", "subscribe");
+        message.put("feeds-params", iRequest.toJsonObject());
+        ws.writeFinalTextFrame(message.toString());
+
+        if (iLogger.isDebugEnabled())
+          iLogger.debug("-> subscribe {}", iRequest);
+      }, this::fallback);
+    }
+
+    private void onFrame(WebSocketFrame frame) {
+      iPendingMessage.appendBuffer(frame.binaryData());
+      if (!frame.isFinal())
+        return;
+
+      Buffer message = iPendingMessage;
+      iPendingMessage = Buffer.buffer();
+      if (iCancelled)
+        return;
+
+      if (iLogger.isTraceEnabled())
+        iLogger.trace("<- {}", message);
+      else if (iLogger.isDebugEnabled())
+        iLogger.debug("<- pushed for run-id <{}>: {} bytes", iRequest.runID(), message.length());
+
+      FeedsReturns feeds;
+      try {
+        feeds = iClient.feedsDecoder().decode(message, iRequest);
+      }
+      catch (IOException e) {
+        iLogger.error("Error decoding pushed feeds: {}", message, e);
+        return;
+      }
+
+      if (feeds == null) {
+        iLogger.error("Error status pushed from server: {}", message);
+        return;
+      }
+
+      iRequest = feeds.nextRequest();
+      if (!iFeedsAcceptor.test(feeds))
+        cancel();
+    }
+
+    private void fallback(Throwable cause) {
+      if (iCancelled || iFallbackSubscription != null)
+        return;
+
+      iLogger.warn("Feeds subscription of run-id <{}> unavailable, falling back to polling{}", iRequest.runID(),
+              cause == null ? "" : ": " + cause.getMessage());
+      iWebSocket = null;
+      iFallbackSubscription = iFallback.subscribe(iRequest, iFeedsAcceptor, iOnFailure);
+    }
+
+    @Override
+    public void cancel() {
+      iCancelled = true;
+
+      WebSocket ws = iWebSocket;
+      iWebSocket = null;
+      if (ws != null)
+        ws.close();
+
+      FeedsSubscription fallbackSubscription = iFallbackSubscription;
+      if (fallbackSubscription != null)
+        fallbackSubscription.cancel();
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.ricequant.apps.stress_test.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the pulls of a {@link PollScheduler} are spread by the request budget in the order they fall due, so that
+ * a run backing off does not hold back the pulls of the other runs.
+ *
+ * @author chenfeng
+ */
+public class PollSchedulerTest {
+
+  @Test
+  public void longDelayDoesNotDelayShortOne() {
+    PollScheduler scheduler = PollScheduler
+            .create(new FacadeClientOptions().maxPullsPerSecond(1).pollJitter(0).maxPollDelayMillis(5000));
+
+    // a run backing off schedules its pull first, another run schedules its regular pull right after
+    assertEquals(5000, scheduler.delayBeforePull(5000));
+    assertEquals(1000, scheduler.delayBeforePull(1000));
+
+    // the regular pull falls due first and is sent at once
+    assertEquals(0, scheduler.budgetDelayMillis());
+  }
+
+  @Test
+  public void pullsDueTogetherAreSpread() {
+    PollScheduler scheduler = PollScheduler.create(new FacadeClientOptions().maxPullsPerSecond(1).pollJitter(0));
+
+    assertEquals(0, scheduler.budgetDelayMillis());
+    long second = scheduler.budgetDelayMillis();
+    assertTrue("second pull waits " + second + "ms", second > 900 && second <= 1000);
+    long third = scheduler.budgetDelayMillis();
+    assertTrue("third pull waits " + third + "ms", third > 1900 && third <= 2000);
+  }
+
+  @Test
+  public void unlimitedBudgetNeverWaits() {
+    PollScheduler scheduler = PollScheduler.create(new FacadeClientOptions().pollJitter(0));
+
+    for (int i = 0; i < 100; i++)
+      assertEquals(0, scheduler.budgetDelayMillis());
+  }
+}
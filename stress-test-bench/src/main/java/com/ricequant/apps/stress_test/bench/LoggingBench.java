@@ -0,0 +1,167 @@
+package com.ricequant.apps.stress_test.bench;
+
+import com.ricequant.apps.stress_test.client.LatencyHistogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what logging costs the threads which log, with the log4j2.xml of the executor. A number of simulated runs
+ * share a few scheduler threads the way runs share the event loops: each run logs its start and exit at INFO, and a
+ * pull summary and a waiting line at DEBUG every pull interval in between. Every log call is timed on the calling
+ * thread.
+ * <p>
+ * The process exits with 1 when the p99 of the time spent in a log call is above the per-call budget, so that a change
+ * to the logging configuration or to the log calls can be gated on it, and with 0 otherwise.
+ *
+ * @author chenfeng
+ */
+public class LoggingBench {
+
+  private static final Logger cLogger = LoggerFactory.getLogger(LoggingBench.class);
+
+  private static final LatencyHistogram cCallNanos = LatencyHistogram.create(TimeUnit.SECONDS.toNanos(10));
+
+  private static void printUsage() {
+    System.out.println("Usage: [-n numRuns] [-p numPullsPerRun] [-i pullIntervalMillis] [-t numThreads] "
+            + "[-b budgetMicrosPerCall]");
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int numRuns = 1000;
+    int numPulls = 20;
+    long pullIntervalMillis = 1000;
+    int numThreads = 4;
+    long budgetMicros = 200;
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-h") || i + 1 >= args.length) {
+        printUsage();
+        System.exit(-1);
+      }
+
+      switch (args[i]) {
+        case "-n":
+          numRuns = Integer.parseInt(args[++i]);
+          break;
+        case "-p":
+          numPulls = Integer.parseInt(args[++i]);
+          break;
+        case "-i":
+          pullIntervalMillis = Long.parseLong(args[++i]);
+          break;
+        case "-t":
+          numThreads = Integer.parseInt(args[++i]);
+          break;
+        case "-b":
+          budgetMicros = Long.parseLong(args[++i]);
+          break;
+        default:
+          printUsage();
+          System.exit(-1);
+      }
+    }
+
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(numThreads);
+    CountDownLatch exited = new CountDownLatch(numRuns);
+    long start = System.nanoTime();
+    for (int i = 0; i < numRuns; i++) {
+      // spread the starts over the first interval, like runs started one after another
+      long delay = pullIntervalMillis * i / numRuns;
+      scheduler.schedule(new SimulatedRun(i + 1, numPulls, pullIntervalMillis, scheduler, exited), delay,
+              TimeUnit.MILLISECONDS);
+    }
+    exited.await();
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    scheduler.shutdown();
+
+    // write out the events still queued before printing the result
+    long stopStart = System.nanoTime();
+    ((LoggerContext) LogManager.getContext(false)).stop();
+    long drainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stopStart);
+
+    long p99Micros = TimeUnit.NANOSECONDS.toMicros(cCallNanos.percentile(0.99));
+    System.out.println(String.format("%d log calls of %d runs in %d ms (%.0f calls/s), drained in %d ms",
+            cCallNanos.count(), numRuns, elapsedMillis, cCallNanos.count() * 1000.0 / Math.max(1, elapsedMillis),
+            drainMillis));
+    System.out.println(String.format("Time per call (us): mean %.1f, p50 %d, p90 %d, p99 %d, p999 %d, max %d",
+            cCallNanos.mean() / 1000, micros(0.5), micros(0.9), p99Micros, micros(0.999),
+            TimeUnit.NANOSECONDS.toMicros(cCallNanos.max())));
+
+    if (p99Micros > budgetMicros) {
+      System.out.println("Over budget: p99 " + p99Micros + " us > " + budgetMicros + " us per call");
+      System.exit(1);
+    }
+    System.out.println("Within budget: p99 " + p99Micros + " us <= " + budgetMicros + " us per call");
+    System.exit(0);
+  }
+
+  private static long micros(double percentile) {
+    return TimeUnit.NANOSECONDS.toMicros(cCallNanos.percentile(percentile));
+  }
+
+  private static class SimulatedRun implements Runnable {
+
+    private final int iRunID;
+
+    private final int iNumPulls;
+
+    private final long iPullIntervalMillis;
+
+    private final ScheduledExecutorService iScheduler;
+
+    private final CountDownLatch iExited;
+
+    private int iNumPulled = 0;
+
+    private volatile ScheduledFuture<?> iPulls;
+
+    SimulatedRun(int runID, int numPulls, long pullIntervalMillis, ScheduledExecutorService scheduler,
+            CountDownLatch exited) {
+      iRunID = runID;
+      iNumPulls = numPulls;
+      iPullIntervalMillis = pullIntervalMillis;
+      iScheduler = scheduler;
+      iExited = exited;
+    }
+
+    @Override
+    public void run() {
+      long start = System.nanoTime();
+      cLogger.info("Successfully started strategy with run-id={}", iRunID);
+      cCallNanos.record(System.nanoTime() - start);
+
+      iPulls = iScheduler.scheduleAtFixedRate(this::pull, iPullIntervalMillis, iPullIntervalMillis,
+              TimeUnit.MILLISECONDS);
+    }
+
+    private void pull() {
+      iNumPulled++;
+      int numFeeds = ThreadLocalRandom.current().nextInt(1, 50);
+
+      long start = System.nanoTime();
+      cLogger.debug("Pulled {} feeds of run-id <{}>, {} pulls so far", numFeeds, iRunID, iNumPulled);
+      long logged = System.nanoTime();
+      cCallNanos.record(logged - start);
+
+      if (iNumPulled < iNumPulls) {
+        cLogger.debug("Still waiting: {}", iRunID);
+        cCallNanos.record(System.nanoTime() - logged);
+        return;
+      }
+
+      cLogger.info("Execution of run-id <{}> finished after {} pulls", iRunID, iNumPulled);
+      cCallNanos.record(System.nanoTime() - logged);
+      iPulls.cancel(false);
+      iExited.countDown();
+    }
+  }
+}
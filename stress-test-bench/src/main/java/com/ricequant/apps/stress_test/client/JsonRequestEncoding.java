@@ -0,0 +1,75 @@
+package com.ricequant.apps.stress_test.client;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+/**
+ * The bodies of the commands as a {@link FacadeClient} built them before {@link RequestEncoder}: a JSON object per
+ * request starting from the authenticating message, encoded to a string and then to a buffer. It is the reference the
+ * encoder is checked and measured against.
+ *
+ * @author chenfeng
+ */
+class JsonRequestEncoding {
+
+  private final JsonObject iAuthenticatingMessage;
+
+  private JsonRequestEncoding(JsonObject authenticatingMessage) {
+    iAuthenticatingMessage = authenticatingMessage;
+  }
+
+  /**
+   * Creates the reference encoding
+   *
+   * @param authenticatingMessage
+   *         the message carrying the credentials, which every command starts with
+   *
+   * @return the encoding
+   */
+  static JsonRequestEncoding create(JsonObject authenticatingMessage) {
+    return new JsonRequestEncoding(authenticatingMessage);
+  }
+
+  Buffer play(PlayParams params) {
+    JsonObject message = command("play");
+    params.appendToJsonObject(message);
+    return Buffer.buffer(message.toString(), "utf-8");
+  }
+
+  Buffer pull(GetFeedsRequest request) {
+    JsonObject message = command("pull");
+    message.put("feeds-params", request.toJsonObject());
+    return Buffer.buffer(message.toString(), "utf-8");
+  }
+
+  Buffer pullBatch(Collection<GetFeedsRequest> requests) {
+    JsonArray params = new JsonArray();
+    for (GetFeedsRequest request : requests) {
+      params.add(request.toJsonObject());
+    }
+    JsonObject message = command("pull-batch");
+    message.put("feeds-params", params);
+    return Buffer.buffer(message.toString(), "utf-8");
+  }
+
+  Buffer stop(long runID) {
+    JsonObject message = command("stop");
+    message.put("run-id", runID);
+    return Buffer.buffer(message.toString(), "utf-8");
+  }
+
+  Buffer stopAll() {
+    return Buffer.buffer(command("stop-all").toString(), "utf-8");
+  }
+
+  // a new message per request with the keys in order, like the commands built it
+  private JsonObject command(String command) {
+    JsonObject message = new JsonObject(new LinkedHashMap<>(iAuthenticatingMessage.getMap()));
+    message.put("command", command);
+    return message;
+  }
+}
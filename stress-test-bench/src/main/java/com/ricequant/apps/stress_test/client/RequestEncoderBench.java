@@ -0,0 +1,104 @@
+package com.ricequant.apps.stress_test.client;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.json.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Measures the heap bytes allocated and the time taken per request body, by the JSON objects the commands used to
+ * build ({@link JsonRequestEncoding}) and by the {@link RequestEncoder}, for play, pull, pull-batch and stop. Each
+ * body of the encoder is released right after it is encoded, as a command does once it is done with, so that its
+ * pooled buffer is reused. It lives in the package of the encoder since the encoder is not public.
+ *
+ * @author chenfeng
+ */
+public class RequestEncoderBench {
+
+  private static final com.sun.management.ThreadMXBean cThreads = (com.sun.management.ThreadMXBean) ManagementFactory
+          .getThreadMXBean();
+
+  // keeps the bodies from being optimized away
+  private static long cSink = 0;
+
+  private static void printUsage() {
+    System.out.println("Usage: [-n numRequests] [-b batchSize]");
+  }
+
+  public static void main(String[] args) {
+    int numRequests = 100000;
+    int batchSize = 20;
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-h") || i + 1 >= args.length) {
+        printUsage();
+        System.exit(-1);
+      }
+
+      switch (args[i]) {
+        case "-n":
+          numRequests = Integer.parseInt(args[++i]);
+          break;
+        case "-b":
+          batchSize = Integer.parseInt(args[++i]);
+          break;
+        default:
+          printUsage();
+          System.exit(-1);
+      }
+    }
+
+    JsonObject credentials = new JsonObject().put("username", "stress-tester").put("password", "secret");
+    JsonRequestEncoding before = JsonRequestEncoding.create(credentials);
+    RequestEncoder after = RequestEncoder.create(credentials);
+
+    PlayParams play = new PlayParams().code("def init(context): pass").title("stress bench").startDate(20150101)
+            .endDate(20151231).initialCash(100000);
+    List<GetFeedsRequest> pulls = new ArrayList<>();
+    for (int i = 0; i < batchSize; i++)
+      pulls.add(GetFeedsRequest.create(1000000 + i).portfolios(120 + i, 100).positions(80, 100).trades(35, 100)
+              .logs(12, 100));
+
+    System.out.println(String.format("%-20s %18s %18s %18s %18s", "command", "JsonObject B/req", "encoder B/req",
+            "JsonObject ns/req", "encoder ns/req"));
+    measure("play", numRequests, i -> before.play(play).length(), i -> released(after.play(play)));
+    measure("pull", numRequests, i -> before.pull(pulls.get(i % pulls.size())).length(),
+            i -> released(after.pull(pulls.get(i % pulls.size()))));
+    measure("pull-batch of " + batchSize, numRequests / batchSize, i -> before.pullBatch(pulls).length(),
+            i -> released(after.pullBatch(pulls)));
+    measure("stop", numRequests, i -> before.stop(1000000 + i).length(), i -> released(after.stop(1000000 + i)));
+
+    if (cSink == 42)
+      System.out.println();
+  }
+
+  private static int released(ByteBuf body) {
+    int length = body.readableBytes();
+    body.release();
+    return length;
+  }
+
+  private static void measure(String command, int numRequests, IntUnaryOperator before, IntUnaryOperator after) {
+    // the first round warms up the JIT and the pool, the second one is measured
+    run(numRequests, before);
+    run(numRequests, after);
+    long[] beforeCost = run(numRequests, before);
+    long[] afterCost = run(numRequests, after);
+    System.out.println(String.format("%-20s %18d %18d %18d %18d", command, beforeCost[0] / numRequests,
+            afterCost[0] / numRequests, beforeCost[1] / numRequests, afterCost[1] / numRequests));
+  }
+
+  // bytes allocated by this thread and nanoseconds taken
+  private static long[] run(int numRequests, IntUnaryOperator encode) {
+    long threadID = Thread.currentThread().getId();
+    long allocated = cThreads.getThreadAllocatedBytes(threadID);
+    long start = System.nanoTime();
+    for (int i = 0; i < numRequests; i++)
+      cSink += encode.applyAsInt(i);
+    long elapsed = System.nanoTime() - start;
+    return new long[]{cThreads.getThreadAllocatedBytes(threadID) - allocated, elapsed};
+  }
+}
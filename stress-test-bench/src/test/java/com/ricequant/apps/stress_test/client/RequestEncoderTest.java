@@ -0,0 +1,103 @@
+package com.ricequant.apps.stress_test.client;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the {@link RequestEncoder} writes the same bytes as the JSON objects the commands used to build, with
+ * the credentials in the body and with an empty authenticating message when the session token is sent in a header.
+ *
+ * @author chenfeng
+ */
+public class RequestEncoderTest {
+
+  private static final List<JsonObject> cAuthenticatingMessages = Arrays
+          .asList(new JsonObject().put("username", "u\"ser").put("password", "päss\\word"), new JsonObject());
+
+  private static final long[] cRunIDs = {0, 7, 10, 1234567890123L, -1, -98765, Long.MAX_VALUE, Long.MIN_VALUE};
+
+  @Test
+  public void play() {
+    List<PlayParams> params = Arrays.asList(new PlayParams(),
+            new PlayParams().code("def init(context):\n    context.s = \"000001.XSHE\"\n").owner("tester")
+                    .title("压力测试 </script>").timeUnit("minute").language("python")
+                    .startDate(20150101).endDate(20151231).initialCash(1234.5).runType("paper")
+                    .portfolioName("p").benchmarkName("000300.XSHG"));
+
+    for (JsonObject message : cAuthenticatingMessages) {
+      RequestEncoder encoder = RequestEncoder.create(message);
+      JsonRequestEncoding expected = JsonRequestEncoding.create(message);
+      for (PlayParams param : params)
+        assertSameBytes(expected.play(param), encoder.play(param));
+    }
+  }
+
+  @Test
+  public void pull() {
+    for (JsonObject message : cAuthenticatingMessages) {
+      RequestEncoder encoder = RequestEncoder.create(message);
+      JsonRequestEncoding expected = JsonRequestEncoding.create(message);
+      for (GetFeedsRequest request : requests())
+        assertSameBytes(expected.pull(request), encoder.pull(request));
+    }
+  }
+
+  @Test
+  public void pullBatch() {
+    for (JsonObject message : cAuthenticatingMessages) {
+      RequestEncoder encoder = RequestEncoder.create(message);
+      JsonRequestEncoding expected = JsonRequestEncoding.create(message);
+      List<GetFeedsRequest> requests = requests();
+      assertSameBytes(expected.pullBatch(requests), encoder.pullBatch(requests));
+      assertSameBytes(expected.pullBatch(requests.subList(1, 2)), encoder.pullBatch(requests.subList(1, 2)));
+      assertSameBytes(expected.pullBatch(Collections.emptyList()), encoder.pullBatch(Collections.emptyList()));
+    }
+  }
+
+  @Test
+  public void stop() {
+    for (JsonObject message : cAuthenticatingMessages) {
+      RequestEncoder encoder = RequestEncoder.create(message);
+      JsonRequestEncoding expected = JsonRequestEncoding.create(message);
+      for (long runID : cRunIDs)
+        assertSameBytes(expected.stop(runID), encoder.stop(runID));
+      assertSameBytes(expected.stopAll(), encoder.stopAll());
+    }
+  }
+
+  private static List<GetFeedsRequest> requests() {
+    List<GetFeedsRequest> requests = new ArrayList<>();
+    for (long runID : cRunIDs)
+      requests.add(GetFeedsRequest.create(runID));
+    requests.add(GetFeedsRequest.create(42).portfolios(0, 100));
+    requests.add(GetFeedsRequest.create(43).portfolios(120, 100).benchmarkPortfolios(119, 100).positions(80, 100)
+            .trades(35, 100).orders(36, 100).risks(Integer.MAX_VALUE, 1).logs(12, 100).plots(9, 100)
+            .portfolioGrids(0, 0).riskGrids(-1, Integer.MIN_VALUE));
+    return requests;
+  }
+
+  // the body must be a fresh buffer owned by the caller, with the same bytes as the JSON object encoded
+  private static void assertSameBytes(Buffer expected, ByteBuf actual) {
+    try {
+      byte[] actualBytes = new byte[actual.readableBytes()];
+      actual.getBytes(actual.readerIndex(), actualBytes);
+      assertEquals(1, actual.refCnt());
+      assertEquals(expected.toString(), new String(actualBytes, StandardCharsets.UTF_8));
+      assertArrayEquals(expected.getBytes(), actualBytes);
+    }
+    finally {
+      actual.release();
+    }
+  }
+}
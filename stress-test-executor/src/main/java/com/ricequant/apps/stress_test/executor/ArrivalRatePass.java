@@ -0,0 +1,186 @@
+package com.ricequant.apps.stress_test.executor;
+
+import com.ricequant.apps.stress_test.client.ExecutionStatusHelper;
+import com.ricequant.apps.stress_test.client.FacadeClient;
+import com.ricequant.apps.stress_test.client.LatencyHistogram;
+import com.ricequant.apps.stress_test.client.RunTiming;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import com.ricequant.generated_config.apps.stress_test.ArrivalProcessEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * An open-loop pass: new runs arrive at a constant rate for the configured duration, regardless of how many runs are
+ * still running, then the pass waits for all of them to exit. Arrivals are either evenly spaced or a Poisson process.
+ *
+ * @author chenfeng
+ */
+public class ArrivalRatePass {
+
+  private static final long cHighestTrackableMillis = TimeUnit.DAYS.toMillis(1);
+
+  private final TestScenario iScenario;
+
+  private final FacadeClient iClient;
+
+  private final RunLauncher iLauncher;
+
+  private final double iRatePerMinute;
+
+  private final long iOvertimeThreshold;
+
+  private final Consumer<ArrivalRateResult> iResultAcceptor;
+
+  private final Random iRandom = new Random();
+
+  private final AtomicInteger iNumArrivals = new AtomicInteger(0);
+
+  private final AtomicInteger iNumExited = new AtomicInteger(0);
+
+  private final AtomicInteger iNumInTime = new AtomicInteger(0);
+
+  private final AtomicInteger iNumOverdue = new AtomicInteger(0);
+
+  private final AtomicBoolean iFinished = new AtomicBoolean(false);
+
+  private final LatencyHistogram iSojournTimes = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final LatencyHistogram iQueueingDelays = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final LatencyHistogram iCanceledRunTimes = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final LatencyHistogram iErrorRunTimes = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final LatencyHistogram iClientAbortRunTimes = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final RunTimeLog iRunTimes = new RunTimeLog();
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private volatile boolean iArrivalsDone = false;
+
+  private long iStartMillis;
+
+  private ArrivalRatePass(TestScenario scenario, FacadeClient client, RunLauncher launcher, double ratePerMinute,
+          long overtimeThreshold, Consumer<ArrivalRateResult> resultAcceptor) {
+    iScenario = scenario;
+    iClient = client;
+    iLauncher = launcher;
+    iRatePerMinute = ratePerMinute;
+    iOvertimeThreshold = overtimeThreshold;
+    iResultAcceptor = resultAcceptor;
+  }
+
+  /**
+   * Creates an open-loop pass
+   *
+   * @param scenario
+   *         the scenario definition, which decides the strategy, the arrival process and the duration of the pass
+   * @param client
+   *         the FacadeClient instance whose timers schedule the arrivals
+   * @param launcher
+   *         the launcher to start strategy runs with
+   * @param ratePerMinute
+   *         the arrival rate in runs per minute
+   * @param overtimeThreshold
+   *         number of milliseconds that if the sojourn time of a run is beyond this threshold will be treated as
+   *         overtime
+   * @param resultAcceptor
+   *         callback to receive the result after all runs exited
+   *
+   * @return the pass, call {@link #run()} to start it
+   */
+  public static ArrivalRatePass create(TestScenario scenario, FacadeClient client, RunLauncher launcher,
+          double ratePerMinute, long overtimeThreshold, Consumer<ArrivalRateResult> resultAcceptor) {
+    return new ArrivalRatePass(scenario, client, launcher, ratePerMinute, overtimeThreshold, resultAcceptor);
+  }
+
+  /**
+   * Start the arrivals
+   */
+  public void run() {
+    iStartMillis = System.currentTimeMillis();
+    scheduleArrival(iStartMillis);
+  }
+
+  private void scheduleArrival(long arrivalMillis) {
+    if (arrivalMillis - iStartMillis >= iScenario.loadDurationMillis()) {
+      iLogger.info("All {} arrivals submitted at rate {} runs/min, waiting for them to exit...", iNumArrivals.get(),
+              iRatePerMinute);
+      iArrivalsDone = true;
+      checkFinished();
+      return;
+    }
+
+    iClient.setTimer(arrivalMillis - System.currentTimeMillis(), () -> {
+      arrive(arrivalMillis);
+      scheduleArrival(arrivalMillis + interArrivalMillis());
+    });
+  }
+
+  private long interArrivalMillis() {
+    double meanMillis = 60000 / iRatePerMinute;
+    if (iScenario.arrivalProcess() == ArrivalProcessEnum.FIXED)
+      return Math.max(1, Math.round(meanMillis));
+
+    return Math.max(1, Math.round(-Math.log(1 - iRandom.nextDouble()) * meanMillis));
+  }
+
+  private void arrive(long arrivalMillis) {
+    iNumArrivals.incrementAndGet();
+    iLauncher.launch(iScenario.name(), iScenario.playParams(), iScenario.timeoutToKillMillis(), 1,
+            timing -> onExit(arrivalMillis, timing));
+  }
+
+  private void onExit(long arrivalMillis, RunTiming timing) {
+    String status = timing.status();
+    long sojournMillis = System.currentTimeMillis() - arrivalMillis;
+
+    if (ExecutionStatusHelper.isCanceled(status))
+      iCanceledRunTimes.record(sojournMillis);
+    else if (ExecutionStatusHelper.isClientAbort(status))
+      iClientAbortRunTimes.record(sojournMillis);
+    else if (ExecutionStatusHelper.isError(status))
+      iErrorRunTimes.record(sojournMillis);
+    else if (ExecutionStatusHelper.isSuccess(status)) {
+      iSojournTimes.record(sojournMillis);
+      if (sojournMillis > iOvertimeThreshold)
+        iNumOverdue.incrementAndGet();
+      else
+        iNumInTime.incrementAndGet();
+    }
+
+    iRunTimes.record(status, sojournMillis);
+    if (timing.timeToRunningNanos() >= 0)
+      iQueueingDelays.record(TimeUnit.NANOSECONDS.toMillis(timing.timeToRunningNanos()));
+
+    iNumExited.incrementAndGet();
+    checkFinished();
+  }
+
+  private void checkFinished() {
+    if (!iArrivalsDone || iNumExited.get() != iNumArrivals.get() || !iFinished.compareAndSet(false, true))
+      return;
+
+    long elapsedMillis = Math.max(1, System.currentTimeMillis() - iStartMillis);
+    double throughput = iSojournTimes.count() * 60000.0 / elapsedMillis;
+
+    double percentile = iScenario.successPercentile() > 0 ? iScenario.successPercentile() : 0.99;
+    long sojournPercentile = iSojournTimes.percentile(percentile);
+
+    boolean success = iNumArrivals.get() > 0
+            && (double) iNumInTime.get() / iNumArrivals.get() >= iScenario.successTolerancePercentage()
+            && iSojournTimes.count() > 0 && sojournPercentile <= iOvertimeThreshold;
+
+    iResultAcceptor.accept(
+            new ArrivalRateResult(iRatePerMinute, iNumArrivals.get(), iNumInTime.get(), iNumOverdue.get(), success,
+                    throughput, sojournPercentile, iSojournTimes, iQueueingDelays, iCanceledRunTimes,
+                    iErrorRunTimes, iClientAbortRunTimes, iRunTimes));
+  }
+}
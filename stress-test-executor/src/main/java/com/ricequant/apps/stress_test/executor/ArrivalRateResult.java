@@ -0,0 +1,184 @@
+package com.ricequant.apps.stress_test.executor;
+
+import com.ricequant.apps.stress_test.client.LatencyHistogram;
+
+/**
+ * The outcome of one open-loop pass, produced by {@link ArrivalRatePass}
+ *
+ * @author chenfeng
+ */
+public class ArrivalRateResult {
+
+  private final double iRatePerMinute;
+
+  private final int iNumArrivals;
+
+  private final int iNumInTime;
+
+  private final int iNumOverdue;
+
+  private final boolean iSuccess;
+
+  private final double iThroughputPerMinute;
+
+  private final long iSojournPercentileMillis;
+
+  private final LatencyHistogram iSojournTimes;
+
+  private final LatencyHistogram iQueueingDelays;
+
+  private final LatencyHistogram iCanceledRunTimes;
+
+  private final LatencyHistogram iErrorRunTimes;
+
+  private final LatencyHistogram iClientAbortRunTimes;
+
+  private final RunTimeLog iRunTimes;
+
+  ArrivalRateResult(double ratePerMinute, int numArrivals, int numInTime, int numOverdue, boolean success,
+          double throughputPerMinute, long sojournPercentileMillis, LatencyHistogram sojournTimes,
+          LatencyHistogram queueingDelays, LatencyHistogram canceledRunTimes, LatencyHistogram errorRunTimes,
+          LatencyHistogram clientAbortRunTimes, RunTimeLog runTimes) {
+    iRatePerMinute = ratePerMinute;
+    iNumArrivals = numArrivals;
+    iNumInTime = numInTime;
+    iNumOverdue = numOverdue;
+    iSuccess = success;
+    iThroughputPerMinute = throughputPerMinute;
+    iSojournPercentileMillis = sojournPercentileMillis;
+    iSojournTimes = sojournTimes;
+    iQueueingDelays = queueingDelays;
+    iCanceledRunTimes = canceledRunTimes;
+    iErrorRunTimes = errorRunTimes;
+    iClientAbortRunTimes = clientAbortRunTimes;
+    iRunTimes = runTimes;
+  }
+
+  /**
+   * The offered arrival rate of the pass
+   *
+   * @return runs per minute
+   */
+  public double ratePerMinute() {
+    return iRatePerMinute;
+  }
+
+  /**
+   * Number of runs started during the pass
+   *
+   * @return the number
+   */
+  public int numArrivals() {
+    return iNumArrivals;
+  }
+
+  /**
+   * Number of runs which exited normally with a sojourn time within the overtime threshold
+   *
+   * @return the number
+   */
+  public int numInTime() {
+    return iNumInTime;
+  }
+
+  /**
+   * Number of runs which exited normally with a sojourn time beyond the overtime threshold
+   *
+   * @return the number
+   */
+  public int numOverdue() {
+    return iNumOverdue;
+  }
+
+  /**
+   * See if the backend sustains the arrival rate: enough runs exit in time and the sojourn time percentile is within
+   * the overtime threshold
+   *
+   * @return true if sustainable, false otherwise
+   */
+  public boolean isSuccess() {
+    return iSuccess;
+  }
+
+  /**
+   * Normally exited runs per minute, from the first arrival to the last exit of the pass
+   *
+   * @return runs per minute
+   */
+  public double throughputPerMinute() {
+    return iThroughputPerMinute;
+  }
+
+  /**
+   * The sojourn time percentile used to judge the pass
+   *
+   * @return milliseconds
+   */
+  public long sojournPercentileMillis() {
+    return iSojournPercentileMillis;
+  }
+
+  /**
+   * Sojourn times of normally exited runs: from the scheduled arrival to the exit
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram sojournTimes() {
+    return iSojournTimes;
+  }
+
+  /**
+   * Queueing delays of runs seen running, see
+   * {@link com.ricequant.apps.stress_test.client.RunTiming#timeToRunningNanos()}
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram queueingDelays() {
+    return iQueueingDelays;
+  }
+
+  /**
+   * Sojourn times of canceled runs
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram canceledRunTimes() {
+    return iCanceledRunTimes;
+  }
+
+  /**
+   * Sojourn times of runs exited abnormally, including those killed by the client after the hard deadline
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram errorRunTimes() {
+    return iErrorRunTimes;
+  }
+
+  /**
+   * Sojourn times of runs abandoned because the client gave up talking to the facade
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram clientAbortRunTimes() {
+    return iClientAbortRunTimes;
+  }
+
+  /**
+   * Sojourn times of all runs of the pass one by one
+   *
+   * @return the sojourn times in milliseconds by exit status
+   */
+  public RunTimeLog runTimes() {
+    return iRunTimes;
+  }
+
+  @Override
+  public String toString() {
+    return "{rate:" + String.format("%.2f", iRatePerMinute) + ",arrivals:" + iNumArrivals + ",in-time:" + iNumInTime
+            + ",overdue:" + iNumOverdue + ",success:" + iSuccess + ",throughput:" + String
+            .format("%.2f", iThroughputPerMinute) + ",sojourn-percentile:" + iSojournPercentileMillis + ",sojourn:"
+            + iSojournTimes + ",queueing:" + iQueueingDelays + ",canceled:" + iCanceledRunTimes + ",error:"
+            + iErrorRunTimes + ",client-abort:" + iClientAbortRunTimes + "}";
+  }
+}
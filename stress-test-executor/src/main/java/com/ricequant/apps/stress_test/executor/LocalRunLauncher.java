@@ -0,0 +1,97 @@
+package com.ricequant.apps.stress_test.executor;
+
+import com.ricequant.apps.stress_test.client.FacadeClient;
+import com.ricequant.apps.stress_test.client.FeedArchive;
+import com.ricequant.apps.stress_test.client.PlayParams;
+import com.ricequant.apps.stress_test.client.StrategyPlayer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plays the runs with {@link StrategyPlayer}s of this process, optionally capturing their feeds into a
+ * {@link FeedArchive} for each scenario
+ *
+ * @author chenfeng
+ */
+public class LocalRunLauncher implements RunLauncher {
+
+  private final FacadeClient iClient;
+
+  private final File iArchiveDir;
+
+  private final int iArchiveSegmentBytes;
+
+  private final Map<String, FeedArchive> iArchives = new ConcurrentHashMap<>();
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private LocalRunLauncher(FacadeClient client, File archiveDir, int archiveSegmentBytes) {
+    iClient = client;
+    iArchiveDir = archiveDir;
+    iArchiveSegmentBytes = archiveSegmentBytes;
+  }
+
+  /**
+   * Creates the launcher which does not capture feeds
+   *
+   * @param client
+   *         the FacadeClient instance to communicate with server
+   *
+   * @return the launcher
+   */
+  public static LocalRunLauncher create(FacadeClient client) {
+    return new LocalRunLauncher(client, null, 0);
+  }
+
+  /**
+   * Creates the launcher which captures the feeds of each scenario into a sub directory of the archive directory
+   *
+   * @param client
+   *         the FacadeClient instance to communicate with server
+   * @param archiveDir
+   *         the directory to capture feeds into, null to not capture
+   * @param archiveSegmentBytes
+   *         size of the data file of an archive segment, see {@link FeedArchive#open(File, int)}
+   *
+   * @return the launcher
+   */
+  public static LocalRunLauncher create(FacadeClient client, File archiveDir, int archiveSegmentBytes) {
+    return new LocalRunLauncher(client, archiveDir, archiveSegmentBytes);
+  }
+
+  @Override
+  public void launch(String scenario, PlayParams params, int waitMillis, int count, RunListener listener) {
+    FeedArchive archive = archive(scenario);
+    for (int i = 0; i < count; i++)
+      StrategyPlayer.create(params, iClient).archive(archive).play(waitMillis, listener::onExit);
+  }
+
+  @Override
+  public void shutdown() {
+    for (FeedArchive archive : iArchives.values())
+      archive.close();
+  }
+
+  private FeedArchive archive(String scenario) {
+    if (iArchiveDir == null)
+      return null;
+
+    return iArchives.computeIfAbsent(scenario, name -> {
+      File dir = new File(iArchiveDir, name.replaceAll("[^A-Za-z0-9._-]", "_"));
+      try {
+        FeedArchive archive = FeedArchive.open(dir, iArchiveSegmentBytes);
+        iLogger.info("Capturing feeds of scenario <{}> into {}", name, dir);
+        return archive;
+      }
+      catch (IOException e) {
+        iLogger.error("Unable to open feed archive {}, feeds of scenario <{}> are not captured", dir, name, e);
+        return null;
+      }
+    });
+  }
+}
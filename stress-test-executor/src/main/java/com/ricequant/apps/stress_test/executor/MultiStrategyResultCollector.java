@@ -1,12 +1,10 @@
 package com.ricequant.apps.stress_test.executor;
 
-import com.ricequant.apps.stress_test.client.ExecutionStatusHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * This class collects run results of all runs in the scenario and output the final results
@@ -17,28 +15,25 @@ public class MultiStrategyResultCollector {
 
   private final int iNumExpected;
 
-  private final AtomicInteger iResultsReceived = new AtomicInteger(0);
-
-  private final AtomicInteger iResultsOvertime = new AtomicInteger(0);
-
   private final double iNormalRatio;
 
-  private final BiConsumer<Boolean, Double> iResultAcceptor;
+  private final double iSuccessPercentile;
 
-  private final long iOvertimeThreshold;
+  private final Consumer<PassResult> iResultAcceptor;
 
-  private final AtomicLong iTotalNormalRunTime = new AtomicLong(0);
+  private final RunTimeStats iRunTimeStats;
 
   private final Logger iLogger = LoggerFactory.getLogger(getClass());
 
   private final Collector collector;
 
   private MultiStrategyResultCollector(long overtimeThreshold, int numExpected, double normalRatio,
-          BiConsumer<Boolean, Double> resultAcceptor) {
+          double successPercentile, Consumer<PassResult> resultAcceptor) {
     iNumExpected = numExpected;
     iNormalRatio = normalRatio;
+    iSuccessPercentile = successPercentile;
     iResultAcceptor = resultAcceptor;
-    iOvertimeThreshold = overtimeThreshold;
+    iRunTimeStats = new RunTimeStats(overtimeThreshold);
 
     collector = new Collector();
   }
@@ -47,34 +42,13 @@ public class MultiStrategyResultCollector {
 
     @Override
     public void accept(String resultStatus, Long millisElapsed) {
-      if (ExecutionStatusHelper.isCanceled(resultStatus)) {
-        iLogger.info("Strategy execution canceled, running time is: " + millisElapsed);
-        iResultsOvertime.incrementAndGet();
-      }
-      else if (ExecutionStatusHelper.isError(resultStatus)) {
-        iLogger.info("Strategy execution error, running time is: " + millisElapsed);
-        iResultsOvertime.incrementAndGet();
-      }
-      else if (ExecutionStatusHelper.isSuccess(resultStatus)) {
-        if (millisElapsed > iOvertimeThreshold) {
-          iLogger.info("Strategy execution normally exited but overdue. Threshold is: " + iOvertimeThreshold
-                  + ", running time is: " + millisElapsed);
-          iResultsOvertime.incrementAndGet();
-        }
-        else {
-          iLogger.info("Strategy execution normally exited, running time is: " + millisElapsed);
-          iTotalNormalRunTime.addAndGet(millisElapsed);
-        }
-      }
-
-      if (ExecutionStatusHelper.isExit(resultStatus)) {
-        iLogger.info("Received results of " + (iResultsReceived.get() + 1) + "-th strategy.");
-        if (iNumExpected == iResultsReceived.incrementAndGet()) {
-          double numNormals = iResultsReceived.get() - iResultsOvertime.get();
-          iResultAcceptor.accept(numNormals / iResultsReceived.get() >= iNormalRatio,
-                  numNormals == 0 ? 0 : (double) iTotalNormalRunTime.get() / numNormals);
-        }
-      }
+      int numResults = iRunTimeStats.record(resultStatus, millisElapsed);
+      if (numResults == 0)
+        return;
+
+      iLogger.info("Received results of {}-th strategy.", numResults);
+      if (iNumExpected == numResults)
+        iResultAcceptor.accept(iRunTimeStats.toPassResult(iNumExpected, iNormalRatio, iSuccessPercentile));
     }
   }
 
@@ -90,16 +64,19 @@ public class MultiStrategyResultCollector {
    * @param lowestNormalRatio
    *         a number in range (0, 1] such that: if number-of-successful-runs / number-of-results-expected is greator
    *         than the ratio, the whole pass is considered successful
+   * @param successPercentile
+   *         a number in range (0, 1], or 0 to disable. When enabled, this percentile of the running times of all
+   *         normally exited runs must be within the overtime threshold for the pass to be successful, and it replaces
+   *         the average as the running time of the pass
    * @param resultAcceptor
-   *         callback to receive the final results. The first parameter is a boolean, true if the pass is successful,
-   *         false otherwise; the second parameter is the average running time for all successfully finished strategy
-   *         runs.
+   *         callback to receive the final results of the pass, including whether the pass is successful and the
+   *         distributions of running times
    *
    * @return the acceptor to be passed into each StrategyPlayer
    */
   static BiConsumer<String, Long> getResultAcceptor(long overtimeThreshold, int numResultsExpected,
-          double lowestNormalRatio, BiConsumer<Boolean, Double> resultAcceptor) {
+          double lowestNormalRatio, double successPercentile, Consumer<PassResult> resultAcceptor) {
     return new MultiStrategyResultCollector(overtimeThreshold, numResultsExpected, lowestNormalRatio,
-            resultAcceptor).collector;
+            successPercentile, resultAcceptor).collector;
   }
 }
@@ -0,0 +1,145 @@
+package com.ricequant.apps.stress_test.executor;
+
+import com.ricequant.apps.stress_test.client.LatencyHistogram;
+
+/**
+ * The outcome of one stress test pass, produced by {@link MultiStrategyResultCollector}
+ *
+ * @author chenfeng
+ */
+public class PassResult {
+
+  private final int iNumExecutors;
+
+  private final boolean iSuccess;
+
+  private final double iRuntime;
+
+  private final LatencyHistogram iNormalRunTimes;
+
+  private final LatencyHistogram iExitedRunTimes;
+
+  private final LatencyHistogram iOverdueRunTimes;
+
+  private final LatencyHistogram iCanceledRunTimes;
+
+  private final LatencyHistogram iErrorRunTimes;
+
+  private final LatencyHistogram iClientAbortRunTimes;
+
+  private final RunTimeLog iRunTimes;
+
+  PassResult(int numExecutors, boolean success, double runtime, LatencyHistogram normalRunTimes,
+          LatencyHistogram exitedRunTimes, LatencyHistogram overdueRunTimes, LatencyHistogram canceledRunTimes,
+          LatencyHistogram errorRunTimes, LatencyHistogram clientAbortRunTimes, RunTimeLog runTimes) {
+    iNumExecutors = numExecutors;
+    iSuccess = success;
+    iRuntime = runtime;
+    iNormalRunTimes = normalRunTimes;
+    iExitedRunTimes = exitedRunTimes;
+    iOverdueRunTimes = overdueRunTimes;
+    iCanceledRunTimes = canceledRunTimes;
+    iErrorRunTimes = errorRunTimes;
+    iClientAbortRunTimes = clientAbortRunTimes;
+    iRunTimes = runTimes;
+  }
+
+  /**
+   * Number of strategies started in the pass
+   *
+   * @return the number
+   */
+  public int numExecutors() {
+    return iNumExecutors;
+  }
+
+  /**
+   * See if the pass is successful
+   *
+   * @return true if successful, false otherwise
+   */
+  public boolean isSuccess() {
+    return iSuccess;
+  }
+
+  /**
+   * The running time of the pass used to compare passes, either the average running time of runs exited in time, or
+   * the configured percentile of all normally exited runs
+   *
+   * @return milliseconds
+   */
+  public double runtime() {
+    return iRuntime;
+  }
+
+  /**
+   * Running times of runs which exited normally within the overtime threshold
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram normalRunTimes() {
+    return iNormalRunTimes;
+  }
+
+  /**
+   * Running times of all runs which exited normally, either within or beyond the overtime threshold
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram exitedRunTimes() {
+    return iExitedRunTimes;
+  }
+
+  /**
+   * Running times of runs which exited normally but beyond the overtime threshold
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram overdueRunTimes() {
+    return iOverdueRunTimes;
+  }
+
+  /**
+   * Running times of canceled runs
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram canceledRunTimes() {
+    return iCanceledRunTimes;
+  }
+
+  /**
+   * Running times of runs exited abnormally, including those killed by the client after the hard deadline
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram errorRunTimes() {
+    return iErrorRunTimes;
+  }
+
+  /**
+   * Running times of runs abandoned because the client gave up talking to the facade, after exhausting its retries or
+   * being rejected by an open circuit breaker. They fail the pass like errors do.
+   *
+   * @return the histogram in milliseconds
+   */
+  public LatencyHistogram clientAbortRunTimes() {
+    return iClientAbortRunTimes;
+  }
+
+  /**
+   * Running times of all runs of the pass one by one
+   *
+   * @return the running times in milliseconds by exit status
+   */
+  public RunTimeLog runTimes() {
+    return iRunTimes;
+  }
+
+  @Override
+  public String toString() {
+    return "{executors:" + iNumExecutors + ",success:" + iSuccess + ",runtime:" + iRuntime + ",normal:"
+            + iNormalRunTimes + ",overdue:" + iOverdueRunTimes + ",canceled:" + iCanceledRunTimes + ",error:"
+            + iErrorRunTimes + ",client-abort:" + iClientAbortRunTimes + "}";
+  }
+}
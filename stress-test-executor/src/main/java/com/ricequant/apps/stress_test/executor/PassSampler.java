@@ -0,0 +1,212 @@
+package com.ricequant.apps.stress_test.executor;
+
+import com.ricequant.apps.stress_test.client.ClientMetrics;
+import com.ricequant.apps.stress_test.client.ExecutionStatusHelper;
+import com.ricequant.apps.stress_test.client.FacadeClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the load of the client and of the runs it plays at a fixed interval while a pass is running, and writes one
+ * CSV line per sample, so that it can be seen when a pass began to degrade rather than only whether it failed. The
+ * samples are taken on a thread of their own, so that they are not delayed by a busy event loop.
+ * <p>
+ * The columns are: milliseconds since the pass started; runs in flight; runs in flight by their last lifecycle status:
+ * not seen yet, queued or pending, running, exited but still fetching their last feeds, and any other status; feed
+ * records received per second; HTTP requests in flight and waiting for a free connection; the CPU load of the client
+ * process in range [0, 1] over all processors, or -1 if not available; heap used and committed in bytes; and the
+ * number and milliseconds of garbage collections since the previous sample. Runs and requests are those of this
+ * process, so with workers they only cover the coordinator.
+ *
+ * @author chenfeng
+ */
+public class PassSampler {
+
+  private static final String cHeader = "elapsed-millis,runs-in-flight,runs-starting,runs-queued,runs-running,"
+          + "runs-exited,runs-other,feed-records-per-second,requests-in-flight,requests-waiting,cpu-load,"
+          + "heap-used-bytes,heap-committed-bytes,gc-count,gc-millis";
+
+  private final ClientMetrics iMetrics;
+
+  private final File iFile;
+
+  private final Writer iWriter;
+
+  private final ScheduledExecutorService iTimer;
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private final long iStartNanos = System.nanoTime();
+
+  private long iLastNanos = iStartNanos;
+
+  private long iLastFeedRecords;
+
+  private long iLastCpuNanos = processCpuNanos();
+
+  private long iLastGcCount = gcCount();
+
+  private long iLastGcMillis = gcMillis();
+
+  private boolean iStopped = false;
+
+  private PassSampler(ClientMetrics metrics, File file, Writer writer) {
+    iMetrics = metrics;
+    iFile = file;
+    iWriter = writer;
+    iLastFeedRecords = metrics.runs().feedRecords();
+    iTimer = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "pass-sampler");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Start sampling
+   *
+   * @param client
+   *         the client whose runs and requests are sampled
+   * @param file
+   *         the CSV file to write the samples into, created with its parent directories if not existing
+   * @param intervalMillis
+   *         interval of the samples
+   *
+   * @return the sampler, call {@link #stop()} when the pass finishes
+   *
+   * @throws IOException
+   *         if the file cannot be created
+   */
+  public static PassSampler start(FacadeClient client, File file, long intervalMillis) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+      throw new IOException("Unable to create sample directory: " + dir);
+
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    writer.write(cHeader);
+    writer.write('\n');
+
+    PassSampler sampler = new PassSampler(client.metrics(), file, writer);
+    sampler.iTimer.scheduleAtFixedRate(sampler::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    return sampler;
+  }
+
+  /**
+   * The file the samples are written into
+   *
+   * @return the file
+   */
+  public File file() {
+    return iFile;
+  }
+
+  /**
+   * Take the last sample and close the file
+   */
+  public void stop() {
+    iTimer.shutdownNow();
+    sample();
+    synchronized (this) {
+      iStopped = true;
+      try {
+        iWriter.close();
+      }
+      catch (IOException e) {
+        iLogger.error("Unable to close sample file {}", iFile, e);
+      }
+    }
+  }
+
+  private synchronized void sample() {
+    if (iStopped)
+      return;
+
+    long now = System.nanoTime();
+    double seconds = Math.max(1, now - iLastNanos) / 1e9;
+
+    int queued = 0;
+    int running = 0;
+    int exited = 0;
+    int other = 0;
+    for (Map.Entry<String, Integer> entry : iMetrics.runs().byStatus().entrySet()) {
+      String status = entry.getKey();
+      if (ExecutionStatusHelper.isQueued(status))
+        queued += entry.getValue();
+      else if ("Running".equals(status))
+        running += entry.getValue();
+      else if (ExecutionStatusHelper.isExit(status))
+        exited += entry.getValue();
+      else
+        other += entry.getValue();
+    }
+
+    long feedRecords = iMetrics.runs().feedRecords();
+    long cpuNanos = processCpuNanos();
+    // the CPU time is counted in ticks, which may exceed a very short interval
+    double cpuLoad = cpuNanos < 0 ? -1 : Math.min(1, (cpuNanos - iLastCpuNanos) / (seconds * 1e9 * Runtime
+            .getRuntime().availableProcessors()));
+    MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    long gcCount = gcCount();
+    long gcMillis = gcMillis();
+
+    String line = TimeUnit.NANOSECONDS.toMillis(now - iStartNanos) + "," + iMetrics.runs().inFlight() + ","
+            + iMetrics.runs().starting() + "," + queued + "," + running + "," + exited + "," + other + "," + String
+            .format(Locale.ROOT, "%.1f", (feedRecords - iLastFeedRecords) / seconds) + ","
+            + iMetrics.pool().getInFlight() + "," + iMetrics.pool().getWaiting() + "," + String
+            .format(Locale.ROOT, "%.3f", cpuLoad) + "," + heap.getUsed() + "," + heap.getCommitted() + ","
+            + (gcCount - iLastGcCount) + "," + (gcMillis - iLastGcMillis);
+
+    iLastNanos = now;
+    iLastFeedRecords = feedRecords;
+    iLastCpuNanos = cpuNanos;
+    iLastGcCount = gcCount;
+    iLastGcMillis = gcMillis;
+
+    try {
+      iWriter.write(line);
+      iWriter.write('\n');
+      iWriter.flush();
+    }
+    catch (IOException e) {
+      iLogger.error("Unable to write sample file {}, sample lost: {}", iFile, line, e);
+    }
+  }
+
+  private static long processCpuNanos() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean)
+      return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+    return -1;
+  }
+
+  private static long gcCount() {
+    long ret = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      ret += Math.max(0, gc.getCollectionCount());
+    return ret;
+  }
+
+  private static long gcMillis() {
+    long ret = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      ret += Math.max(0, gc.getCollectionTime());
+    return ret;
+  }
+}
@@ -0,0 +1,50 @@
+package com.ricequant.apps.stress_test.executor;
+
+import com.ricequant.apps.stress_test.client.PlayParams;
+import com.ricequant.apps.stress_test.client.RunTiming;
+
+/**
+ * Starts strategy runs for the scenarios and reports how each of them exited. Runs are either played by this process,
+ * see {@link LocalRunLauncher}, or handed to worker nodes, see
+ * {@link com.ricequant.apps.stress_test.executor.distributed.DistributedRunLauncher}.
+ *
+ * @author chenfeng
+ */
+public interface RunLauncher {
+
+  /**
+   * Start runs of the same strategy
+   *
+   * @param scenario
+   *         name of the scenario the runs belong to, their feeds are captured under this name if capturing is enabled
+   * @param params
+   *         the parameters needed to start the strategy
+   * @param waitMillis
+   *         the hard deadline of each run in milliseconds, 0 to wait forever
+   * @param count
+   *         number of runs to start
+   * @param listener
+   *         callback which is called once for each run when it exits
+   */
+  void launch(String scenario, PlayParams params, int waitMillis, int count, RunListener listener);
+
+  /**
+   * Release the resources held by the launcher, runs still running are not stopped
+   */
+  void shutdown();
+
+  /**
+   * Receives the result of a run
+   */
+  @FunctionalInterface
+  interface RunListener {
+
+    /**
+     * Called when a run exits
+     *
+     * @param timing
+     *         the status the run exited with and how its time was spent
+     */
+    void onExit(RunTiming timing);
+  }
+}
@@ -0,0 +1,45 @@
+package com.ricequant.apps.stress_test.executor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The running time of every run of a pass grouped by the status it exited with, in the order the runs exited. Unlike
+ * the histograms it keeps the exact values, so that the runs of a pass can be stored one by one.
+ *
+ * @author chenfeng
+ */
+public class RunTimeLog {
+
+  private final Map<String, List<Long>> iRunTimes = new LinkedHashMap<>();
+
+  RunTimeLog() {
+  }
+
+  synchronized void record(String status, long millisElapsed) {
+    iRunTimes.computeIfAbsent(status, s -> new ArrayList<>()).add(millisElapsed);
+  }
+
+  /**
+   * Number of runs recorded
+   *
+   * @return the number
+   */
+  public synchronized int count() {
+    return iRunTimes.values().stream().mapToInt(List::size).sum();
+  }
+
+  /**
+   * The running times of the runs by their exit status
+   *
+   * @return a copy of the running times in milliseconds, statuses in the order they are first seen
+   */
+  public synchronized Map<String, long[]> byStatus() {
+    Map<String, long[]> ret = new LinkedHashMap<>();
+    for (Map.Entry<String, List<Long>> entry : iRunTimes.entrySet())
+      ret.put(entry.getKey(), entry.getValue().stream().mapToLong(Long::longValue).toArray());
+    return ret;
+  }
+}
@@ -0,0 +1,84 @@
+package com.ricequant.apps.stress_test.executor;
+
+import com.ricequant.apps.stress_test.client.RunTiming;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import com.ricequant.generated_config.apps.stress_test.RuntimeComponentEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the running time of the runs of a scenario in its configured runtime component, and counts the runs which
+ * had to be measured with another component because the configured one was not reported for them, so that a pass mixing
+ * measurements does not go unnoticed.
+ *
+ * @author chenfeng
+ */
+public class RunTimeMeter {
+
+  private final TestScenario iScenario;
+
+  private final Map<RuntimeComponentEnum, AtomicInteger> iFallbacks = new EnumMap<>(RuntimeComponentEnum.class);
+
+  private final AtomicBoolean iWarned = new AtomicBoolean(false);
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private RunTimeMeter(TestScenario scenario) {
+    iScenario = scenario;
+    // filled once, so the map can be read from any thread
+    for (RuntimeComponentEnum component : RuntimeComponentEnum.values())
+      iFallbacks.put(component, new AtomicInteger(0));
+  }
+
+  /**
+   * Create a meter for a scenario
+   *
+   * @param scenario
+   *         the scenario whose runtime component is measured
+   *
+   * @return the meter
+   */
+  public static RunTimeMeter create(TestScenario scenario) {
+    return new RunTimeMeter(scenario);
+  }
+
+  /**
+   * The running time of a run, see {@link TestScenario#runtimeMillis(RunTiming)}
+   *
+   * @param timing
+   *         the timing reported for the run
+   *
+   * @return milliseconds
+   */
+  public long runtimeMillis(RunTiming timing) {
+    RuntimeComponentEnum measured = iScenario.measuredComponent(timing);
+    if (measured != iScenario.runtimeComponent()) {
+      iFallbacks.get(measured).incrementAndGet();
+      if (iWarned.compareAndSet(false, true))
+        iLogger.warn("A run of scenario <{}> exited {} without its {} time, measured with {} time instead, further "
+                        + "runs like this are counted by pass", iScenario.name(), timing.status(),
+                iScenario.runtimeComponent().value(), measured.value());
+    }
+    return iScenario.runtimeMillis(timing);
+  }
+
+  /**
+   * Warn about the runs measured with another component since the last call, and reset the counts
+   *
+   * @param pass
+   *         description of the pass the runs belong to
+   */
+  public void warnFallbacks(String pass) {
+    for (Map.Entry<RuntimeComponentEnum, AtomicInteger> entry : iFallbacks.entrySet()) {
+      int count = entry.getValue().getAndSet(0);
+      if (count > 0)
+        iLogger.warn("{} of scenario <{}>: {} runs measured with {} time instead of {} time", pass, iScenario.name(),
+                count, entry.getKey().value(), iScenario.runtimeComponent().value());
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package com.ricequant.apps.stress_test.executor;
+
+import com.ricequant.apps.stress_test.client.ExecutionStatusHelper;
+import com.ricequant.apps.stress_test.client.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Running times of a group of runs classified by how they exited, and the rules to judge them as a pass
+ *
+ * @author chenfeng
+ */
+class RunTimeStats {
+
+  private static final long cHighestTrackableMillis = TimeUnit.DAYS.toMillis(1);
+
+  private final long iOvertimeThreshold;
+
+  private final AtomicInteger iResultsReceived = new AtomicInteger(0);
+
+  private final AtomicInteger iResultsOvertime = new AtomicInteger(0);
+
+  private final LatencyHistogram iNormalRunTimes = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final LatencyHistogram iExitedRunTimes = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final LatencyHistogram iOverdueRunTimes = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final LatencyHistogram iCanceledRunTimes = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final LatencyHistogram iErrorRunTimes = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final LatencyHistogram iClientAbortRunTimes = LatencyHistogram.create(cHighestTrackableMillis);
+
+  private final RunTimeLog iRunTimes = new RunTimeLog();
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  RunTimeStats(long overtimeThreshold) {
+    iOvertimeThreshold = overtimeThreshold;
+  }
+
+  /**
+   * Record the result of a run
+   *
+   * @param resultStatus
+   *         the lifecycle status the run exited with
+   * @param millisElapsed
+   *         the running time
+   *
+   * @return the number of results recorded so far including this one, or 0 if the status is not an exit status
+   */
+  int record(String resultStatus, long millisElapsed) {
+    if (ExecutionStatusHelper.isCanceled(resultStatus)) {
+      iLogger.info("Strategy execution canceled, running time is: {}", millisElapsed);
+      iCanceledRunTimes.record(millisElapsed);
+      iResultsOvertime.incrementAndGet();
+    }
+    else if (ExecutionStatusHelper.isClientAbort(resultStatus)) {
+      iLogger.info("Strategy execution abandoned by the client, running time is: {}", millisElapsed);
+      iClientAbortRunTimes.record(millisElapsed);
+      iResultsOvertime.incrementAndGet();
+    }
+    else if (ExecutionStatusHelper.isError(resultStatus)) {
+      iLogger.info("Strategy execution error, running time is: {}", millisElapsed);
+      iErrorRunTimes.record(millisElapsed);
+      iResultsOvertime.incrementAndGet();
+    }
+    else if (ExecutionStatusHelper.isSuccess(resultStatus)) {
+      iExitedRunTimes.record(millisElapsed);
+      if (millisElapsed > iOvertimeThreshold) {
+        iLogger.info("Strategy execution normally exited but overdue. Threshold is: {}, running time is: {}",
+                iOvertimeThreshold, millisElapsed);
+        iOverdueRunTimes.record(millisElapsed);
+        iResultsOvertime.incrementAndGet();
+      }
+      else {
+        iLogger.info("Strategy execution normally exited, running time is: {}", millisElapsed);
+        iNormalRunTimes.record(millisElapsed);
+      }
+    }
+
+    if (!ExecutionStatusHelper.isExit(resultStatus))
+      return 0;
+
+    iRunTimes.record(resultStatus, millisElapsed);
+    return iResultsReceived.incrementAndGet();
+  }
+
+  /**
+   * Judge the recorded results as a pass
+   *
+   * @param numExecutors
+   *         number of strategies running concurrently in the pass
+   * @param lowestNormalRatio
+   *         a number in range (0, 1], the pass is successful only if the ratio of runs exited in time is not lower
+   * @param successPercentile
+   *         a number in range (0, 1], or 0 to disable. When enabled, this percentile of the running times of all
+   *         normally exited runs must be within the overtime threshold for the pass to be successful, and it replaces
+   *         the average as the running time of the pass
+   *
+   * @return the result of the pass
+   */
+  PassResult toPassResult(int numExecutors, double lowestNormalRatio, double successPercentile) {
+    int numResults = iResultsReceived.get();
+    double numNormals = numResults - iResultsOvertime.get();
+    boolean success = numResults > 0 && numNormals / numResults >= lowestNormalRatio;
+
+    double runtime;
+    if (successPercentile > 0) {
+      runtime = iExitedRunTimes.percentile(successPercentile);
+      success = success && iExitedRunTimes.count() > 0 && runtime <= iOvertimeThreshold;
+    }
+    else
+      runtime = iNormalRunTimes.mean();
+
+    return new PassResult(numExecutors, success, runtime, iNormalRunTimes, iExitedRunTimes, iOverdueRunTimes,
+            iCanceledRunTimes, iErrorRunTimes, iClientAbortRunTimes, iRunTimes);
+  }
+}
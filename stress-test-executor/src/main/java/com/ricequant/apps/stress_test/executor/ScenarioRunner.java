@@ -1,11 +1,21 @@
 package com.ricequant.apps.stress_test.executor;
 
 import com.ricequant.apps.stress_test.client.FacadeClient;
-import com.ricequant.apps.stress_test.client.StrategyPlayer;
+import com.ricequant.apps.stress_test.client.LatencyHistogram;
 import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import com.ricequant.apps.stress_test.executor.history.ResultStore;
+import com.ricequant.apps.stress_test.executor.history.SpeedBaselineCache;
+import com.ricequant.apps.stress_test.executor.search.ArrivalRateSweep;
+import com.ricequant.apps.stress_test.executor.search.CapacitySearchStrategy;
+import com.ricequant.generated_config.apps.stress_test.LoadModeEnum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
 import java.util.function.BiConsumer;
 
 /**
@@ -17,13 +27,28 @@ public class ScenarioRunner {
 
   private final FacadeClient iClient;
 
+  private final RunLauncher iLauncher;
+
+  private final ResultStore iResultStore;
+
+  private final SpeedBaselineCache iBaselines;
+
+  private final RunTimeMeter iRunTimeMeter;
+
   private final Logger iLogger = LoggerFactory.getLogger(getClass());
 
   private final Runnable iOnFinished;
 
-  private ScenarioRunner(TestScenario scenario, FacadeClient client, Runnable onFinished) {
+  private int iNumPasses = 0;
+
+  private ScenarioRunner(TestScenario scenario, FacadeClient client, RunLauncher launcher, ResultStore resultStore,
+          SpeedBaselineCache baselines, Runnable onFinished) {
     iScenario = scenario;
     iClient = client;
+    iLauncher = launcher;
+    iResultStore = resultStore;
+    iBaselines = baselines;
+    iRunTimeMeter = RunTimeMeter.create(scenario);
     iOnFinished = onFinished;
   }
 
@@ -33,14 +58,22 @@ public class ScenarioRunner {
    * @param scenario
    *         the scenario definition
    * @param client
-   *         the FacadeClient instance to communicate with server
+   *         the FacadeClient instance whose timers drive the load
+   * @param launcher
+   *         the launcher to start strategy runs with
+   * @param resultStore
+   *         the store to record the passes and the outcome of the scenario into, or null to not record them
+   * @param baselines
+   *         the cache to reuse the load-free running time of the strategy from and to keep it into, or null to always
+   *         measure it
    * @param onFinished
    *         the callback which is called when the scenario is finished
    *
    * @return the instance
    */
-  public static ScenarioRunner create(TestScenario scenario, FacadeClient client, Runnable onFinished) {
-    return new ScenarioRunner(scenario, client, onFinished);
+  public static ScenarioRunner create(TestScenario scenario, FacadeClient client, RunLauncher launcher,
+          ResultStore resultStore, SpeedBaselineCache baselines, Runnable onFinished) {
+    return new ScenarioRunner(scenario, client, launcher, resultStore, baselines, onFinished);
   }
 
   /**
@@ -51,130 +84,243 @@ public class ScenarioRunner {
   }
 
   private void determineSingleStrategyAverageSpeed() {
-    iLogger.info("Determining single strategy average execution...");
-
-    StrategyPlayer player = StrategyPlayer.create(iScenario.playParams(), iClient);
-    player.play(iScenario.timeoutToKillMillis(),
-            SingleStrategySpeedDecider.getResultAcceptor(iScenario.numInitialSpeedTestRuns(), resultAcceptor -> {
-              StrategyPlayer newPlayer = StrategyPlayer.create(iScenario.playParams(), iClient);
-              newPlayer.play(iScenario.timeoutToKillMillis(), resultAcceptor);
-            }, averageTime -> {
-              if (averageTime < 0) {
-                iLogger.error("Failed to determine the initial speed of the strategy, stop scenario: " + iScenario);
+    SpeedBaseline cached = iBaselines == null ? null : iBaselines.lookup(iScenario);
+    if (cached != null) {
+      startTest(cached.estimate());
+      return;
+    }
+
+    iLogger.info("Determining single strategy average execution of scenario <{}>...", iScenario.name());
+
+    playOne(SingleStrategySpeedDecider.getResultAcceptor(iScenario, this::playOne,
+            baseline -> {
+              iRunTimeMeter.warnFallbacks("Speed test");
+              if (baseline == null) {
+                iLogger.error("Failed to determine the initial speed of the strategy, stop scenario: {}", iScenario);
+                storeScenario(0, 0, null);
                 iOnFinished.run();
               }
               else {
-                iLogger.info("Single strategy average execution time is: " + averageTime + " milliseconds.");
-                doStressTest(averageTime, iScenario.initialParallels(), 0, StressTestStatus.initialStatus());
+                iLogger.info("Single strategy execution time of scenario <{}> is estimated at: {} milliseconds.",
+                        iScenario.name(), baseline.estimate());
+                if (iBaselines != null)
+                  iBaselines.store(iScenario, baseline);
+                startTest(baseline.estimate());
               }
             }));
   }
 
-  private void doStressTest(double unstressedExecutionTime, int numExecutors, int runCount,
-          StressTestStatus bestSuccessfulStatus) {
-    iLogger.info("Starting stress test pass with: numExecutors=" + numExecutors);
+  private void startTest(double unstressedExecutionTime) {
+    if (iScenario.loadMode() == LoadModeEnum.OPEN_LOOP)
+      startArrivalRateTest(unstressedExecutionTime);
+    else if (iScenario.loadMode() == LoadModeEnum.SOAK)
+      startSoakTest(unstressedExecutionTime);
+    else
+      startStressTest(unstressedExecutionTime);
+  }
 
-    if (runCount >= iScenario.maxRefineRuns()) {
-      iLogger.info("maxRefineRuns reached, stopping...");
+  private void playOne(BiConsumer<String, Long> resultAcceptor) {
+    iLauncher.launch(iScenario.name(), iScenario.playParams(), iScenario.timeoutToKillMillis(), 1,
+            timing -> resultAcceptor.accept(timing.status(), iRunTimeMeter.runtimeMillis(timing)));
+  }
 
-      if (bestSuccessfulStatus.numExecutors == 0)
-        iLogger.warn("There was no successful pass in this scenario <" + iScenario.name() + ">");
-      else
-        iLogger.info("Scenario <" + iScenario.toString() + ">" + System.lineSeparator() + " Finished: " + System
-                .lineSeparator() + "================================" + System.lineSeparator()
-                + "\tNumber of strategies ran: " + bestSuccessfulStatus.numExecutors + System.lineSeparator()
-                + "\taverage time taken for each run: " + bestSuccessfulStatus.averageRuntime + " milliseconds");
+  private void startStressTest(double unstressedExecutionTime) {
+    CapacitySearchStrategy search = CapacitySearchStrategy.create(iScenario, unstressedExecutionTime);
+    doStressTest(unstressedExecutionTime, search, search.firstPass(), StressTestStatus.initialStatus());
+  }
 
-      iOnFinished.run();
-      return;
-    }
+  private void doStressTest(double unstressedExecutionTime, CapacitySearchStrategy search, int numExecutors,
+          StressTestStatus bestSuccessfulStatus) {
+    iLogger.info("Starting stress test pass of scenario <{}> with: numExecutors={}", iScenario.name(), numExecutors);
+    PassSampler sampler = startSampler();
 
     BiConsumer<String, Long> resultCollector = MultiStrategyResultCollector
             .getResultAcceptor((long) (unstressedExecutionTime * iScenario.overtimeToleranceMultiplier()), numExecutors,
-                    iScenario.successTolerancePercentage(), (success, time) -> {
-                      iLogger.info("Pass finished, number of executors=" + numExecutors);
-                      if (success) {
-                        int newSize =
-                                (int) (numExecutors * (bestSuccessfulStatus.hasFailedRuns ? iScenario.refineGrowFactor()
-                                        : iScenario.expandGrowFactor()));
-
-                        if (newSize <= numExecutors + 1)
-                          newSize += 2;
-
-                        if (newSize > iScenario.theoreticalUpperBound())
-                          newSize = iScenario.theoreticalUpperBound();
-
-                        if (newSize <= numExecutors) {
-                          iLogger.info("Unable to grow number of executions and pass success, consider restrict "
-                                  + "conditions more.");
-                          doStressTest(unstressedExecutionTime, numExecutors, Integer.MAX_VALUE, StressTestStatus
-                                  .newStatus(bestSuccessfulStatus, numExecutors, time,
-                                          bestSuccessfulStatus.hasFailedRuns));
-                          return;
-                        }
-
-
-                        iLogger.info("Pass success, grow number of executors from " + numExecutors + " to " + newSize
-                                + ". Average time: " + time);
-                        // this is an incremental run, does not count
-                        doStressTest(unstressedExecutionTime, newSize,
-                                bestSuccessfulStatus.hasFailedRuns ? runCount + 1 : runCount, StressTestStatus
-                                        .newStatus(bestSuccessfulStatus, numExecutors, time,
-                                                bestSuccessfulStatus.hasFailedRuns));
-                      }
-                      else {
-                        int newSize = (int) (numExecutors * iScenario.refineShrinkFactor());
-                        if (newSize == numExecutors)
-                          newSize -= 1;
-
-                        iLogger.info("Pass failed, shrink number of executors from " + numExecutors + " to " + newSize
-                                + " for the next pass if there is one. Average time: " + time);
-
-                        doStressTest(unstressedExecutionTime, newSize, runCount + 1,
-                                StressTestStatus.newFailedStatus(bestSuccessfulStatus));
-                      }
+                    iScenario.successTolerancePercentage(), iScenario.successPercentile(), result -> {
+                      iLogger.info("Pass of scenario <{}> finished, number of executors={}, results: {}",
+                              iScenario.name(), numExecutors, result);
+                      storePass(result, stopSampler(sampler));
+
+                      StressTestStatus status = result.isSuccess() ? StressTestStatus
+                              .newStatus(bestSuccessfulStatus, result) : bestSuccessfulStatus;
+
+                      int newSize = search.nextPass(result);
+                      if (newSize <= 0)
+                        finish(status);
+                      else
+                        doStressTest(unstressedExecutionTime, search, newSize, status);
                     });
-    for (int i = 0; i < numExecutors; i++)
-      StrategyPlayer.create(iScenario.playParams(), iClient).play(iScenario.timeoutToKillMillis(), resultCollector);
+    iLauncher.launch(iScenario.name(), iScenario.playParams(), iScenario.timeoutToKillMillis(), numExecutors,
+            timing -> resultCollector.accept(timing.status(), iRunTimeMeter.runtimeMillis(timing)));
+  }
+
+  private void startArrivalRateTest(double unstressedExecutionTime) {
+    ArrivalRateSweep sweep = ArrivalRateSweep.create(iScenario, unstressedExecutionTime);
+    doArrivalRatePass((long) (unstressedExecutionTime * iScenario.overtimeToleranceMultiplier()), sweep,
+            sweep.firstRate(), null);
+  }
+
+  private void doArrivalRatePass(long overtimeThreshold, ArrivalRateSweep sweep, double ratePerMinute,
+          ArrivalRateResult bestResult) {
+    iLogger.info("Starting open-loop pass of scenario <{}> with: rate={} runs/min, duration={} milliseconds",
+            iScenario.name(), ratePerMinute, iScenario.loadDurationMillis());
+
+    PassSampler sampler = startSampler();
+    ArrivalRatePass.create(iScenario, iClient, iLauncher, ratePerMinute, overtimeThreshold, result -> {
+      iLogger.info("Open-loop pass of scenario <{}> finished, results: {}", iScenario.name(), result);
+      storePass(result, stopSampler(sampler));
+
+      ArrivalRateResult best = result.isSuccess() && (bestResult == null || bestResult.ratePerMinute() < result
+              .ratePerMinute()) ? result : bestResult;
+
+      double newRate = sweep.nextRate(result);
+      if (newRate <= 0)
+        finishArrivalRateTest(best);
+      else
+        doArrivalRatePass(overtimeThreshold, sweep, newRate, best);
+    }).run();
+  }
+
+  private void finishArrivalRateTest(ArrivalRateResult bestResult) {
+    if (bestResult == null) {
+      storeScenario(0, 0, null);
+      iLogger.warn("There was no sustainable arrival rate in this scenario <{}>", iScenario.name());
+    }
+    else {
+      storeScenario(bestResult.ratePerMinute(), bestResult.sojournPercentileMillis(), bestResult.sojournTimes());
+      iLogger.info("Scenario <" + iScenario.toString() + ">" + System.lineSeparator() + " Finished: " + System
+              .lineSeparator() + "================================" + System.lineSeparator()
+              + "\tHighest sustainable arrival rate: " + bestResult.ratePerMinute() + " runs/min" + System
+              .lineSeparator() + "\tThroughput: " + bestResult.throughputPerMinute() + " runs/min" + System
+              .lineSeparator() + "\t" + (iScenario.successPercentile() > 0 ? percentileLabel() : "p99")
+              + " sojourn time: " + bestResult.sojournPercentileMillis() + " milliseconds" + System
+              .lineSeparator() + "\tdistributions: " + bestResult);
+    }
+
+    iOnFinished.run();
+  }
+
+  private void startSoakTest(double unstressedExecutionTime) {
+    int concurrency = iScenario.soakConcurrency();
+    iLogger.info("Starting soak pass of scenario <{}> with: numExecutors={}, duration={} milliseconds",
+            iScenario.name(), concurrency, iScenario.loadDurationMillis());
+
+    PassSampler sampler = startSampler();
+    SoakPass.create(iScenario, iClient, iLauncher, iRunTimeMeter, concurrency,
+            (long) (unstressedExecutionTime * iScenario.overtimeToleranceMultiplier()), result -> {
+              PassResult overall = result.overall();
+              storePass(overall, stopSampler(sampler));
+              storeScenario(overall.isSuccess() ? concurrency : 0, overall.runtime(), overall.exitedRunTimes());
+
+              iLogger.info("Scenario <" + iScenario.toString() + ">" + System.lineSeparator() + " Finished: " + System
+                      .lineSeparator() + "================================" + System.lineSeparator()
+                      + "\tNumber of strategies kept running: " + concurrency + System.lineSeparator()
+                      + "\tSoak " + (result.overall().isSuccess() ? "passed" : "failed") + System.lineSeparator()
+                      + "\tThroughput: " + result.throughputPerMinute() + " runs/min" + System.lineSeparator()
+                      + "\tRunning time of the last window / the first window: " + result.degradation() + System
+                      .lineSeparator() + "\trunning time distributions: " + result.overall());
+
+              iOnFinished.run();
+            }).run();
+  }
+
+  private void finish(StressTestStatus bestSuccessfulStatus) {
+    PassResult best = bestSuccessfulStatus.passResult;
+    storeScenario(bestSuccessfulStatus.numExecutors, bestSuccessfulStatus.runtime,
+            best == null ? null : best.exitedRunTimes());
+
+    if (bestSuccessfulStatus.numExecutors == 0)
+      iLogger.warn("There was no successful pass in this scenario <{}>", iScenario.name());
+    else
+      iLogger.info("Scenario <" + iScenario.toString() + ">" + System.lineSeparator() + " Finished: " + System
+              .lineSeparator() + "================================" + System.lineSeparator()
+              + "\tNumber of strategies ran: " + bestSuccessfulStatus.numExecutors + System.lineSeparator() + "\t"
+              + (iScenario.successPercentile() > 0 ? percentileLabel() : "average")
+              + " time taken for each run: " + bestSuccessfulStatus.runtime + " milliseconds" + System.lineSeparator()
+              + "\trunning time distributions: " + bestSuccessfulStatus.passResult);
+
+    iOnFinished.run();
+  }
+
+  // the configured success percentile as a label, like p99 for 0.99 or p99.9 for 0.999
+  private String percentileLabel() {
+    DecimalFormat format = new DecimalFormat("0.###", DecimalFormatSymbols.getInstance(Locale.ROOT));
+    return "p" + format.format(iScenario.successPercentile() * 100);
+  }
+
+  // samples are written next to the result store, so there are none without it
+  private PassSampler startSampler() {
+    int pass = ++iNumPasses;
+    if (iResultStore == null || iScenario.sampleIntervalMillis() <= 0)
+      return null;
+
+    try {
+      return PassSampler
+              .start(iClient, iResultStore.samplesFile(iScenario.name(), pass), iScenario.sampleIntervalMillis());
+    }
+    catch (IOException e) {
+      iLogger.error("Unable to sample pass {} of scenario <{}>", pass, iScenario.name(), e);
+      return null;
+    }
+  }
+
+  private static File stopSampler(PassSampler sampler) {
+    if (sampler == null)
+      return null;
+
+    sampler.stop();
+    return sampler.file();
+  }
+
+  private void storePass(PassResult result, File samples) {
+    iRunTimeMeter.warnFallbacks("Pass " + iNumPasses);
+    if (iResultStore != null)
+      iResultStore.recordPass(iScenario.name(), iScenario.loadMode(), result, samples);
+  }
+
+  private void storePass(ArrivalRateResult result, File samples) {
+    if (iResultStore != null)
+      iResultStore.recordPass(iScenario.name(), result, samples);
+  }
+
+  private void storeScenario(double capacity, double runtime, LatencyHistogram latencies) {
+    if (iResultStore != null)
+      iResultStore.recordScenario(iScenario.name(), iScenario.loadMode(), capacity, runtime, latencies);
   }
 
   private static class StressTestStatus {
 
     int numExecutors;
 
-    double averageRuntime;
+    double runtime;
 
-    boolean hasFailedRuns = false;
+    PassResult passResult;
 
-    private StressTestStatus(int numExecutors, double averageRuntime, boolean hasFailedRuns) {
+    private StressTestStatus(int numExecutors, double runtime, PassResult passResult) {
       this.numExecutors = numExecutors;
-      this.averageRuntime = averageRuntime;
-      this.hasFailedRuns = hasFailedRuns;
+      this.runtime = runtime;
+      this.passResult = passResult;
     }
 
     public static StressTestStatus initialStatus() {
-      return new StressTestStatus(0, 0, false);
+      return new StressTestStatus(0, 0, null);
     }
 
-    public static StressTestStatus newStatus(StressTestStatus bestSuccessfulStatus, int numExecutors,
-            double averageRuntime, boolean hasFailedRuns) {
+    public static StressTestStatus newStatus(StressTestStatus bestSuccessfulStatus, PassResult result) {
+      int numExecutors = result.numExecutors();
+      double runtime = result.runtime();
 
-      if (bestSuccessfulStatus.averageRuntime == 0)
-        return new StressTestStatus(numExecutors, averageRuntime, hasFailedRuns);
+      if (bestSuccessfulStatus.runtime == 0)
+        return new StressTestStatus(numExecutors, runtime, result);
 
       if (bestSuccessfulStatus.numExecutors < numExecutors)
-        return new StressTestStatus(numExecutors, averageRuntime, hasFailedRuns);
+        return new StressTestStatus(numExecutors, runtime, result);
       else if (bestSuccessfulStatus.numExecutors == numExecutors) {
-        if (bestSuccessfulStatus.averageRuntime > averageRuntime)
-          return new StressTestStatus(numExecutors, averageRuntime, hasFailedRuns);
+        if (bestSuccessfulStatus.runtime > runtime)
+          return new StressTestStatus(numExecutors, runtime, result);
       }
 
-      return new StressTestStatus(bestSuccessfulStatus.numExecutors, bestSuccessfulStatus.averageRuntime,
-              hasFailedRuns);
-    }
-
-    public static StressTestStatus newFailedStatus(StressTestStatus status) {
-      return new StressTestStatus(status.numExecutors, status.averageRuntime, true);
+      return bestSuccessfulStatus;
     }
   }
 }
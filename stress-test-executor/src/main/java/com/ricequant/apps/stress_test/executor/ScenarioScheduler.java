@@ -0,0 +1,136 @@
+package com.ricequant.apps.stress_test.executor;
+
+import com.ricequant.apps.stress_test.client.FacadeClient;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import com.ricequant.apps.stress_test.executor.history.ResultStore;
+import com.ricequant.apps.stress_test.executor.history.SpeedBaselineCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs scenarios concurrently with a limited number of {@link ScenarioRunner}s at a time. Scenarios of the same serial
+ * group share a backend, so they never run at the same time and keep their configured order. Scenarios are started in
+ * the configured order whenever a slot is free and their group is idle.
+ *
+ * @author chenfeng
+ */
+public class ScenarioScheduler {
+
+  private final FacadeClient iClient;
+
+  private final RunLauncher iLauncher;
+
+  private final ResultStore iResultStore;
+
+  private final SpeedBaselineCache iBaselines;
+
+  private final int iMaxParallelScenarios;
+
+  private final Runnable iOnAllFinished;
+
+  private final List<TestScenario> iPending;
+
+  private final Set<String> iBusyGroups = new HashSet<>();
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private int iNumRunning = 0;
+
+  private boolean iAllFinished = false;
+
+  private ScenarioScheduler(List<TestScenario> scenarios, FacadeClient client, RunLauncher launcher,
+          ResultStore resultStore, SpeedBaselineCache baselines, int maxParallelScenarios, Runnable onAllFinished) {
+    iPending = new LinkedList<>(scenarios);
+    iClient = client;
+    iLauncher = launcher;
+    iResultStore = resultStore;
+    iBaselines = baselines;
+    iMaxParallelScenarios = maxParallelScenarios;
+    iOnAllFinished = onAllFinished;
+  }
+
+  /**
+   * Create an instance of the ScenarioScheduler
+   *
+   * @param scenarios
+   *         the scenarios to run, in the configured order
+   * @param client
+   *         the FacadeClient instance shared by all scenarios
+   * @param launcher
+   *         the launcher shared by all scenarios to start strategy runs with
+   * @param resultStore
+   *         the store to record the results of all scenarios into, or null to not record them
+   * @param baselines
+   *         the cache of the load-free running times shared by all scenarios, or null to always measure them
+   * @param maxParallelScenarios
+   *         the maximum number of scenarios running at the same time, values less than 1 are treated as 1
+   * @param onAllFinished
+   *         the callback which is called once when every scenario is finished
+   *
+   * @return the instance
+   */
+  public static ScenarioScheduler create(List<TestScenario> scenarios, FacadeClient client, RunLauncher launcher,
+          ResultStore resultStore, SpeedBaselineCache baselines, int maxParallelScenarios, Runnable onAllFinished) {
+    return new ScenarioScheduler(scenarios, client, launcher, resultStore, baselines,
+            Math.max(1, maxParallelScenarios), onAllFinished);
+  }
+
+  /**
+   * Start running scenarios
+   */
+  public void run() {
+    scheduleNext();
+  }
+
+  private void scheduleNext() {
+    List<TestScenario> toStart = new LinkedList<>();
+    boolean allFinished = false;
+
+    synchronized (this) {
+      Iterator<TestScenario> it = iPending.iterator();
+      while (iNumRunning < iMaxParallelScenarios && it.hasNext()) {
+        TestScenario scenario = it.next();
+        String group = scenario.serialGroup();
+        if (group != null && !iBusyGroups.add(group))
+          continue;
+
+        it.remove();
+        iNumRunning++;
+        toStart.add(scenario);
+      }
+
+      if (iNumRunning == 0 && iPending.isEmpty() && !iAllFinished) {
+        iAllFinished = true;
+        allFinished = true;
+      }
+    }
+
+    for (TestScenario scenario : toStart) {
+      iLogger.info("Starting scenario <{}>{}", scenario.name(),
+              scenario.serialGroup() == null ? "" : " in serial group <" + scenario.serialGroup() + ">");
+      ScenarioRunner.create(scenario, iClient, iLauncher, iResultStore, iBaselines, () -> onScenarioFinished(scenario))
+              .run();
+    }
+
+    if (allFinished) {
+      iLogger.info("All scenarios finished");
+      iOnAllFinished.run();
+    }
+  }
+
+  private void onScenarioFinished(TestScenario scenario) {
+    synchronized (this) {
+      iNumRunning--;
+      if (scenario.serialGroup() != null)
+        iBusyGroups.remove(scenario.serialGroup());
+    }
+
+    scheduleNext();
+  }
+}
@@ -1,35 +1,68 @@
 package com.ricequant.apps.stress_test.executor;
 
 import com.ricequant.apps.stress_test.client.ExecutionStatusHelper;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import com.ricequant.generated_config.apps.stress_test.SpeedTestEstimatorEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-import java.util.function.DoubleConsumer;
 
 /**
- * Decide the running time of a strategy
+ * Decide the running time of a strategy when it is the only one running, by playing runs one after another.
+ * <p>
+ * The first runs only warm up the strategy host and the client, and their running times are discarded. The following
+ * runs are measured until at least the minimum number of them are measured and the 95% confidence interval of the
+ * estimate is within the target relative error, or the maximum number of them are measured. The estimate is the
+ * median, the 20% trimmed mean or the mean of the running times measured, so that a single slow run caused by the
+ * environment does not move it much.
  *
  * @author chenfeng
  */
 public class SingleStrategySpeedDecider {
 
-  private final long iTotalTimeSpent;
+  private static final double cTrimRatio = 0.2;
 
-  private final int iNumRuns;
+  private static final double cZ975 = 1.96;
+
+  // two-sided 95% quantiles of Student's t distribution by degrees of freedom from 1, cZ975 is used past the end
+  private static final double[] cT975 = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228, 2.201,
+          2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052,
+          2.048, 2.045, 2.042};
+
+  private final int iNumWarmUpRuns;
+
+  private final int iMinRuns;
+
+  private final int iMaxRuns;
+
+  private final double iRelativeError;
+
+  private final SpeedTestEstimatorEnum iEstimator;
 
   private final Consumer<BiConsumer<String, Long>> iPlayNext;
 
-  private final int iTrialLimit;
+  private final Consumer<SpeedBaseline> iOnResolved;
+
+  private final List<Long> iMeasured = new ArrayList<>();
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
 
-  private final DoubleConsumer iOnResolved;
+  private int iNumWarmedUp = 0;
 
   private final Decider decider;
 
-  private SingleStrategySpeedDecider(final int trialLimit, long totalTimeSpent, int numRuns,
-          Consumer<BiConsumer<String, Long>> playNext, DoubleConsumer onResolved) {
-    iTrialLimit = trialLimit;
-    iTotalTimeSpent = totalTimeSpent;
-    iNumRuns = numRuns;
+  private SingleStrategySpeedDecider(TestScenario scenario, Consumer<BiConsumer<String, Long>> playNext,
+          Consumer<SpeedBaseline> onResolved) {
+    iNumWarmUpRuns = Math.max(0, scenario.numWarmUpRuns());
+    iMinRuns = Math.max(1, scenario.numInitialSpeedTestRuns());
+    iMaxRuns = Math.max(iMinRuns, scenario.maxSpeedTestRuns());
+    iRelativeError = scenario.speedTestRelativeError();
+    iEstimator = scenario.speedTestEstimator();
     iPlayNext = playNext;
     iOnResolved = onResolved;
 
@@ -40,38 +73,120 @@ public class SingleStrategySpeedDecider {
    * Creates a result acceptor instance for the StrategyPlayer, who will decide the speed when there is only one
    * strategy running on the machine
    *
-   * @param trialLimit
-   *         how many runs to do before calculating the average time
+   * @param scenario
+   *         the scenario giving the number of warm-up runs, the minimum and maximum number of runs measured, the target
+   *         relative error and the estimator
    * @param playNext
    *         callback which accepts the next result acceptor to be passed into the StrategyPlayer as the parameter when
    *         the decider needs to run another strategy
    * @param onResolved
-   *         callback which accepts the average running time when the speed is decided
+   *         callback which accepts the estimated running time when the speed is decided, or null if no run succeeded
    *
    * @return the result acceptor implements the BiConsumer interface
    */
-  static BiConsumer<String, Long> getResultAcceptor(int trialLimit, Consumer<BiConsumer<String, Long>> playNext,
-          DoubleConsumer onResolved) {
-    return new SingleStrategySpeedDecider(trialLimit, 0, 0, playNext, onResolved).decider;
+  static BiConsumer<String, Long> getResultAcceptor(TestScenario scenario, Consumer<BiConsumer<String, Long>> playNext,
+          Consumer<SpeedBaseline> onResolved) {
+    return new SingleStrategySpeedDecider(scenario, playNext, onResolved).decider;
+  }
+
+  private double estimate(List<Long> sorted) {
+    int n = sorted.size();
+    switch (iEstimator) {
+      case MEDIAN:
+        return n % 2 == 1 ? sorted.get(n / 2) : (sorted.get(n / 2 - 1) + sorted.get(n / 2)) / 2.0;
+      case TRIMMED_MEAN:
+        int trimmed = (int) (n * cTrimRatio);
+        return mean(sorted.subList(trimmed, n - trimmed));
+      default:
+        return mean(sorted);
+    }
+  }
+
+  // half width of the 95% confidence interval of the estimate
+  private double halfWidth(List<Long> sorted, double estimate) {
+    int n = sorted.size();
+    if (n < 2)
+      return Double.POSITIVE_INFINITY;
+
+    switch (iEstimator) {
+      case MEDIAN:
+        // distribution-free interval between the order statistics around the median
+        double spread = cZ975 * Math.sqrt(n) / 2;
+        int lower = Math.max(1, (int) Math.floor(n / 2.0 - spread));
+        int upper = Math.min(n, (int) Math.ceil(1 + n / 2.0 + spread));
+        return Math.max(estimate - sorted.get(lower - 1), sorted.get(upper - 1) - estimate);
+      case TRIMMED_MEAN:
+        // Tukey-McLaughlin: standard error from the winsorized variance
+        int trimmed = (int) (n * cTrimRatio);
+        List<Long> winsorized = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+          winsorized.add(sorted.get(Math.min(Math.max(i, trimmed), n - 1 - trimmed)));
+        return t975(n - 2 * trimmed - 1) * stdDev(winsorized) / ((1 - 2 * cTrimRatio) * Math.sqrt(n));
+      default:
+        return t975(n - 1) * stdDev(sorted) / Math.sqrt(n);
+    }
+  }
+
+  private SpeedBaseline baseline(List<Long> sorted) {
+    double estimate = estimate(sorted);
+    return SpeedBaseline.create(estimate, halfWidth(sorted, estimate), sorted.size() < 2 ? 0 : Math
+            .pow(stdDev(sorted), 2), sorted.size());
+  }
+
+  private static double t975(int degreesOfFreedom) {
+    return degreesOfFreedom > cT975.length ? cZ975 : cT975[Math.max(1, degreesOfFreedom) - 1];
+  }
+
+  private static double mean(List<Long> values) {
+    return values.stream().mapToLong(Long::longValue).average().orElse(0);
+  }
+
+  private static double stdDev(List<Long> values) {
+    double mean = mean(values);
+    double sum = 0;
+    for (long value : values)
+      sum += (value - mean) * (value - mean);
+    return Math.sqrt(sum / (values.size() - 1));
   }
 
   private class Decider implements BiConsumer<String, Long> {
 
     @Override
     public void accept(String resultStatus, Long millisElapsed) {
-      if (ExecutionStatusHelper.isSuccess(resultStatus)) {
-        if (iTrialLimit == iNumRuns + 1)
-          iOnResolved.accept((double) (iTotalTimeSpent + millisElapsed) / (iNumRuns + 1));
-        else
-          iPlayNext.accept(new SingleStrategySpeedDecider(iTrialLimit, iTotalTimeSpent + millisElapsed, iNumRuns + 1,
-                  iPlayNext, iOnResolved).decider);
+      List<Long> sorted = new ArrayList<>(iMeasured);
+
+      if (!ExecutionStatusHelper.isSuccess(resultStatus)) {
+        Collections.sort(sorted);
+        iOnResolved.accept(sorted.isEmpty() ? null : baseline(sorted));
+        return;
       }
-      else {
-        if (iNumRuns == 0)
-          iOnResolved.accept(-1);
-        else
-          iOnResolved.accept((double) iTotalTimeSpent / iNumRuns);
+
+      if (iNumWarmedUp < iNumWarmUpRuns) {
+        iNumWarmedUp++;
+        iLogger.info("Speed test warm-up run {} of {} took {} ms, discarded", iNumWarmedUp, iNumWarmUpRuns,
+                millisElapsed);
+        iPlayNext.accept(this);
+        return;
       }
+
+      iMeasured.add(millisElapsed);
+      sorted.add(millisElapsed);
+      Collections.sort(sorted);
+
+      int n = sorted.size();
+      SpeedBaseline baseline = baseline(sorted);
+      boolean converged = iRelativeError > 0 && baseline.halfWidth() <= iRelativeError * baseline.estimate();
+      iLogger.info("Speed test run {} took {} ms, {} {}", n, millisElapsed, iEstimator.value(), baseline);
+
+      if (n < iMinRuns || (n < iMaxRuns && iRelativeError > 0 && !converged)) {
+        iPlayNext.accept(this);
+        return;
+      }
+
+      if (iRelativeError > 0 && !converged)
+        iLogger.warn("Speed test stopped at {} runs without the 95% confidence interval within {} of the estimate", n,
+                iRelativeError);
+      iOnResolved.accept(baseline);
     }
   }
 }
@@ -0,0 +1,196 @@
+package com.ricequant.apps.stress_test.executor;
+
+import com.ricequant.apps.stress_test.client.FacadeClient;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A soak pass: keeps a fixed number of runs in flight by starting a replacement as soon as one exits, for the
+ * configured duration, then waits for the last runs to exit. Results are reported in rolling windows by exit time, so
+ * that degradation over time is visible.
+ *
+ * @author chenfeng
+ */
+public class SoakPass {
+
+  private final TestScenario iScenario;
+
+  private final FacadeClient iClient;
+
+  private final RunLauncher iLauncher;
+
+  private final RunTimeMeter iRunTimeMeter;
+
+  private final int iConcurrency;
+
+  private final long iOvertimeThreshold;
+
+  private final Consumer<SoakResult> iResultAcceptor;
+
+  private final RunTimeStats iOverallStats;
+
+  private final List<PassResult> iWindows = Collections.synchronizedList(new ArrayList<>());
+
+  private final AtomicInteger iInFlight = new AtomicInteger(0);
+
+  private final AtomicBoolean iFinished = new AtomicBoolean(false);
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private volatile RunTimeStats iWindowStats;
+
+  private volatile long iWindowStartMillis;
+
+  private volatile long iWindowTimerID = -1;
+
+  private volatile int iNumLoadedWindows = 0;
+
+  private long iStartMillis;
+
+  private SoakPass(TestScenario scenario, FacadeClient client, RunLauncher launcher, RunTimeMeter runTimeMeter,
+          int concurrency, long overtimeThreshold, Consumer<SoakResult> resultAcceptor) {
+    iScenario = scenario;
+    iClient = client;
+    iLauncher = launcher;
+    iRunTimeMeter = runTimeMeter;
+    iConcurrency = concurrency;
+    iOvertimeThreshold = overtimeThreshold;
+    iResultAcceptor = resultAcceptor;
+    iOverallStats = new RunTimeStats(overtimeThreshold);
+    iWindowStats = new RunTimeStats(overtimeThreshold);
+  }
+
+  /**
+   * Creates a soak pass
+   *
+   * @param scenario
+   *         the scenario definition, which decides the strategy, the soak duration and the window length
+   * @param client
+   *         the FacadeClient instance whose timers rotate the windows
+   * @param launcher
+   *         the launcher to start strategy runs with
+   * @param runTimeMeter
+   *         the meter to measure the running times of the runs with
+   * @param concurrency
+   *         number of runs kept in flight
+   * @param overtimeThreshold
+   *         number of milliseconds that if a strategy running time is beyond this threshold will be treated as
+   *         overtime
+   * @param resultAcceptor
+   *         callback to receive the result after all runs exited
+   *
+   * @return the pass, call {@link #run()} to start it
+   */
+  public static SoakPass create(TestScenario scenario, FacadeClient client, RunLauncher launcher,
+          RunTimeMeter runTimeMeter, int concurrency, long overtimeThreshold, Consumer<SoakResult> resultAcceptor) {
+    return new SoakPass(scenario, client, launcher, runTimeMeter, concurrency, overtimeThreshold, resultAcceptor);
+  }
+
+  /**
+   * Start the soak
+   */
+  public void run() {
+    iStartMillis = System.currentTimeMillis();
+    iWindowStartMillis = iStartMillis;
+    iWindowTimerID = iClient.setTimer(iScenario.soakWindowMillis(), this::rotateWindow);
+
+    for (int i = 0; i < iConcurrency; i++)
+      startRun();
+  }
+
+  private void startRun() {
+    iInFlight.incrementAndGet();
+    iLauncher.launch(iScenario.name(), iScenario.playParams(), iScenario.timeoutToKillMillis(), 1,
+            timing -> onExit(timing.status(), iRunTimeMeter.runtimeMillis(timing)));
+  }
+
+  private void onExit(String status, long millisElapsed) {
+    if (iOverallStats.record(status, millisElapsed) == 0)
+      return;
+    iWindowStats.record(status, millisElapsed);
+
+    if (System.currentTimeMillis() - iStartMillis < iScenario.loadDurationMillis())
+      startRun();
+
+    if (iInFlight.decrementAndGet() == 0)
+      finish();
+  }
+
+  private void rotateWindow() {
+    if (iFinished.get())
+      return;
+
+    emitWindow();
+    iWindowTimerID = iClient.setTimer(iScenario.soakWindowMillis(), this::rotateWindow);
+  }
+
+  private void emitWindow() {
+    long now = System.currentTimeMillis();
+    RunTimeStats stats = iWindowStats;
+    long windowStartMillis = iWindowStartMillis;
+    iWindowStats = new RunTimeStats(iOvertimeThreshold);
+    iWindowStartMillis = now;
+
+    PassResult window = stats.toPassResult(iConcurrency, iScenario.successTolerancePercentage(),
+            iScenario.successPercentile());
+    iWindows.add(window);
+    boolean draining = windowStartMillis - iStartMillis >= iScenario.loadDurationMillis();
+    if (!draining)
+      iNumLoadedWindows = iWindows.size();
+
+    double throughput = window.exitedRunTimes().count() * 60000.0 / Math.max(1, now - windowStartMillis);
+    String range = "[" + (windowStartMillis - iStartMillis) / 1000 + "s, " + (now - iStartMillis) / 1000 + "s]";
+    iLogger.info("Soak window #{} {} of scenario <{}>{}: throughput={} runs/min, results: {}", iWindows.size(), range,
+            iScenario.name(), draining ? " (draining)" : "", String.format("%.2f", throughput), window);
+  }
+
+  private void finish() {
+    if (!iFinished.compareAndSet(false, true))
+      return;
+
+    iClient.cancelTimer(iWindowTimerID);
+    emitWindow();
+
+    long elapsedMillis = Math.max(1, System.currentTimeMillis() - iStartMillis);
+    PassResult overall = iOverallStats.toPassResult(iConcurrency, iScenario.successTolerancePercentage(),
+            iScenario.successPercentile());
+    double throughput = overall.exitedRunTimes().count() * 60000.0 / elapsedMillis;
+
+    List<PassResult> windows;
+    synchronized (iWindows) {
+      windows = new ArrayList<>(iWindows);
+    }
+    iResultAcceptor.accept(new SoakResult(overall, windows, throughput,
+            degradation(windows.subList(0, Math.max(1, iNumLoadedWindows)))));
+  }
+
+  // ratio of the running time of the last window to the first one, windows while draining are excluded by the caller
+  private double degradation(List<PassResult> windows) {
+    PassResult first = null;
+    PassResult last = null;
+    for (PassResult window : windows) {
+      if (window.exitedRunTimes().count() == 0)
+        continue;
+      if (first == null)
+        first = window;
+      last = window;
+    }
+
+    if (first == null || runtime(first) == 0)
+      return 1;
+
+    return runtime(last) / runtime(first);
+  }
+
+  private double runtime(PassResult result) {
+    return iScenario.successPercentile() > 0 ? result.runtime() : result.exitedRunTimes().mean();
+  }
+}
@@ -0,0 +1,70 @@
+package com.ricequant.apps.stress_test.executor;
+
+import java.util.List;
+
+/**
+ * The outcome of a soak pass, produced by {@link SoakPass}
+ *
+ * @author chenfeng
+ */
+public class SoakResult {
+
+  private final PassResult iOverall;
+
+  private final List<PassResult> iWindows;
+
+  private final double iThroughputPerMinute;
+
+  private final double iDegradation;
+
+  SoakResult(PassResult overall, List<PassResult> windows, double throughputPerMinute, double degradation) {
+    iOverall = overall;
+    iWindows = windows;
+    iThroughputPerMinute = throughputPerMinute;
+    iDegradation = degradation;
+  }
+
+  /**
+   * Results of all runs of the soak judged as one pass
+   *
+   * @return the result
+   */
+  public PassResult overall() {
+    return iOverall;
+  }
+
+  /**
+   * Results of the runs exited in each window, in time order, including the windows after the soak duration while
+   * the last runs are draining
+   *
+   * @return the window results
+   */
+  public List<PassResult> windows() {
+    return iWindows;
+  }
+
+  /**
+   * Normally exited runs per minute over the whole soak
+   *
+   * @return runs per minute
+   */
+  public double throughputPerMinute() {
+    return iThroughputPerMinute;
+  }
+
+  /**
+   * The running time of the last window within the soak duration divided by the one of the first window, values well
+   * above 1 indicate the backend degrades over time
+   *
+   * @return the ratio
+   */
+  public double degradation() {
+    return iDegradation;
+  }
+
+  @Override
+  public String toString() {
+    return "{overall:" + iOverall + ",windows:" + iWindows.size() + ",throughput:" + String
+            .format("%.2f", iThroughputPerMinute) + ",degradation:" + String.format("%.3f", iDegradation) + "}";
+  }
+}
@@ -0,0 +1,83 @@
+package com.ricequant.apps.stress_test.executor;
+
+/**
+ * The load-free running time of a strategy, T1, as estimated by the {@link SingleStrategySpeedDecider}
+ *
+ * @author chenfeng
+ */
+public class SpeedBaseline {
+
+  private final double iEstimate;
+
+  private final double iHalfWidth;
+
+  private final double iVariance;
+
+  private final int iNumRuns;
+
+  private SpeedBaseline(double estimate, double halfWidth, double variance, int numRuns) {
+    iEstimate = estimate;
+    iHalfWidth = halfWidth;
+    iVariance = variance;
+    iNumRuns = numRuns;
+  }
+
+  /**
+   * Create an instance of the SpeedBaseline
+   *
+   * @param estimate
+   *         the estimated running time in milliseconds
+   * @param halfWidth
+   *         half width of the 95% confidence interval of the estimate in milliseconds, infinite if unknown
+   * @param variance
+   *         sample variance of the running times measured
+   * @param numRuns
+   *         number of runs measured, warm-up runs excluded
+   *
+   * @return the instance
+   */
+  public static SpeedBaseline create(double estimate, double halfWidth, double variance, int numRuns) {
+    return new SpeedBaseline(estimate, halfWidth, variance, numRuns);
+  }
+
+  /**
+   * The estimated running time
+   *
+   * @return milliseconds
+   */
+  public double estimate() {
+    return iEstimate;
+  }
+
+  /**
+   * Half width of the 95% confidence interval of the estimate
+   *
+   * @return milliseconds, infinite if fewer than 2 runs are measured
+   */
+  public double halfWidth() {
+    return iHalfWidth;
+  }
+
+  /**
+   * Sample variance of the running times measured
+   *
+   * @return square milliseconds, 0 if fewer than 2 runs are measured
+   */
+  public double variance() {
+    return iVariance;
+  }
+
+  /**
+   * Number of runs measured, warm-up runs excluded
+   *
+   * @return the number
+   */
+  public int numRuns() {
+    return iNumRuns;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%.1f ms +/- %.1f ms over %d runs", iEstimate, iHalfWidth, iNumRuns);
+  }
+}
@@ -2,12 +2,15 @@ package com.ricequant.apps.stress_test.executor;
 
 import com.ricequant.apps.stress_test.client.FacadeClient;
 import com.ricequant.apps.stress_test.executor.config.StressTesterConfig;
-import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import com.ricequant.apps.stress_test.executor.distributed.DistributedRunLauncher;
+import com.ricequant.apps.stress_test.executor.distributed.WorkerNode;
+import com.ricequant.apps.stress_test.executor.history.ResultStore;
+import com.ricequant.apps.stress_test.executor.history.SpeedBaselineCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -23,10 +26,20 @@ public class StressTesterMain {
     if (config == null)
       System.exit(0);
 
-    FacadeClient client = FacadeClient.create(config.url(), config.username(), config.password());
+    FacadeClient client = FacadeClient
+            .create(config.url(), config.username(), config.password(), config.clientOptions());
+
+    if (config.workerPort() > 0) {
+      // a worker only plays the runs handed over by the coordinator, which is the one to clean the environment
+      WorkerNode.create(LocalRunLauncher.create(client, config.feedArchiveDir(), config.feedArchiveSegmentBytes()),
+              config.workerPort()).start(() -> {
+      });
+      return;
+    }
 
     CountDownLatch cleanEnvLatch = new CountDownLatch(1);
-    client.stopAllStrategies(cleanEnvLatch::countDown);
+    client.stopAllStrategies(cleanEnvLatch::countDown,
+            e -> cLogger.error("Gave up cleaning environment: {}", e.getMessage()));
 
     cLogger.info("Waiting for 30 seconds to cleanup environment...");
     cleanEnvLatch.await(30, TimeUnit.SECONDS);
@@ -39,20 +52,71 @@ public class StressTesterMain {
       System.exit(-1);
     }
 
-    Queue<TestScenario> scenarios = new LinkedList<>();
-    scenarios.addAll(config.listScenarios());
+    RunLauncher launcher;
+    if (config.workers().isEmpty())
+      launcher = LocalRunLauncher.create(client, config.feedArchiveDir(), config.feedArchiveSegmentBytes());
+    else {
+      cLogger.info("Connecting to {} workers...", config.workers().size());
+      DistributedRunLauncher distributed = DistributedRunLauncher
+              .connect(config.workers(), config.workerConnectTimeoutMillis());
+      if (distributed.numWorkers() < config.workers().size()) {
+        System.err.println("Unable to connect to all workers");
+        cLogger.error("Unable to connect to all workers, only {} of {} connected", distributed.numWorkers(),
+                config.workers().size());
+        System.exit(-1);
+      }
+      launcher = distributed;
+    }
 
-    runNextScenario(scenarios, client);
+    ResultStore resultStore = openResultStore(config.resultStore(), config.sessionLabel());
+    SpeedBaselineCache baselines = openSpeedBaselineCache(config);
+
+    CountDownLatch allFinishedLatch = new CountDownLatch(1);
+    ScenarioScheduler.create(config.listScenarios(), client, launcher, resultStore, baselines,
+            config.maxParallelScenarios(), allFinishedLatch::countDown).run();
+
+    allFinishedLatch.await();
+    cLogger.info("Client request metrics:{}", client.metrics());
+    if (resultStore != null)
+      resultStore.close();
+    launcher.shutdown();
+    client.shutdown();
+    System.exit(0);
   }
 
-  private static void runNextScenario(Queue<TestScenario> scenarios, FacadeClient client) {
-    TestScenario scenario = scenarios.poll();
-    if (scenario == null) {
-      client.shutdown();
-      System.exit(0);
-      return;
+  private static ResultStore openResultStore(File file, String label) {
+    if (file == null)
+      return null;
+
+    try {
+      ResultStore store = ResultStore.open(file, label);
+      cLogger.info("Recording results into {} as session {}", file, store.session());
+      return store;
+    }
+    catch (IOException e) {
+      cLogger.error("Unable to open result store {}, results are not recorded", file, e);
+      return null;
+    }
+  }
+
+  private static SpeedBaselineCache openSpeedBaselineCache(StressTesterConfig config) {
+    File file = config.speedBaselineCache();
+    if (file == null)
+      return null;
+
+    // without a label there is no telling whether the backend changed since a baseline was measured
+    if (config.sessionLabel() == null) {
+      cLogger.info("Session not labelled with -l, speeds are measured for every scenario and not cached");
+      return null;
+    }
+
+    try {
+      return SpeedBaselineCache.open(file, config.url(), config.sessionLabel(), config.speedBaselineTtlMillis(),
+              config.refreshSpeedBaselines());
+    }
+    catch (IOException e) {
+      cLogger.error("Unable to open speed baseline cache {}, speeds are measured for every scenario", file, e);
+      return null;
     }
-    ScenarioRunner runner = ScenarioRunner.create(scenario, client, () -> runNextScenario(scenarios, client));
-    runner.run();
   }
 }
@@ -1,18 +1,26 @@
 package com.ricequant.apps.stress_test.executor.config;
 
 import com.ricequant.generated_config.apps.stress_test.BarTypeEnum;
+import com.ricequant.generated_config.apps.stress_test.FeedsTransportEnum;
 import com.ricequant.generated_config.apps.stress_test.ScenarioType;
 import com.ricequant.generated_config.apps.stress_test.ScenariosType;
+import com.ricequant.generated_config.apps.stress_test.ServerType;
 import com.ricequant.generated_config.apps.stress_test.StressTest;
+import com.ricequant.generated_config.apps.stress_test.WorkerType;
+import com.ricequant.generated_config.apps.stress_test.WorkersType;
+import com.ricequant.apps.stress_test.client.FacadeClientOptions;
 import com.ricequant.apps.stress_test.client.PlayParams;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author chenfeng
@@ -25,20 +33,34 @@ public class StressTesterConfig {
 
   private final String iConfigPath;
 
-  StressTesterConfig(String path) {
+  private final int iWorkerPort;
+
+  private final String iSessionLabel;
+
+  private final boolean iRefreshSpeedBaselines;
+
+  StressTesterConfig(String path, int workerPort, String sessionLabel, boolean refreshSpeedBaselines) {
     iConfigPath = path;
+    iWorkerPort = workerPort;
+    iSessionLabel = sessionLabel;
+    iRefreshSpeedBaselines = refreshSpeedBaselines;
     iXml = new JaxbHelper<>(StressTest.class).loadXml(false, path, cSchemaFile);
   }
 
-  private static StressTesterConfig load(String path) {
-    return new StressTesterConfig(path);
+  private static StressTesterConfig load(String path, int workerPort, String sessionLabel,
+          boolean refreshSpeedBaselines) {
+    return new StressTesterConfig(path, workerPort, sessionLabel, refreshSpeedBaselines);
   }
 
   private static void printUsage() {
-    System.out.println("Usage: -c path/to/config/file.xml");
+    System.out.println("Usage: -c path/to/config/file.xml [-w worker-port] [-l session-label] [-r]");
   }
 
   public static StressTesterConfig init(String[] args) {
+    String path = null;
+    int workerPort = 0;
+    String sessionLabel = null;
+    boolean refreshSpeedBaselines = false;
     for (int i = 0; i < args.length; i++) {
       String arg = args[i];
       if (arg.equals("-h")) {
@@ -46,18 +68,37 @@ public class StressTesterConfig {
         return null;
       }
 
-      if (arg.equals("-c")) {
+      if (arg.equals("-r"))
+        refreshSpeedBaselines = true;
+
+      if (arg.equals("-c") || arg.equals("-w") || arg.equals("-l")) {
         if (i + 1 >= args.length) {
           printUsage();
           return null;
         }
 
-        return load(args[i + 1]);
+        if (arg.equals("-c"))
+          path = args[++i];
+        else if (arg.equals("-l"))
+          sessionLabel = args[++i];
+        else {
+          try {
+            workerPort = Integer.parseInt(args[++i]);
+          }
+          catch (NumberFormatException e) {
+            printUsage();
+            return null;
+          }
+        }
       }
     }
 
-    printUsage();
-    return null;
+    if (path == null) {
+      printUsage();
+      return null;
+    }
+
+    return load(path, workerPort, sessionLabel, refreshSpeedBaselines);
   }
 
   public URL url() {
@@ -109,6 +150,94 @@ public class StressTesterConfig {
     return ret;
   }
 
+  public int maxParallelScenarios() {
+    return iXml.getScenarios().getMaxParallelScenarios();
+  }
+
+  /**
+   * The port to listen on when running as a worker of the distributed mode
+   *
+   * @return the port, or 0 if not running as a worker
+   */
+  public int workerPort() {
+    return iWorkerPort;
+  }
+
+  /**
+   * The workers to hand the runs to when running as the coordinator of the distributed mode
+   *
+   * @return addresses of the workers, empty to play all runs in this process
+   */
+  public List<InetSocketAddress> workers() {
+    WorkersType workers = iXml.getWorkers();
+    if (workers == null)
+      return Collections.emptyList();
+
+    List<InetSocketAddress> ret = new ArrayList<>();
+    for (WorkerType worker : workers.getWorker())
+      ret.add(InetSocketAddress.createUnresolved(worker.getHost(), worker.getPort()));
+    return ret;
+  }
+
+  /**
+   * Milliseconds the coordinator waits for all workers to connect
+   *
+   * @return milliseconds
+   */
+  public long workerConnectTimeoutMillis() {
+    WorkersType workers = iXml.getWorkers();
+    return workers == null ? 0 : workers.getConnectTimeoutMillis();
+  }
+
+  /**
+   * The file to record the results of the passes and scenarios into, see
+   * {@link com.ricequant.apps.stress_test.executor.history.ResultStore}
+   *
+   * @return the file, or null if results are not recorded
+   */
+  public File resultStore() {
+    String file = iXml.getScenarios().getResultStore();
+    return file == null || file.isEmpty() ? null : new File(file);
+  }
+
+  /**
+   * The label given on the command line to the results of this session, e.g. the version of the backend under test
+   *
+   * @return the label, or null if not given
+   */
+  public String sessionLabel() {
+    return iSessionLabel;
+  }
+
+  /**
+   * The file to keep the load-free running times of the strategies in, see
+   * {@link com.ricequant.apps.stress_test.executor.history.SpeedBaselineCache}
+   *
+   * @return the file, or null if they are measured for every scenario
+   */
+  public File speedBaselineCache() {
+    String file = iXml.getScenarios().getSpeedBaselineCache();
+    return file == null || file.isEmpty() ? null : new File(file);
+  }
+
+  /**
+   * Milliseconds a load-free running time is reused for since it is measured
+   *
+   * @return milliseconds
+   */
+  public long speedBaselineTtlMillis() {
+    return TimeUnit.HOURS.toMillis(iXml.getScenarios().getSpeedBaselineTtlHours());
+  }
+
+  /**
+   * Whether the load-free running times are measured again, given with -r on the command line
+   *
+   * @return true to ignore those kept in the cache
+   */
+  public boolean refreshSpeedBaselines() {
+    return iRefreshSpeedBaselines;
+  }
+
   public String username() {
     return iXml.getServer().getUsername();
   }
@@ -116,4 +245,42 @@ public class StressTesterConfig {
   public String password() {
     return iXml.getServer().getPassword();
   }
+
+  /**
+   * The directory to capture the raw feeds of the runs into, one sub directory for each scenario
+   *
+   * @return the directory, or null if feeds are not captured
+   */
+  public File feedArchiveDir() {
+    String dir = iXml.getServer().getFeedArchiveDir();
+    return dir == null || dir.isEmpty() ? null : new File(dir);
+  }
+
+  /**
+   * Size of the data file of a feed archive segment
+   *
+   * @return number of bytes
+   */
+  public int feedArchiveSegmentBytes() {
+    return iXml.getServer().getFeedArchiveSegmentBytes();
+  }
+
+  public FacadeClientOptions clientOptions() {
+    ServerType server = iXml.getServer();
+    return new FacadeClientOptions().retainFeeds(server.isRetainFeeds()).columnarFeeds(server.isColumnarFeeds())
+            .feedsTransport(server.getFeedsTransport() == FeedsTransportEnum.WEB_SOCKET
+                    ? FacadeClientOptions.FeedsTransportType.WEBSOCKET : FacadeClientOptions.FeedsTransportType.POLLING)
+            .subscribePath(server.getSubscribePath()).minPollDelayMillis(server.getMinPollDelayMillis())
+            .maxPollDelayMillis(server.getMaxPollDelayMillis()).pollBackoffFactor(server.getPollBackoffFactor())
+            .pollJitter(server.getPollJitter()).maxPullsPerSecond(server.getMaxPullsPerSecond())
+            .batchPullWindowMillis(server.getBatchPullWindowMillis()).maxBatchPullSize(server.getMaxBatchPullSize())
+            .maxAttempts(server.getMaxAttempts()).requestTimeoutMillis(server.getRequestTimeoutMillis())
+            .retryMinDelayMillis(server.getRetryMinDelayMillis())
+            .retryMaxDelayMillis(server.getRetryMaxDelayMillis()).retryBackoffFactor(server.getRetryBackoffFactor())
+            .retryJitter(server.getRetryJitter()).breakerFailureThreshold(server.getBreakerFailureThreshold())
+            .breakerOpenMillis(server.getBreakerOpenMillis()).maxPoolSize(server.getMaxPoolSize())
+            .maxInFlightRequests(server.getMaxInFlightRequests()).keepAlive(server.isKeepAlive())
+            .pipelining(server.isPipelining()).compression(server.isCompression()).eventLoops(server.getEventLoops())
+            .sessionAuth(server.isSessionAuth()).statusOnlyPulls(server.isStatusOnlyPulls());
+  }
 }
@@ -1,10 +1,18 @@
 package com.ricequant.apps.stress_test.executor.config;
 
+import com.ricequant.generated_config.apps.stress_test.ArrivalProcessEnum;
+import com.ricequant.generated_config.apps.stress_test.LoadModeEnum;
+import com.ricequant.generated_config.apps.stress_test.RuntimeComponentEnum;
 import com.ricequant.generated_config.apps.stress_test.ScenarioType;
 import com.ricequant.generated_config.apps.stress_test.ScenariosType;
+import com.ricequant.generated_config.apps.stress_test.SearchStrategyEnum;
+import com.ricequant.generated_config.apps.stress_test.SpeedTestEstimatorEnum;
 import com.ricequant.apps.stress_test.client.PlayParams;
+import com.ricequant.apps.stress_test.client.RunTiming;
 import io.vertx.core.json.JsonObject;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * The configuration of the test scenario
  *
@@ -22,12 +30,22 @@ public class TestScenario {
 
   private final double iSuccessTolerancePercentage;
 
+  private final double iSuccessPercentile;
+
   private final PlayParams iPlayParams;
 
   private final int iTimeoutToKillMillis;
 
   private final int iNumInitialSpeedTestRuns;
 
+  private final int iNumWarmUpRuns;
+
+  private final int iMaxSpeedTestRuns;
+
+  private final double iSpeedTestRelativeError;
+
+  private final SpeedTestEstimatorEnum iSpeedTestEstimator;
+
   private final int iInitialParallels;
 
   private final double iExpandGrowFactor;
@@ -36,6 +54,30 @@ public class TestScenario {
 
   private final String iName;
 
+  private final String iSerialGroup;
+
+  private final SearchStrategyEnum iSearchStrategy;
+
+  private final double iSearchTolerance;
+
+  private final LoadModeEnum iLoadMode;
+
+  private final ArrivalProcessEnum iArrivalProcess;
+
+  private final double iInitialArrivalRatePerMinute;
+
+  private final double iArrivalRateGrowFactor;
+
+  private final long iLoadDurationMillis;
+
+  private final int iSoakConcurrency;
+
+  private final long iSoakWindowMillis;
+
+  private final RuntimeComponentEnum iRuntimeComponent;
+
+  private final long iSampleIntervalMillis;
+
   private TestScenario(PlayParams params, ScenariosType scenariosXmlConfig, ScenarioType scenarioXmlConfig) {
     iPlayParams = params;
 
@@ -48,9 +90,26 @@ public class TestScenario {
     iInitialParallels = scenariosXmlConfig.getInitialParallelRuns();
     iMaxRefineRuns = scenariosXmlConfig.getMaxRefineRuns();
     iSuccessTolerancePercentage = scenariosXmlConfig.getSuccessTolerancePercentage();
+    iSuccessPercentile = scenariosXmlConfig.getSuccessPercentile();
     iNumInitialSpeedTestRuns = scenarioXmlConfig.getNumInitialSpeedTestRuns();
+    iNumWarmUpRuns = scenarioXmlConfig.getNumWarmUpRuns();
+    iMaxSpeedTestRuns = scenarioXmlConfig.getMaxSpeedTestRuns();
+    iSpeedTestRelativeError = scenarioXmlConfig.getSpeedTestRelativeError();
+    iSpeedTestEstimator = scenarioXmlConfig.getSpeedTestEstimator();
     iTheoreticalUpperBound = scenariosXmlConfig.getTheoreticalUpperBound();
     iName = scenarioXmlConfig.getTitle();
+    iSerialGroup = scenarioXmlConfig.getSerialGroup();
+    iSearchStrategy = scenariosXmlConfig.getSearchStrategy();
+    iSearchTolerance = scenariosXmlConfig.getSearchTolerance();
+    iLoadMode = scenariosXmlConfig.getLoadMode();
+    iArrivalProcess = scenariosXmlConfig.getArrivalProcess();
+    iInitialArrivalRatePerMinute = scenariosXmlConfig.getInitialArrivalRatePerMinute();
+    iArrivalRateGrowFactor = scenariosXmlConfig.getArrivalRateGrowFactor();
+    iLoadDurationMillis = scenariosXmlConfig.getLoadDurationMillis();
+    iSoakConcurrency = scenariosXmlConfig.getSoakConcurrency();
+    iSoakWindowMillis = scenariosXmlConfig.getSoakWindowMillis();
+    iRuntimeComponent = scenariosXmlConfig.getRuntimeComponent();
+    iSampleIntervalMillis = scenariosXmlConfig.getSampleIntervalMillis();
   }
 
   public PlayParams playParams() {
@@ -67,14 +126,51 @@ public class TestScenario {
   }
 
   /**
-   * Number of passes run to decide the load-free speed
+   * Minimum number of runs measured to decide the load-free speed, after the warm-up runs
    *
-   * @return the number of passes to run
+   * @return the number of runs to measure
    */
   public int numInitialSpeedTestRuns() {
     return iNumInitialSpeedTestRuns;
   }
 
+  /**
+   * Number of runs played before measuring the load-free speed, whose running times are discarded
+   *
+   * @return the number of runs
+   */
+  public int numWarmUpRuns() {
+    return iNumWarmUpRuns;
+  }
+
+  /**
+   * Maximum number of runs measured to decide the load-free speed, after the warm-up runs
+   *
+   * @return the number of runs, at least {@link #numInitialSpeedTestRuns()}
+   */
+  public int maxSpeedTestRuns() {
+    return Math.max(iMaxSpeedTestRuns, iNumInitialSpeedTestRuns);
+  }
+
+  /**
+   * The relative error the 95% confidence interval of the load-free running time must be within before the speed
+   * test stops measuring
+   *
+   * @return the half width of the interval over the estimate, 0 to stop after {@link #numInitialSpeedTestRuns()}
+   */
+  public double speedTestRelativeError() {
+    return iSpeedTestRelativeError;
+  }
+
+  /**
+   * How the load-free running time is estimated from the measured runs
+   *
+   * @return the estimator
+   */
+  public SpeedTestEstimatorEnum speedTestEstimator() {
+    return iSpeedTestEstimator;
+  }
+
   /**
    * Number of parallel strategies to start with, bounded by TheoreticalUpperBound
    *
@@ -143,6 +239,16 @@ public class TestScenario {
     return iSuccessTolerancePercentage;
   }
 
+  /**
+   * The percentile of running times of normally exited runs which must be within the overtime threshold for a pass to
+   * succeed, e.g. 0.99 for p99. It also replaces the average as the running time of a pass. 0 means disabled.
+   *
+   * @return the percentile in range (0, 1], or 0 if disabled
+   */
+  public double successPercentile() {
+    return iSuccessPercentile;
+  }
+
   /**
    * The number of strategies can be executed in parallel theoretically, bounded by the total memory installed in the
    * server. The stress test process should not start parallel strategies more than this number.
@@ -162,6 +268,158 @@ public class TestScenario {
     return iName;
   }
 
+  /**
+   * Scenarios of the same serial group share a backend, so they are never run at the same time
+   *
+   * @return name of the group, or null if the scenario can run concurrently with any other scenario
+   */
+  public String serialGroup() {
+    return iSerialGroup;
+  }
+
+  /**
+   * How the number of executors of each pass is decided, see
+   * {@link com.ricequant.apps.stress_test.executor.search.CapacitySearchStrategy}
+   *
+   * @return the configured search strategy
+   */
+  public SearchStrategyEnum searchStrategy() {
+    return iSearchStrategy;
+  }
+
+  /**
+   * For the Binary and Model search strategies, the search stops once the capacity is bracketed between a successful
+   * and a failed pass whose numbers of executors differ by no more than this ratio of the failed one
+   *
+   * @return the ratio
+   */
+  public double searchTolerance() {
+    return iSearchTolerance;
+  }
+
+  /**
+   * ClosedLoop to start all runs of a pass at once and wait for them, OpenLoop to start runs at an arrival rate for
+   * {@link #loadDurationMillis()} in each pass, Soak to keep {@link #soakConcurrency()} runs in flight for
+   * {@link #loadDurationMillis()} in a single pass
+   *
+   * @return the load mode
+   */
+  public LoadModeEnum loadMode() {
+    return iLoadMode;
+  }
+
+  /**
+   * How arrivals are spaced in OpenLoop mode
+   *
+   * @return Poisson for exponentially distributed gaps, Fixed for evenly spaced arrivals
+   */
+  public ArrivalProcessEnum arrivalProcess() {
+    return iArrivalProcess;
+  }
+
+  /**
+   * The arrival rate of the first OpenLoop pass
+   *
+   * @return runs per minute, or 0 to keep initialParallels runs in flight at the load-free running time
+   */
+  public double initialArrivalRatePerMinute() {
+    return iInitialArrivalRatePerMinute;
+  }
+
+  /**
+   * How fast the arrival rate grows after each sustained OpenLoop pass before any pass fails
+   *
+   * @return the factor
+   */
+  public double arrivalRateGrowFactor() {
+    return iArrivalRateGrowFactor;
+  }
+
+  /**
+   * How long new runs keep arriving in each OpenLoop pass, or how long the Soak pass lasts
+   *
+   * @return milliseconds
+   */
+  public long loadDurationMillis() {
+    return iLoadDurationMillis;
+  }
+
+  /**
+   * Number of runs kept in flight in Soak mode, bounded by TheoreticalUpperBound
+   *
+   * @return number, initialParallels if not configured
+   */
+  public int soakConcurrency() {
+    int concurrency = iSoakConcurrency > 0 ? iSoakConcurrency : initialParallels();
+    return concurrency < iTheoreticalUpperBound ? concurrency : iTheoreticalUpperBound;
+  }
+
+  /**
+   * Length of the rolling windows the Soak pass reports results in
+   *
+   * @return milliseconds
+   */
+  public long soakWindowMillis() {
+    return iSoakWindowMillis;
+  }
+
+  /**
+   * Which component of the time of a run is taken as its running time when judging passes
+   *
+   * @return the component
+   */
+  public RuntimeComponentEnum runtimeComponent() {
+    return iRuntimeComponent;
+  }
+
+  /**
+   * Interval of the samples of the load taken while a pass is running
+   *
+   * @return milliseconds, 0 if not sampled
+   */
+  public long sampleIntervalMillis() {
+    return iSampleIntervalMillis;
+  }
+
+  /**
+   * The component the running time of a run is measured with: the one configured by {@link #runtimeComponent()}, or
+   * when it is not available for the run, e.g. the facade does not report the execution time, or the run was never seen
+   * running, the nearest available one: server execution, then running, then total.
+   *
+   * @param timing
+   *         the timing reported for the run
+   *
+   * @return the component
+   */
+  public RuntimeComponentEnum measuredComponent(RunTiming timing) {
+    if (iRuntimeComponent == RuntimeComponentEnum.SERVER_EXECUTION && timing.serverExecutionMillis() >= 0)
+      return RuntimeComponentEnum.SERVER_EXECUTION;
+
+    if (iRuntimeComponent != RuntimeComponentEnum.TOTAL && timing.runningNanos() >= 0)
+      return RuntimeComponentEnum.RUNNING;
+
+    return RuntimeComponentEnum.TOTAL;
+  }
+
+  /**
+   * The running time of a run in the component given by {@link #measuredComponent(RunTiming)}
+   *
+   * @param timing
+   *         the timing reported for the run
+   *
+   * @return milliseconds
+   */
+  public long runtimeMillis(RunTiming timing) {
+    switch (measuredComponent(timing)) {
+      case SERVER_EXECUTION:
+        return timing.serverExecutionMillis();
+      case RUNNING:
+        return TimeUnit.NANOSECONDS.toMillis(timing.runningNanos());
+      default:
+        return timing.totalMillis();
+    }
+  }
+
   @Override
   public String toString() {
     JsonObject json = new JsonObject();
@@ -171,6 +429,14 @@ public class TestScenario {
 
             .put("speed-test-trials", iNumInitialSpeedTestRuns)
 
+            .put("warm-up-runs", iNumWarmUpRuns)
+
+            .put("max-speed-test-runs", iMaxSpeedTestRuns)
+
+            .put("speed-test-relative-error", iSpeedTestRelativeError)
+
+            .put("speed-test-estimator", iSpeedTestEstimator.value())
+
             .put("initial-parallels", iInitialParallels)
 
             .put("overtime-tolerance-multiplier", iOvertimeToleranceMultiplier)
@@ -183,7 +449,33 @@ public class TestScenario {
 
             .put("max-refine-runs", iMaxRefineRuns)
 
-            .put("success-tolerance-percentage", iSuccessTolerancePercentage);
+            .put("success-tolerance-percentage", iSuccessTolerancePercentage)
+
+            .put("success-percentile", iSuccessPercentile)
+
+            .put("serial-group", iSerialGroup)
+
+            .put("search-strategy", iSearchStrategy.value())
+
+            .put("search-tolerance", iSearchTolerance)
+
+            .put("load-mode", iLoadMode.value())
+
+            .put("arrival-process", iArrivalProcess.value())
+
+            .put("initial-arrival-rate", iInitialArrivalRatePerMinute)
+
+            .put("arrival-rate-grow-factor", iArrivalRateGrowFactor)
+
+            .put("load-duration", iLoadDurationMillis)
+
+            .put("soak-concurrency", iSoakConcurrency)
+
+            .put("soak-window", iSoakWindowMillis)
+
+            .put("runtime-component", iRuntimeComponent.value())
+
+            .put("sample-interval", iSampleIntervalMillis);
 
     return json.toString();
   }
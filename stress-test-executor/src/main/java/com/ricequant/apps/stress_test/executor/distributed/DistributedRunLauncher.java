@@ -0,0 +1,253 @@
+package com.ricequant.apps.stress_test.executor.distributed;
+
+import com.ricequant.apps.stress_test.client.PlayParams;
+import com.ricequant.apps.stress_test.client.RunTiming;
+import com.ricequant.apps.stress_test.executor.RunLauncher;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The coordinator side of the distributed mode: hands the runs to {@link WorkerNode}s, each of which plays them with
+ * its own client, and reports the results streamed back by the workers to the listeners, so that the search and the
+ * result collection of the scenarios stay on the coordinator unchanged.
+ * <p>
+ * The runs of a launch are spread over the workers alive, each run going to the worker with the fewest runs
+ * outstanding. If a worker disconnects, its outstanding runs are reported as "AbnormalExit" and no more runs are given
+ * to it.
+ *
+ * @author chenfeng
+ */
+public class DistributedRunLauncher implements RunLauncher {
+
+  private static final Logger cLogger = LoggerFactory.getLogger(DistributedRunLauncher.class);
+
+  private final Vertx iVertx = Vertx.vertx();
+
+  private final HttpClient iHttpClient = iVertx.createHttpClient(new HttpClientOptions());
+
+  private final List<WorkerConnection> iWorkers = new CopyOnWriteArrayList<>();
+
+  private final AtomicLong iNextLaunchID = new AtomicLong(1);
+
+  private volatile boolean iShutdown = false;
+
+  private DistributedRunLauncher() {
+  }
+
+  /**
+   * Connect to the workers and create the launcher, workers failed to connect within the timeout are left out
+   *
+   * @param workers
+   *         addresses of the workers
+   * @param timeoutMillis
+   *         milliseconds to wait for all workers to connect
+   *
+   * @return the launcher, see {@link #numWorkers()} for the number of workers connected
+   *
+   * @throws InterruptedException
+   *         if interrupted while waiting for the workers
+   */
+  public static DistributedRunLauncher connect(List<InetSocketAddress> workers, long timeoutMillis)
+          throws InterruptedException {
+    DistributedRunLauncher launcher = new DistributedRunLauncher();
+    CountDownLatch latch = new CountDownLatch(workers.size());
+    for (InetSocketAddress worker : workers)
+      launcher.connectWorker(worker, latch::countDown);
+
+    latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    return launcher;
+  }
+
+  private void connectWorker(InetSocketAddress address, Runnable onDone) {
+    String name = address.getHostString() + ":" + address.getPort();
+    iHttpClient.websocket(address.getPort(), address.getHostString(), WorkerNode.cPath, ws -> {
+      WorkerConnection worker = new WorkerConnection(name, ws, Vertx.currentContext());
+      worker.open();
+      iWorkers.add(worker);
+      cLogger.info("Connected to worker {}", name);
+      onDone.run();
+    }, e -> {
+      cLogger.error("Unable to connect to worker {}: {}", name, e.getMessage());
+      onDone.run();
+    });
+  }
+
+  /**
+   * Number of workers alive
+   *
+   * @return the number
+   */
+  public int numWorkers() {
+    return (int) iWorkers.stream().filter(worker -> worker.iAlive).count();
+  }
+
+  @Override
+  public void launch(String scenario, PlayParams params, int waitMillis, int count, RunListener listener) {
+    Map<WorkerConnection, Integer> assignments = new HashMap<>();
+    synchronized (this) {
+      for (int i = 0; i < count; i++) {
+        WorkerConnection least = null;
+        for (WorkerConnection worker : iWorkers) {
+          if (worker.iAlive && (least == null || worker.iOutstanding.get() < least.iOutstanding.get()))
+            least = worker;
+        }
+
+        if (least == null)
+          break;
+
+        least.iOutstanding.incrementAndGet();
+        assignments.merge(least, 1, Integer::sum);
+      }
+    }
+
+    int numAssigned = 0;
+    for (Map.Entry<WorkerConnection, Integer> assignment : assignments.entrySet()) {
+      assignment.getKey()
+              .launch(iNextLaunchID.getAndIncrement(), scenario, params, waitMillis, assignment.getValue(), listener);
+      numAssigned += assignment.getValue();
+    }
+
+    if (numAssigned < count)
+      cLogger.error("No worker alive, {} runs are treated as abnormally exited", count - numAssigned);
+    for (int i = numAssigned; i < count; i++)
+      listener.onExit(RunTiming.lost(0));
+  }
+
+  @Override
+  public void shutdown() {
+    iShutdown = true;
+    iHttpClient.close();
+    iVertx.close();
+  }
+
+  private static class PendingLaunch {
+
+    final RunListener listener;
+
+    final AtomicInteger remaining;
+
+    final long startNanos = System.nanoTime();
+
+    PendingLaunch(RunListener listener, int count) {
+      this.listener = listener;
+      this.remaining = new AtomicInteger(count);
+    }
+  }
+
+  private class WorkerConnection {
+
+    private final String iName;
+
+    private final WebSocket iWebSocket;
+
+    private final Context iContext;
+
+    private final Map<Long, PendingLaunch> iPending = new ConcurrentHashMap<>();
+
+    private final AtomicInteger iOutstanding = new AtomicInteger(0);
+
+    private volatile boolean iAlive = true;
+
+    private Buffer iPendingMessage = Buffer.buffer();
+
+    private WorkerConnection(String name, WebSocket ws, Context context) {
+      iName = name;
+      iWebSocket = ws;
+      iContext = context;
+    }
+
+    private void open() {
+      iWebSocket.frameHandler(this::onFrame);
+      iWebSocket.exceptionHandler(e -> cLogger.warn("Error on worker {}: {}", iName, e.getMessage()));
+      iWebSocket.closeHandler(v -> {
+        iAlive = false;
+        if (!iShutdown)
+          cLogger.error("Worker {} disconnected with {} runs outstanding", iName, iOutstanding.get());
+        for (Long launchID : iPending.keySet())
+          failLaunch(launchID);
+      });
+    }
+
+    private void launch(long launchID, String scenario, PlayParams params, int waitMillis, int count,
+            RunListener listener) {
+      iPending.put(launchID, new PendingLaunch(listener, count));
+
+      JsonObject message = new JsonObject();
+      message.put("command", "launch");
+      message.put("launch-id", launchID);
+      message.put("scenario", scenario);
+      message.put("params", params.toJsonObject());
+      message.put("wait-millis", waitMillis);
+      message.put("count", count);
+
+      // the WebSocket must be written on its own context, where the close handler also runs
+      iContext.runOnContext(v -> {
+        if (iAlive)
+          iWebSocket.writeFinalTextFrame(message.toString());
+        else
+          failLaunch(launchID);
+      });
+    }
+
+    private void onFrame(WebSocketFrame frame) {
+      iPendingMessage.appendBuffer(frame.binaryData());
+      if (!frame.isFinal())
+        return;
+
+      Buffer message = iPendingMessage;
+      iPendingMessage = Buffer.buffer();
+
+      JsonObject result;
+      try {
+        result = message.toJsonObject();
+      }
+      catch (Exception e) {
+        cLogger.error("Malformed message from worker {}: {}", iName, message, e);
+        return;
+      }
+
+      long launchID = result.getLong("launch-id");
+      PendingLaunch launch = iPending.get(launchID);
+      if (launch == null) {
+        cLogger.warn("Result of unknown launch-id <{}> from worker {}: {}", launchID, iName, message);
+        return;
+      }
+
+      if (launch.remaining.decrementAndGet() == 0)
+        iPending.remove(launchID);
+      iOutstanding.decrementAndGet();
+      launch.listener.onExit(RunTiming.fromJsonObject(result.getJsonObject("timing")));
+    }
+
+    private void failLaunch(long launchID) {
+      PendingLaunch launch = iPending.remove(launchID);
+      if (launch == null)
+        return;
+
+      RunTiming timing = RunTiming.lost(System.nanoTime() - launch.startNanos);
+      int remaining = launch.remaining.getAndSet(0);
+      iOutstanding.addAndGet(-remaining);
+      for (int i = 0; i < remaining; i++)
+        launch.listener.onExit(timing);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package com.ricequant.apps.stress_test.executor.distributed;
+
+import com.ricequant.apps.stress_test.client.PlayParams;
+import com.ricequant.apps.stress_test.client.RunTiming;
+import com.ricequant.apps.stress_test.executor.RunLauncher;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A worker of the distributed mode. It listens for coordinators on a WebSocket at {@link #cPath}, plays the runs it is
+ * asked to launch with its own client, and streams the result of every run back as soon as the run exits.
+ * <p>
+ * A coordinator sends <code>{"command":"launch","launch-id":1,"params":{...},"wait-millis":60000,"count":4}</code>,
+ * the worker answers once per run with <code>{"launch-id":1,"timing":{...}}</code>, see
+ * {@link RunTiming#toJsonObject()}.
+ * Runs still running when the coordinator goes away keep running until they exit or hit the deadline.
+ *
+ * @author chenfeng
+ */
+public class WorkerNode {
+
+  static final String cPath = "/worker";
+
+  private static final Logger cLogger = LoggerFactory.getLogger(WorkerNode.class);
+
+  private final Vertx iVertx = Vertx.vertx();
+
+  private final RunLauncher iLauncher;
+
+  private final int iPort;
+
+  private HttpServer iServer;
+
+  private WorkerNode(RunLauncher launcher, int port) {
+    iLauncher = launcher;
+    iPort = port;
+  }
+
+  /**
+   * Creates a worker, call {@link #start(Runnable)} to listen
+   *
+   * @param launcher
+   *         the launcher which plays the runs on this node
+   * @param port
+   *         the port to listen on
+   *
+   * @return the worker
+   */
+  public static WorkerNode create(RunLauncher launcher, int port) {
+    return new WorkerNode(launcher, port);
+  }
+
+  /**
+   * Start listening
+   *
+   * @param onListening
+   *         callback when the worker is listening
+   */
+  public void start(Runnable onListening) {
+    iServer = iVertx.createHttpServer().websocketHandler(this::handleCoordinator).listen(iPort, ar -> {
+      if (ar.succeeded()) {
+        cLogger.info("Worker listening on port {}, waiting for coordinators...", iPort);
+        onListening.run();
+      }
+      else
+        cLogger.error("Unable to start worker on port {}", iPort, ar.cause());
+    });
+  }
+
+  /**
+   * Stop listening and release all resources
+   */
+  public void stop() {
+    if (iServer != null)
+      iServer.close();
+    iVertx.close();
+  }
+
+  private void handleCoordinator(ServerWebSocket ws) {
+    if (!cPath.equals(ws.path())) {
+      ws.reject();
+      return;
+    }
+
+    cLogger.info("Coordinator connected from {}", ws.remoteAddress());
+    new CoordinatorSession(ws, Vertx.currentContext()).open();
+  }
+
+  private class CoordinatorSession {
+
+    private final ServerWebSocket iWebSocket;
+
+    private final Context iContext;
+
+    private volatile boolean iClosed = false;
+
+    private Buffer iPendingMessage = Buffer.buffer();
+
+    private CoordinatorSession(ServerWebSocket ws, Context context) {
+      iWebSocket = ws;
+      iContext = context;
+    }
+
+    private void open() {
+      iWebSocket.frameHandler(this::onFrame);
+      iWebSocket.exceptionHandler(e -> cLogger.warn("Error on coordinator connection: {}", e.getMessage()));
+      iWebSocket.closeHandler(v -> {
+        iClosed = true;
+        cLogger.info("Coordinator disconnected from {}", iWebSocket.remoteAddress());
+      });
+    }
+
+    private void onFrame(WebSocketFrame frame) {
+      iPendingMessage.appendBuffer(frame.binaryData());
+      if (!frame.isFinal())
+        return;
+
+      Buffer message = iPendingMessage;
+      iPendingMessage = Buffer.buffer();
+
+      JsonObject json;
+      try {
+        json = message.toJsonObject();
+      }
+      catch (Exception e) {
+        cLogger.error("Malformed message from coordinator: {}", message, e);
+        return;
+      }
+
+      if (!"launch".equals(json.getString("command"))) {
+        cLogger.error("Unknown command from coordinator: {}", message);
+        return;
+      }
+
+      long launchID = json.getLong("launch-id");
+      int count = json.getInteger("count");
+      cLogger.info("Launching {} runs for launch-id <{}>", count, launchID);
+      iLauncher.launch(json.getString("scenario"), PlayParams.fromJsonObject(json.getJsonObject("params")),
+              json.getInteger("wait-millis"), count, timing -> report(launchID, timing));
+    }
+
+    private void report(long launchID, RunTiming timing) {
+      JsonObject result = new JsonObject();
+      result.put("launch-id", launchID);
+      result.put("timing", timing.toJsonObject());
+
+      // results come from the threads of the client, but the WebSocket must be written on its own context
+      iContext.runOnContext(v -> {
+        if (iClosed)
+          cLogger.warn("Coordinator gone, dropping result of launch-id <{}>: {}", launchID, result);
+        else
+          iWebSocket.writeFinalTextFrame(result.toString());
+      });
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package com.ricequant.apps.stress_test.executor.history;
+
+import io.vertx.core.json.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the scenarios of a session in a {@link ResultStore} against those of a baseline session. A scenario
+ * regresses when its capacity drops by more than the capacity tolerance, when its capacity is unchanged within that
+ * tolerance and the mean, p50, p90 or p99 running time of its best pass grows by more than the latency tolerance, or
+ * when it has no result in the session compared. The best passes of scenarios whose capacity changed ran at different
+ * loads, so their running times are printed but not gated. The process exits with 1 if any scenario regresses, so
+ * that a release pipeline can gate on it, and with 0 otherwise.
+ *
+ * @author chenfeng
+ */
+public class ResultCompare {
+
+  static final String cDefaultStore = "logs/stress-results.jsonl";
+
+  private static final String[] cGatedLatencies = {"mean", "p50", "p90", "p99"};
+
+  private static final String[] cReportedLatencies = {"p999", "max"};
+
+  private static void printUsage() {
+    System.out.println("Usage: [-s path/to/store.jsonl] [-b baselineSessionOrLabel] [-t targetSessionOrLabel] "
+            + "[-ct capacityTolerance] [-lt latencyTolerance]");
+  }
+
+  public static void main(String[] args) {
+    String store = cDefaultStore;
+    String baselineKey = null;
+    String targetKey = null;
+    double capacityTolerance = 0.05;
+    double latencyTolerance = 0.1;
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-h") || i + 1 >= args.length) {
+        printUsage();
+        System.exit(-1);
+      }
+
+      switch (args[i]) {
+        case "-s":
+          store = args[++i];
+          break;
+        case "-b":
+          baselineKey = args[++i];
+          break;
+        case "-t":
+          targetKey = args[++i];
+          break;
+        case "-ct":
+          capacityTolerance = Double.parseDouble(args[++i]);
+          break;
+        case "-lt":
+          latencyTolerance = Double.parseDouble(args[++i]);
+          break;
+        default:
+          printUsage();
+          System.exit(-1);
+      }
+    }
+
+    List<Session> sessions = null;
+    try {
+      sessions = sessions(ResultStore.read(new File(store)));
+    }
+    catch (IOException e) {
+      System.err.println("Unable to read " + store + ": " + e.getMessage());
+      System.exit(-1);
+    }
+
+    Session target = targetKey == null ? latest(sessions, sessions.size()) : find(sessions, targetKey);
+    if (target == null) {
+      System.err.println("No session to compare found in " + store);
+      System.exit(-1);
+    }
+
+    Session baseline = baselineKey == null ? latest(sessions, sessions.indexOf(target)) : find(sessions,
+            baselineKey);
+    if (baseline == null) {
+      System.err.println("No baseline session found in " + store);
+      System.exit(-1);
+    }
+
+    int regressions = compare(baseline, target, capacityTolerance, latencyTolerance, System.out);
+    System.exit(regressions > 0 ? 1 : 0);
+  }
+
+  /**
+   * Compare the scenarios of two sessions and print the differences
+   *
+   * @param baseline
+   *         the session to compare against
+   * @param target
+   *         the session to compare
+   * @param capacityTolerance
+   *         the ratio the capacity of a scenario may drop by
+   * @param latencyTolerance
+   *         the ratio a running time percentile of a scenario may grow by, gated only when the capacity is unchanged
+   * @param out
+   *         where the differences are printed
+   *
+   * @return number of scenarios regressed
+   */
+  static int compare(Session baseline, Session target, double capacityTolerance, double latencyTolerance,
+          PrintStream out) {
+    out.println("Baseline: " + baseline);
+    out.println("Target:   " + target);
+
+    int regressions = 0;
+    for (Map.Entry<String, JsonObject> entry : baseline.iScenarios.entrySet()) {
+      String name = entry.getKey();
+      JsonObject before = entry.getValue();
+      JsonObject after = target.iScenarios.get(name);
+      if (after == null) {
+        out.println("Scenario <" + name + ">: no result in target  REGRESSION");
+        regressions++;
+        continue;
+      }
+
+      if (!before.getString("mode").equals(after.getString("mode"))) {
+        out.println("Scenario <" + name + ">: load mode changed from " + before.getString("mode") + " to "
+                + after.getString("mode") + ", not compared");
+        continue;
+      }
+
+      boolean regressed = false;
+      double capacityBefore = before.getDouble("capacity");
+      double capacityAfter = after.getDouble("capacity");
+      boolean capacityRegressed = capacityAfter < capacityBefore * (1 - capacityTolerance);
+      boolean capacityGrew = capacityAfter > capacityBefore * (1 + capacityTolerance);
+      out.println("Scenario <" + name + "> " + after.getString("mode") + ": capacity " + diff(capacityBefore,
+              capacityAfter) + (capacityRegressed ? "  REGRESSION" : ""));
+      regressed |= capacityRegressed;
+
+      JsonObject latencyBefore = before.getJsonObject("latency");
+      JsonObject latencyAfter = after.getJsonObject("latency");
+      if (latencyBefore != null && latencyAfter != null && latencyBefore.getLong("count") > 0
+              && latencyAfter.getLong("count") > 0) {
+        // the best pass of a changed capacity ran at another load, its running times are not comparable
+        boolean gated = !capacityRegressed && !capacityGrew;
+        if (!gated)
+          out.println("  running times at a different load, not gated");
+        for (String key : cGatedLatencies) {
+          double valueBefore = latencyBefore.getDouble(key);
+          double valueAfter = latencyAfter.getDouble(key);
+          boolean latencyRegressed = gated && valueBefore > 0 && valueAfter > valueBefore * (1 + latencyTolerance);
+          out.println("  " + key + " " + diff(valueBefore, valueAfter) + (latencyRegressed ? "  REGRESSION" : ""));
+          regressed |= latencyRegressed;
+        }
+        for (String key : cReportedLatencies)
+          out.println("  " + key + " " + diff(latencyBefore.getDouble(key), latencyAfter.getDouble(key)));
+      }
+
+      if (regressed)
+        regressions++;
+    }
+
+    for (String name : target.iScenarios.keySet()) {
+      if (!baseline.iScenarios.containsKey(name))
+        out.println("Scenario <" + name + ">: no result in baseline, not compared");
+    }
+
+    out.println(regressions == 0 ? "No regression" : regressions + " scenario(s) regressed");
+    return regressions;
+  }
+
+  /**
+   * Group the scenario records of a store by session
+   *
+   * @param records
+   *         the records of the store
+   *
+   * @return sessions with at least one scenario record, in the order they started
+   */
+  static List<Session> sessions(List<JsonObject> records) {
+    Map<Long, Session> sessions = new LinkedHashMap<>();
+    for (JsonObject record : records) {
+      if (!ResultStore.cKindScenario.equals(record.getString("kind")))
+        continue;
+
+      Session session = sessions
+              .computeIfAbsent(record.getLong("session"), id -> new Session(id, record.getString("label")));
+      session.iScenarios.put(record.getString("scenario"), record);
+    }
+
+    List<Session> ret = new ArrayList<>(sessions.values());
+    ret.sort((a, b) -> Long.compare(a.iID, b.iID));
+    return ret;
+  }
+
+  private static Session latest(List<Session> sessions, int before) {
+    return before > 0 ? sessions.get(before - 1) : null;
+  }
+
+  // the latest session with the label, or the session with the id
+  private static Session find(List<Session> sessions, String key) {
+    for (int i = sessions.size() - 1; i >= 0; i--) {
+      Session session = sessions.get(i);
+      if (key.equals(session.iLabel) || key.equals(Long.toString(session.iID)))
+        return session;
+    }
+    return null;
+  }
+
+  private static String diff(double before, double after) {
+    String change = before == 0 ? "" : String.format(" (%+.1f%%)", (after - before) * 100 / before);
+    return String.format("%.1f -> %.1f", before, after) + change;
+  }
+
+  /**
+   * The scenario results of a session
+   */
+  static class Session {
+
+    private final long iID;
+
+    private final String iLabel;
+
+    private final Map<String, JsonObject> iScenarios = new LinkedHashMap<>();
+
+    Session(long id, String label) {
+      iID = id;
+      iLabel = label;
+    }
+
+    @Override
+    public String toString() {
+      return "session " + iID + (iLabel == null ? "" : " <" + iLabel + ">") + " started at "
+              + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(iID));
+    }
+  }
+}
@@ -0,0 +1,282 @@
+package com.ricequant.apps.stress_test.executor.history;
+
+import com.ricequant.apps.stress_test.client.LatencyHistogram;
+import com.ricequant.apps.stress_test.executor.ArrivalRateResult;
+import com.ricequant.apps.stress_test.executor.PassResult;
+import com.ricequant.apps.stress_test.executor.RunTimeLog;
+import com.ricequant.generated_config.apps.stress_test.LoadModeEnum;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only file of the results of every test session, one JSON record per line, so that sessions can be compared
+ * with each other afterwards, see {@link ResultCompare}.
+ * <p>
+ * Each record has the "kind" of the record, the "session" it belongs to (the epoch milliseconds the session started),
+ * the optional "label" of the session, the epoch milliseconds it is recorded at as "time", the "scenario" name and its
+ * load "mode". A "pass" record is written when a pass finishes, with its number of "executors" (or arrival "rate" in
+ * runs per minute for OpenLoop), "success", "runtime", the number of runs by how they exited as "counts", the summary
+ * of the running times (sojourn times for OpenLoop) of normally exited runs as "latency", and the running time of every
+ * run by exit status as "runs", plus the path of the file of the samples taken during the pass as "samples" if any, see
+ * {@link #samplesFile(String, int)}. A "scenario" record is written when a scenario finishes, with its "capacity": the
+ * number of executors of the best successful pass, the highest sustained arrival rate for OpenLoop, or the number of
+ * runs kept in flight if the soak passed; 0 if nothing succeeded. It also has the "runtime" and the "latency" summary
+ * of the best pass.
+ * <p>
+ * Every record is flushed once written, so the file stays readable when the process is killed. A partly written last
+ * line is skipped when reading, while a corrupted line anywhere else fails the read, so that no scenario silently drops
+ * out of a comparison.
+ *
+ * @author chenfeng
+ */
+public class ResultStore implements Closeable {
+
+  static final String cKindPass = "pass";
+
+  static final String cKindScenario = "scenario";
+
+  private final File iFile;
+
+  private final long iSession;
+
+  private final String iLabel;
+
+  private final Writer iWriter;
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private ResultStore(File file, long session, String label, Writer writer) {
+    iFile = file;
+    iSession = session;
+    iLabel = label;
+    iWriter = writer;
+  }
+
+  /**
+   * Open the store to append the results of a new session to
+   *
+   * @param file
+   *         the file of the store, created with its parent directories if not existing
+   * @param label
+   *         the label of the session, e.g. the version of the backend under test, or null
+   *
+   * @return the store
+   *
+   * @throws IOException
+   *         if the file cannot be opened for appending
+   */
+  public static ResultStore open(File file, String label) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+      throw new IOException("Unable to create result store directory: " + dir);
+
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+    return new ResultStore(file, System.currentTimeMillis(), label, writer);
+  }
+
+  /**
+   * Read all records of a store
+   *
+   * @param file
+   *         the file of the store
+   *
+   * @return the records in the order they are written
+   *
+   * @throws IOException
+   *         if the file cannot be read, or a line other than the last one is not a record
+   */
+  public static List<JsonObject> read(File file) throws IOException {
+    List<JsonObject> ret = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+      String line;
+      int lineNumber = 0;
+      int badLineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (line.trim().isEmpty())
+          continue;
+
+        if (badLineNumber > 0)
+          throw new IOException("Corrupted record at line " + badLineNumber + " of result store " + file);
+
+        try {
+          ret.add(new JsonObject(line));
+        }
+        catch (DecodeException e) {
+          // only the last line can be partly written, when the process was killed while writing it
+          badLineNumber = lineNumber;
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * The file of the store
+   *
+   * @return the file
+   */
+  public File file() {
+    return iFile;
+  }
+
+  /**
+   * The session the records are written for
+   *
+   * @return epoch milliseconds the store is opened at
+   */
+  public long session() {
+    return iSession;
+  }
+
+  /**
+   * Record a ClosedLoop pass, or the overall result of a Soak pass
+   *
+   * @param scenario
+   *         name of the scenario
+   * @param mode
+   *         the load mode of the scenario
+   * @param result
+   *         the result of the pass
+   * @param samples
+   *         the file of the samples taken during the pass, or null
+   */
+  public void recordPass(String scenario, LoadModeEnum mode, PassResult result, File samples) {
+    JsonObject counts = new JsonObject().put("normal", result.normalRunTimes().count())
+            .put("overdue", result.overdueRunTimes().count()).put("canceled", result.canceledRunTimes().count())
+            .put("error", result.errorRunTimes().count()).put("client-abort", result.clientAbortRunTimes().count());
+
+    append(record(cKindPass, scenario, mode).put("executors", result.numExecutors()).put("success", result.isSuccess())
+            .put("runtime", result.runtime()).put("counts", counts).put("latency", latency(result.exitedRunTimes()))
+            .put("runs", runs(result.runTimes())), samples);
+  }
+
+  /**
+   * Record an OpenLoop pass
+   *
+   * @param scenario
+   *         name of the scenario
+   * @param result
+   *         the result of the pass
+   * @param samples
+   *         the file of the samples taken during the pass, or null
+   */
+  public void recordPass(String scenario, ArrivalRateResult result, File samples) {
+    JsonObject counts = new JsonObject().put("normal", result.numInTime()).put("overdue", result.numOverdue())
+            .put("canceled", result.canceledRunTimes().count()).put("error", result.errorRunTimes().count())
+            .put("client-abort", result.clientAbortRunTimes().count());
+
+    append(record(cKindPass, scenario, LoadModeEnum.OPEN_LOOP).put("rate", result.ratePerMinute())
+            .put("success", result.isSuccess()).put("runtime", result.sojournPercentileMillis())
+            .put("throughput", result.throughputPerMinute()).put("counts", counts)
+            .put("latency", latency(result.sojournTimes())).put("runs", runs(result.runTimes())), samples);
+  }
+
+  /**
+   * Record the outcome of a scenario
+   *
+   * @param scenario
+   *         name of the scenario
+   * @param mode
+   *         the load mode of the scenario
+   * @param capacity
+   *         executors or arrival rate sustained by the scenario, 0 if nothing succeeded
+   * @param runtime
+   *         the running time of the best pass
+   * @param latencies
+   *         the running times of the normally exited runs of the best pass, or null if there is none
+   */
+  public void recordScenario(String scenario, LoadModeEnum mode, double capacity, double runtime,
+          LatencyHistogram latencies) {
+    JsonObject record = record(cKindScenario, scenario, mode).put("capacity", capacity).put("runtime", runtime);
+    if (latencies != null)
+      record.put("latency", latency(latencies));
+    append(record);
+  }
+
+  /**
+   * The file to write the samples of a pass into, under the "samples" directory next to the store
+   *
+   * @param scenario
+   *         name of the scenario
+   * @param pass
+   *         the number of the pass in the scenario, from 1
+   *
+   * @return the file, named after the session, the scenario and the pass
+   */
+  public File samplesFile(String scenario, int pass) {
+    File dir = iFile.getParentFile();
+    return new File(dir == null ? new File("samples") : new File(dir, "samples"),
+            iSession + "-" + scenario.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + pass + ".csv");
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      iWriter.close();
+    }
+    catch (IOException e) {
+      iLogger.error("Unable to close result store {}", iFile, e);
+    }
+  }
+
+  private JsonObject record(String kind, String scenario, LoadModeEnum mode) {
+    JsonObject ret = new JsonObject().put("kind", kind).put("session", iSession);
+    if (iLabel != null)
+      ret.put("label", iLabel);
+    return ret.put("time", System.currentTimeMillis()).put("scenario", scenario).put("mode", mode.value());
+  }
+
+  private void append(JsonObject record, File samples) {
+    if (samples != null)
+      record.put("samples", samples.getPath());
+    append(record);
+  }
+
+  private synchronized void append(JsonObject record) {
+    try {
+      iWriter.write(record.encode());
+      iWriter.write('\n');
+      iWriter.flush();
+    }
+    catch (IOException e) {
+      iLogger.error("Unable to write result store {}, record lost: {}", iFile, record, e);
+    }
+  }
+
+  private static JsonObject latency(LatencyHistogram histogram) {
+    return new JsonObject().put("count", histogram.count()).put("mean", histogram.mean())
+            .put("p50", histogram.percentile(0.5)).put("p90", histogram.percentile(0.9))
+            .put("p99", histogram.percentile(0.99)).put("p999", histogram.percentile(0.999))
+            .put("max", histogram.max());
+  }
+
+  private static JsonObject runs(RunTimeLog runTimes) {
+    JsonObject ret = new JsonObject();
+    for (Map.Entry<String, long[]> entry : runTimes.byStatus().entrySet()) {
+      JsonArray millis = new JsonArray();
+      for (long value : entry.getValue())
+        millis.add(value);
+      ret.put(entry.getKey(), millis);
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,188 @@
+package com.ricequant.apps.stress_test.executor.history;
+
+import com.ricequant.apps.stress_test.executor.SpeedBaseline;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * The load-free running times of strategies measured by earlier sessions, kept in a JSON file so that a session can
+ * skip the speed test of a scenario and go straight to the passes.
+ * <p>
+ * A baseline is keyed by the SHA-256 of the server URL, the play params of the scenario (code, dates, bar type, cash
+ * and the rest), the runtime component measured and the settings of the speed test (warm-up runs, minimum and maximum
+ * runs, target relative error and estimator). It keeps the "estimate", the "half-width" of its 95% confidence interval
+ * if known, the "variance" and number of "runs" measured, the epoch milliseconds it is measured at as "time", and the
+ * "label" of the session that measured it. The cache is only used by labelled sessions, since the label is what tells
+ * the version of the backend under test: a baseline is reused by sessions with the same label until it is older than
+ * the time to live. All baselines are measured again when the cache is opened with refresh, and replaced once
+ * measured.
+ * <p>
+ * The whole file is rewritten to a temporary file and moved over the old one when a baseline is stored, so that it
+ * stays readable when the process is killed.
+ *
+ * @author chenfeng
+ */
+public class SpeedBaselineCache {
+
+  private final File iFile;
+
+  private final String iServer;
+
+  private final String iLabel;
+
+  private final long iTtlMillis;
+
+  private final boolean iRefresh;
+
+  private final JsonObject iBaselines;
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private SpeedBaselineCache(File file, String server, String label, long ttlMillis, boolean refresh,
+          JsonObject baselines) {
+    iFile = file;
+    iServer = server;
+    iLabel = label;
+    iTtlMillis = ttlMillis;
+    iRefresh = refresh;
+    iBaselines = baselines;
+  }
+
+  /**
+   * Open the cache, reading the baselines stored so far
+   *
+   * @param file
+   *         the file of the cache, created with its parent directories when the first baseline is stored
+   * @param server
+   *         URL of the server the strategies run on
+   * @param label
+   *         the label of the session, e.g. the version of the backend under test, only baselines measured by sessions
+   *         with the same label are reused
+   * @param ttlMillis
+   *         milliseconds a baseline is reused for since it is measured, 0 to never reuse
+   * @param refresh
+   *         true to measure all baselines again, ignoring those stored
+   *
+   * @return the cache
+   *
+   * @throws IOException
+   *         if the file exists but cannot be read
+   */
+  public static SpeedBaselineCache open(File file, URL server, String label, long ttlMillis, boolean refresh)
+          throws IOException {
+    JsonObject baselines = new JsonObject();
+    if (file.exists()) {
+      try {
+        baselines = new JsonObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+      }
+      catch (DecodeException e) {
+        throw new IOException("Corrupted speed baseline cache: " + file, e);
+      }
+    }
+    return new SpeedBaselineCache(file, server.toString(), label, ttlMillis, refresh, baselines);
+  }
+
+  /**
+   * Look up the baseline of a scenario
+   *
+   * @param scenario
+   *         the scenario
+   *
+   * @return the baseline, or null if there is none to reuse
+   */
+  public synchronized SpeedBaseline lookup(TestScenario scenario) {
+    if (iRefresh)
+      return null;
+
+    JsonObject entry = iBaselines.getJsonObject(key(scenario));
+    if (entry == null)
+      return null;
+
+    long time = entry.getLong("time");
+    if (System.currentTimeMillis() - time >= iTtlMillis) {
+      iLogger.info("Speed baseline of scenario <{}> measured at {} has expired", scenario.name(), format(time));
+      return null;
+    }
+
+    String label = entry.getString("label");
+    if (!iLabel.equals(label)) {
+      iLogger.info("Speed baseline of scenario <{}> is measured by a session labelled {}, not <{}>", scenario.name(),
+              label == null ? "nothing" : "<" + label + ">", iLabel);
+      return null;
+    }
+
+    SpeedBaseline baseline = SpeedBaseline.create(entry.getDouble("estimate"),
+            entry.getDouble("half-width", Double.POSITIVE_INFINITY), entry.getDouble("variance"),
+            entry.getInteger("runs"));
+    iLogger.info("Reusing speed baseline of scenario <{}> measured at {}: {}", scenario.name(), format(time),
+            baseline);
+    return baseline;
+  }
+
+  /**
+   * Store the baseline of a scenario, replacing the one stored before
+   *
+   * @param scenario
+   *         the scenario
+   * @param baseline
+   *         the baseline just measured
+   */
+  public synchronized void store(TestScenario scenario, SpeedBaseline baseline) {
+    JsonObject entry = new JsonObject().put("scenario", scenario.name()).put("estimate", baseline.estimate())
+            .put("variance", baseline.variance()).put("runs", baseline.numRuns())
+            .put("time", System.currentTimeMillis());
+    // JSON has no infinity
+    if (!Double.isInfinite(baseline.halfWidth()))
+      entry.put("half-width", baseline.halfWidth());
+    entry.put("label", iLabel);
+    iBaselines.put(key(scenario), entry);
+
+    try {
+      File dir = iFile.getAbsoluteFile().getParentFile();
+      if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+        throw new IOException("Unable to create speed baseline cache directory: " + dir);
+
+      File temp = new File(iFile.getPath() + ".tmp");
+      Files.write(temp.toPath(), iBaselines.encodePrettily().getBytes(StandardCharsets.UTF_8));
+      Files.move(temp.toPath(), iFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      iLogger.error("Unable to write speed baseline cache {}, baseline of scenario <{}> not kept", iFile,
+              scenario.name(), e);
+    }
+  }
+
+  private String key(TestScenario scenario) {
+    String source = iServer + "\n" + scenario.runtimeComponent().value() + "\n" + scenario.numWarmUpRuns() + ","
+            + scenario.numInitialSpeedTestRuns() + "," + scenario.maxSpeedTestRuns() + ","
+            + scenario.speedTestRelativeError() + "," + scenario.speedTestEstimator().value() + "\n"
+            + scenario.playParams();
+    try {
+      StringBuilder ret = new StringBuilder();
+      for (byte b : MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8)))
+        ret.append(String.format("%02x", b));
+      return ret.toString();
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not supported", e);
+    }
+  }
+
+  private static String format(long time) {
+    return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(time));
+  }
+}
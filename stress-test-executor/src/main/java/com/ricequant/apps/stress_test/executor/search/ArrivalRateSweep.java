@@ -0,0 +1,113 @@
+package com.ricequant.apps.stress_test.executor.search;
+
+import com.ricequant.apps.stress_test.executor.ArrivalRateResult;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ramps the arrival rate of open-loop passes to find the highest rate the backend sustains. The rate grows by the
+ * arrival rate grow factor until a pass fails, then each pass bisects between the highest sustained rate and the lowest
+ * failed one until they are within the search tolerance or maxRefineRuns refine passes are done.
+ * <p>
+ * The rate never exceeds the one which keeps theoreticalUpperBound runs in flight at the load-free running time.
+ *
+ * @author chenfeng
+ */
+public class ArrivalRateSweep {
+
+  private final TestScenario iScenario;
+
+  private final double iFirstRate;
+
+  private final double iMaxRate;
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private double iHighestSucceeded = 0;
+
+  private double iLowestFailed = Double.MAX_VALUE;
+
+  private int iRunCount = 0;
+
+  private ArrivalRateSweep(TestScenario scenario, double unstressedExecutionTime) {
+    iScenario = scenario;
+    iMaxRate = scenario.theoreticalUpperBound() * 60000 / unstressedExecutionTime;
+    double firstRate = scenario.initialArrivalRatePerMinute() > 0 ? scenario.initialArrivalRatePerMinute()
+            : scenario.initialParallels() * 60000 / unstressedExecutionTime;
+    iFirstRate = Math.min(iMaxRate, firstRate);
+  }
+
+  /**
+   * Creates the sweep
+   *
+   * @param scenario
+   *         the scenario definition
+   * @param unstressedExecutionTime
+   *         the load-free running time of the strategy in milliseconds
+   *
+   * @return the sweep
+   */
+  public static ArrivalRateSweep create(TestScenario scenario, double unstressedExecutionTime) {
+    return new ArrivalRateSweep(scenario, unstressedExecutionTime);
+  }
+
+  /**
+   * The arrival rate of the first pass, either configured or the one which keeps initialParallelRuns runs in flight
+   * at the load-free running time
+   *
+   * @return runs per minute
+   */
+  public double firstRate() {
+    return iFirstRate;
+  }
+
+  /**
+   * Decide the next pass from the result of the last one
+   *
+   * @param result
+   *         the result of the pass just finished
+   *
+   * @return the arrival rate of the next pass in runs per minute, or 0 to stop sweeping
+   */
+  public double nextRate(ArrivalRateResult result) {
+    double rate = result.ratePerMinute();
+    if (result.isSuccess())
+      iHighestSucceeded = Math.max(iHighestSucceeded, rate);
+    else
+      iLowestFailed = Math.min(iLowestFailed, rate);
+
+    boolean bracketed = iLowestFailed != Double.MAX_VALUE;
+    if (!bracketed) {
+      if (iHighestSucceeded >= iMaxRate) {
+        iLogger.info("Rate {} runs/min sustained at the theoretical upper bound, stopping...", rate);
+        return 0;
+      }
+
+      double newRate = Math.min(iMaxRate, rate * iScenario.arrivalRateGrowFactor());
+      if (newRate <= rate) {
+        iLogger.info("Rate {} runs/min sustained but cannot grow any more, stopping...", rate);
+        return 0;
+      }
+
+      iLogger.info("Rate {} runs/min sustained, grow to {}", rate, newRate);
+      return newRate;
+    }
+
+    if (iLowestFailed - iHighestSucceeded <= iLowestFailed * iScenario.searchTolerance()) {
+      iLogger.info("Sustainable rate is bracketed between {} and {} runs/min, stopping...", iHighestSucceeded,
+              iLowestFailed);
+      return 0;
+    }
+
+    if (iRunCount++ >= iScenario.maxRefineRuns()) {
+      iLogger.info("maxRefineRuns reached, stopping...");
+      return 0;
+    }
+
+    double newRate = (iHighestSucceeded + iLowestFailed) / 2;
+    iLogger.info("Rate {} runs/min {}, sustainable rate is between {} and {}, next rate {}", rate,
+            result.isSuccess() ? "sustained" : "not sustained", iHighestSucceeded, iLowestFailed, newRate);
+    return newRate;
+  }
+}
@@ -0,0 +1,110 @@
+package com.ricequant.apps.stress_test.executor.search;
+
+import com.ricequant.apps.stress_test.executor.PassResult;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bracketed binary search: the number of executors grows by the expand factor until a pass fails, which brackets the
+ * capacity between the largest successful pass and the smallest failed pass. Then each pass bisects the bracket until
+ * it is narrower than the search tolerance or maxRefineRuns refine passes are done.
+ *
+ * @author chenfeng
+ */
+public class BinarySearch implements CapacitySearchStrategy {
+
+  protected final TestScenario iScenario;
+
+  protected final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private int iHighestSucceeded = 0;
+
+  private int iLowestFailed;
+
+  private int iRunCount = 0;
+
+  protected BinarySearch(TestScenario scenario) {
+    iScenario = scenario;
+    iLowestFailed = scenario.theoreticalUpperBound() + 1;
+  }
+
+  /**
+   * Creates the search
+   *
+   * @param scenario
+   *         the scenario definition
+   *
+   * @return the search
+   */
+  public static BinarySearch create(TestScenario scenario) {
+    return new BinarySearch(scenario);
+  }
+
+  @Override
+  public int firstPass() {
+    return iScenario.initialParallels();
+  }
+
+  @Override
+  public int nextPass(PassResult result) {
+    int numExecutors = result.numExecutors();
+    if (result.isSuccess())
+      iHighestSucceeded = Math.max(iHighestSucceeded, numExecutors);
+    else
+      iLowestFailed = Math.min(iLowestFailed, numExecutors);
+
+    record(result);
+
+    boolean bracketed = iLowestFailed <= iScenario.theoreticalUpperBound();
+    if (!bracketed && iHighestSucceeded >= iScenario.theoreticalUpperBound()) {
+      iLogger.info("Pass success at the theoretical upper bound, stopping...");
+      return 0;
+    }
+
+    if (iLowestFailed - iHighestSucceeded <= Math.max(1, iLowestFailed * iScenario.searchTolerance())) {
+      iLogger.info("Capacity is bracketed between {} and {}, stopping...", iHighestSucceeded, iLowestFailed);
+      return 0;
+    }
+
+    if (bracketed && iRunCount++ >= iScenario.maxRefineRuns()) {
+      iLogger.info("maxRefineRuns reached, stopping...");
+      return 0;
+    }
+
+    int newSize = pick(iHighestSucceeded, iLowestFailed, bracketed);
+    newSize = Math.max(iHighestSucceeded + 1, Math.min(iLowestFailed - 1, newSize));
+    iLogger.info("Pass {} with {} executors, capacity is between {} and {}, next pass with {} executors. "
+                    + "Running time: {}", result.isSuccess() ? "success" : "failed", numExecutors, iHighestSucceeded,
+            iLowestFailed, newSize, result.runtime());
+    return newSize;
+  }
+
+  /**
+   * Called with the result of every pass before the next pass is picked
+   *
+   * @param result
+   *         the result of the pass just finished
+   */
+  protected void record(PassResult result) {
+  }
+
+  /**
+   * Pick the number of executors of the next pass, it will be clamped into the open range (highestSucceeded,
+   * lowestFailed)
+   *
+   * @param highestSucceeded
+   *         the largest number of executors of a successful pass, 0 if none
+   * @param lowestFailed
+   *         the smallest number of executors of a failed pass, or theoretical upper bound + 1 if none
+   * @param bracketed
+   *         whether any pass failed yet
+   *
+   * @return the number of executors
+   */
+  protected int pick(int highestSucceeded, int lowestFailed, boolean bracketed) {
+    if (!bracketed)
+      return (int) (highestSucceeded * iScenario.expandGrowFactor());
+    return highestSucceeded + (lowestFailed - highestSucceeded) / 2;
+  }
+}
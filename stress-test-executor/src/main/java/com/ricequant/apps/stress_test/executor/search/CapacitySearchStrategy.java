@@ -0,0 +1,51 @@
+package com.ricequant.apps.stress_test.executor.search;
+
+import com.ricequant.apps.stress_test.executor.PassResult;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+
+/**
+ * Decides how many strategies to run in each stress test pass of a scenario, based on the results of the previous
+ * passes, until the capacity is found. Implementations are not thread-safe, a new instance is used for each scenario.
+ *
+ * @author chenfeng
+ */
+public interface CapacitySearchStrategy {
+
+  /**
+   * Number of strategies to run in the first pass
+   *
+   * @return the number of executors
+   */
+  int firstPass();
+
+  /**
+   * Decide the next pass from the result of the last one
+   *
+   * @param result
+   *         the result of the pass just finished
+   *
+   * @return the number of executors for the next pass, or 0 to stop searching
+   */
+  int nextPass(PassResult result);
+
+  /**
+   * Creates the search strategy configured for the scenario
+   *
+   * @param scenario
+   *         the scenario definition
+   * @param unstressedExecutionTime
+   *         the load-free running time of the strategy in milliseconds
+   *
+   * @return the search strategy
+   */
+  static CapacitySearchStrategy create(TestScenario scenario, double unstressedExecutionTime) {
+    switch (scenario.searchStrategy()) {
+      case BINARY:
+        return BinarySearch.create(scenario);
+      case MODEL:
+        return ModelBasedSearch.create(scenario, unstressedExecutionTime);
+      default:
+        return ExpandRefineSearch.create(scenario);
+    }
+  }
+}
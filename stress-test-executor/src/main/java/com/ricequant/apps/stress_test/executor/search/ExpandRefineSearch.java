@@ -0,0 +1,96 @@
+package com.ricequant.apps.stress_test.executor.search;
+
+import com.ricequant.apps.stress_test.executor.PassResult;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The original search: the number of executors grows by the expand factor until a pass fails, then it shrinks by the
+ * refine shrink factor after each failed pass and grows by the refine grow factor after each successful one, until
+ * maxRefineRuns refine passes are done.
+ *
+ * @author chenfeng
+ */
+public class ExpandRefineSearch implements CapacitySearchStrategy {
+
+  private final TestScenario iScenario;
+
+  private final Logger iLogger = LoggerFactory.getLogger(getClass());
+
+  private boolean iHasFailedRuns = false;
+
+  private int iRunCount = 0;
+
+  private ExpandRefineSearch(TestScenario scenario) {
+    iScenario = scenario;
+  }
+
+  /**
+   * Creates the search
+   *
+   * @param scenario
+   *         the scenario definition
+   *
+   * @return the search
+   */
+  public static ExpandRefineSearch create(TestScenario scenario) {
+    return new ExpandRefineSearch(scenario);
+  }
+
+  @Override
+  public int firstPass() {
+    return iScenario.initialParallels();
+  }
+
+  @Override
+  public int nextPass(PassResult result) {
+    int numExecutors = result.numExecutors();
+    int newSize;
+
+    if (result.isSuccess()) {
+      newSize = (int) (numExecutors * (iHasFailedRuns ? iScenario.refineGrowFactor() : iScenario.expandGrowFactor()));
+
+      if (newSize <= numExecutors + 1)
+        newSize += 2;
+
+      if (newSize > iScenario.theoreticalUpperBound())
+        newSize = iScenario.theoreticalUpperBound();
+
+      if (newSize <= numExecutors) {
+        iLogger.info("Unable to grow number of executions and pass success, consider restrict conditions more.");
+        return 0;
+      }
+
+      // an incremental run in the expansion phase does not count
+      if (iHasFailedRuns)
+        iRunCount++;
+
+      iLogger.info("Pass success, grow number of executors from {} to {}. Running time: {}", numExecutors, newSize,
+              result.runtime());
+    }
+    else {
+      newSize = (int) (numExecutors * iScenario.refineShrinkFactor());
+      if (newSize == numExecutors)
+        newSize -= 1;
+
+      iHasFailedRuns = true;
+      iRunCount++;
+
+      iLogger.info("Pass failed, shrink number of executors from {} to {} for the next pass if there is one. "
+              + "Running time: {}", numExecutors, newSize, result.runtime());
+    }
+
+    if (iRunCount >= iScenario.maxRefineRuns()) {
+      iLogger.info("maxRefineRuns reached, stopping...");
+      return 0;
+    }
+
+    if (newSize < 1) {
+      iLogger.info("Even one executor fails the pass, stopping...");
+      return 0;
+    }
+
+    return newSize;
+  }
+}
@@ -0,0 +1,105 @@
+package com.ricequant.apps.stress_test.executor.search;
+
+import com.ricequant.apps.stress_test.client.LatencyHistogram;
+import com.ricequant.apps.stress_test.executor.PassResult;
+import com.ricequant.apps.stress_test.executor.config.TestScenario;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bracketed search which fits the running time against the number of executors from the passes run so far and jumps
+ * to the predicted knee, the number of executors at which the running time reaches the overtime threshold.
+ * <p>
+ * Below its capacity the backend runs every strategy in the load-free time, above it the running time grows about
+ * linearly with the number of concurrent runs. So only passes noticeably slower than the load-free time are used: a
+ * least squares line through them when there are two or more, a line through the origin when there is only one. When
+ * nothing can be predicted yet it falls back to {@link BinarySearch}.
+ *
+ * @author chenfeng
+ */
+public class ModelBasedSearch extends BinarySearch {
+
+  private static final double cLoadedRatio = 1.1;
+
+  private final double iUnstressedExecutionTime;
+
+  private final double iOvertimeThreshold;
+
+  private final List<double[]> iLoadedPasses = new ArrayList<>();
+
+  private ModelBasedSearch(TestScenario scenario, double unstressedExecutionTime) {
+    super(scenario);
+    iUnstressedExecutionTime = unstressedExecutionTime;
+    iOvertimeThreshold = unstressedExecutionTime * scenario.overtimeToleranceMultiplier();
+  }
+
+  /**
+   * Creates the search
+   *
+   * @param scenario
+   *         the scenario definition
+   * @param unstressedExecutionTime
+   *         the load-free running time of the strategy in milliseconds
+   *
+   * @return the search
+   */
+  public static ModelBasedSearch create(TestScenario scenario, double unstressedExecutionTime) {
+    return new ModelBasedSearch(scenario, unstressedExecutionTime);
+  }
+
+  @Override
+  protected void record(PassResult result) {
+    LatencyHistogram exited = result.exitedRunTimes();
+    if (exited.count() == 0)
+      return;
+
+    double runtime = iScenario.successPercentile() > 0 ? result.runtime() : exited.mean();
+    if (runtime > iUnstressedExecutionTime * cLoadedRatio)
+      iLoadedPasses.add(new double[]{result.numExecutors(), runtime});
+  }
+
+  @Override
+  protected int pick(int highestSucceeded, int lowestFailed, boolean bracketed) {
+    double knee = predictKnee();
+    if (Double.isNaN(knee))
+      return super.pick(highestSucceeded, lowestFailed, bracketed);
+
+    iLogger.info("Predicted capacity from {} loaded passes: {}", iLoadedPasses.size(), knee);
+    return (int) Math.round(knee);
+  }
+
+  private double predictKnee() {
+    int n = iLoadedPasses.size();
+    if (n == 0)
+      return Double.NaN;
+
+    double slope;
+    double intercept;
+    if (n == 1) {
+      slope = iLoadedPasses.get(0)[1] / iLoadedPasses.get(0)[0];
+      intercept = 0;
+    }
+    else {
+      double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+      for (double[] pass : iLoadedPasses) {
+        sumX += pass[0];
+        sumY += pass[1];
+        sumXX += pass[0] * pass[0];
+        sumXY += pass[0] * pass[1];
+      }
+
+      double denominator = n * sumXX - sumX * sumX;
+      if (denominator == 0)
+        return Double.NaN;
+
+      slope = (n * sumXY - sumX * sumY) / denominator;
+      intercept = (sumY - slope * sumX) / n;
+    }
+
+    if (slope <= 0)
+      return Double.NaN;
+
+    return (iOvertimeThreshold - intercept) / slope;
+  }
+}
@@ -0,0 +1,466 @@
+package com.ricequant.apps.stress_test.executor.standin;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in of the Ricequant Facade for testing the client and the executor without a real backend. It speaks
+ * the same protocol: play, pull, pull-batch, stop and stop-all commands posted to the endpoint path, and feeds
+ * subscriptions over a WebSocket at the endpoint path followed by "/subscribe".
+ * <p>
+ * Requests carry either the credentials in the body, or a session token in the "X-Session-Token" header obtained with
+ * the login command. Expired or unknown tokens are rejected with HTTP 401.
+ * <p>
+ * Every simulated run produces feeds at a fixed rate and exits normally after a fixed amount of work. When more runs
+ * are running than the configured capacity, all of them slow down proportionally, which gives the executor a capacity
+ * knee to find.
+ *
+ * @author chenfeng
+ */
+public class StandInFacadeServer {
+
+  private static final Logger cLogger = LoggerFactory.getLogger(StandInFacadeServer.class);
+
+  private static final long cTickMillis = 100;
+
+  private static final long cPushIntervalMillis = 200;
+
+  private static final String cSessionTokenHeader = "X-Session-Token";
+
+  private static final String[][] cSlices =
+          {{"portfolios", "Portfolios"}, {"benchmark-portfolios", "Portfolios"}, {"positions", "Positions"},
+                  {"risks", "PortfolioRisks"}, {"trades", "Trades"}, {"orders", "Orders"}, {"logs", "Logs"},
+                  {"plots", "Plots"}};
+
+  private final Vertx iVertx = Vertx.vertx();
+
+  private final int iPort;
+
+  private final String iPath;
+
+  private final long iRunMillis;
+
+  private final int iFeedsPerSecond;
+
+  private final int iCapacity;
+
+  private final long iTokenTtlMillis;
+
+  private final Map<String, Long> iSessions = new ConcurrentHashMap<>();
+
+  private final Map<Long, SimulatedRun> iRuns = new ConcurrentHashMap<>();
+
+  private final AtomicLong iNextRunID = new AtomicLong(1);
+
+  private final Map<String, AtomicLong> iCommandCounts = new ConcurrentHashMap<>();
+
+  private final Map<String, AtomicLong> iCommandTotals = new ConcurrentHashMap<>();
+
+  private final Map<String, AtomicInteger> iWithheldResponses = new ConcurrentHashMap<>();
+
+  private final AtomicInteger iBatchOmissions = new AtomicInteger();
+
+  private HttpServer iServer;
+
+  private StandInFacadeServer(int port, String path, long runMillis, int feedsPerSecond, int capacity,
+          long tokenTtlMillis) {
+    iPort = port;
+    iPath = path;
+    iRunMillis = runMillis;
+    iFeedsPerSecond = feedsPerSecond;
+    iCapacity = capacity;
+    iTokenTtlMillis = tokenTtlMillis;
+  }
+
+  /**
+   * Creates a stand-in server, call {@link #start(Runnable)} to listen
+   *
+   * @param port
+   *         the port to listen on
+   * @param path
+   *         the endpoint path, like "/backend-restful"
+   * @param runMillis
+   *         how long a run takes when the number of running runs is within the capacity
+   * @param feedsPerSecond
+   *         number of records produced per second of work for each kind of feeds
+   * @param capacity
+   *         number of runs which can run concurrently without slowing down
+   * @param tokenTtlMillis
+   *         how long a session token obtained with the login command stays valid
+   *
+   * @return the server
+   */
+  public static StandInFacadeServer create(int port, String path, long runMillis, int feedsPerSecond, int capacity,
+          long tokenTtlMillis) {
+    return new StandInFacadeServer(port, path, runMillis, feedsPerSecond, Math.max(1, capacity), tokenTtlMillis);
+  }
+
+  /**
+   * Start listening
+   *
+   * @param onListening
+   *         callback when the server is listening
+   */
+  public void start(Runnable onListening) {
+    iServer = iVertx.createHttpServer().requestHandler(this::handleRequest).websocketHandler(this::handleWebSocket)
+            .listen(iPort, ar -> {
+              if (ar.succeeded()) {
+                cLogger.info("Stand-in facade listening on port {}, path {}", iPort, iPath);
+                onListening.run();
+              }
+              else
+                cLogger.error("Unable to start stand-in facade", ar.cause());
+            });
+
+    iVertx.setPeriodic(cTickMillis, id -> tick());
+    iVertx.setPeriodic(10000, id -> logCommandCounts());
+  }
+
+  /**
+   * Stop listening and release all resources
+   */
+  public void stop() {
+    if (iServer != null)
+      iServer.close();
+    iVertx.close();
+  }
+
+  /**
+   * Handle the next requests of a command as usual but never answer them, as a facade which acts on a request and then
+   * hangs. It is meant for tests of the client.
+   *
+   * @param command
+   *         the command, like "play"
+   * @param count
+   *         number of requests to leave unanswered
+   */
+  public void withholdResponses(String command, int count) {
+    iWithheldResponses.computeIfAbsent(command, k -> new AtomicInteger()).addAndGet(count);
+  }
+
+  /**
+   * Leave the first run out of the responses of the next pull-batch requests, as a facade which loses track of a run
+   * for a moment. It is meant for tests of the client.
+   *
+   * @param count
+   *         number of pull-batch responses to leave a run out of
+   */
+  public void omitFromBatches(int count) {
+    iBatchOmissions.addAndGet(count);
+  }
+
+  /**
+   * The number of requests of a command received since the server started
+   *
+   * @param command
+   *         the command, like "play"
+   *
+   * @return the number of requests
+   */
+  public long received(String command) {
+    AtomicLong total = iCommandTotals.get(command);
+    return total == null ? 0 : total.get();
+  }
+
+  private void tick() {
+    long running = iRuns.values().stream().filter(SimulatedRun::isRunning).count();
+    double speed = running <= iCapacity ? 1 : (double) iCapacity / running;
+    for (SimulatedRun run : iRuns.values())
+      run.work(cTickMillis * speed);
+  }
+
+  private void logCommandCounts() {
+    long now = System.currentTimeMillis();
+    iSessions.values().removeIf(expiry -> expiry < now);
+
+    StringBuilder counts = new StringBuilder();
+    for (Map.Entry<String, AtomicLong> entry : iCommandCounts.entrySet())
+      counts.append(entry.getKey()).append('=').append(entry.getValue().getAndSet(0)).append(' ');
+    cLogger.info("Commands in the last 10 seconds: {}; runs running: {}", counts,
+            iRuns.values().stream().filter(SimulatedRun::isRunning).count());
+  }
+
+  private void count(String command) {
+    iCommandCounts.computeIfAbsent(command, k -> new AtomicLong()).incrementAndGet();
+    iCommandTotals.computeIfAbsent(command, k -> new AtomicLong()).incrementAndGet();
+  }
+
+  private void handleRequest(HttpServerRequest req) {
+    if (!iPath.equals(req.path())) {
+      req.response().setStatusCode(404).end();
+      return;
+    }
+
+    String token = req.getHeader(cSessionTokenHeader);
+    if (token != null && !isValidSession(token)) {
+      count("rejected-token");
+      req.response().setStatusCode(401).putHeader("Content-Type", "application/json")
+              .end(error("Session expired").encode());
+      return;
+    }
+
+    req.bodyHandler(body -> {
+      JsonObject ret;
+      boolean withheld = false;
+      try {
+        JsonObject message = body.toJsonObject();
+        ret = handleCommand(message);
+        AtomicInteger toWithhold = iWithheldResponses.get(message.getString("command", ""));
+        withheld = toWithhold != null && toWithhold.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+      }
+      catch (RuntimeException e) {
+        ret = error("Bad request: " + e.getMessage());
+      }
+      if (withheld)
+        return;
+      req.response().putHeader("Content-Type", "application/json").end(ret.encode());
+    });
+  }
+
+  private JsonObject handleCommand(JsonObject message) {
+    String command = message.getString("command", "");
+    count(command);
+
+    switch (command) {
+      case "login": {
+        if (message.getString("username") == null)
+          return error("Username not set");
+        String token = UUID.randomUUID().toString();
+        iSessions.put(token, System.currentTimeMillis() + iTokenTtlMillis);
+        return new JsonObject().put("status", 0).put("token", token).put("expires-in-millis", iTokenTtlMillis);
+      }
+      case "play": {
+        long runID = iNextRunID.getAndIncrement();
+        iRuns.put(runID, new SimulatedRun());
+        return new JsonObject().put("status", 0).put("run-id", runID);
+      }
+      case "pull": {
+        JsonObject results = pull(message.getJsonObject("feeds-params"));
+        return results == null ? error("Unknown run-id") : new JsonObject().put("status", 0).put("results", results);
+      }
+      case "pull-batch": {
+        JsonObject batch = new JsonObject();
+        boolean omit = iBatchOmissions.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+        for (Object params : message.getJsonArray("feeds-params")) {
+          if (omit) {
+            omit = false;
+            continue;
+          }
+          JsonObject feedsParams = (JsonObject) params;
+          JsonObject results = pull(feedsParams);
+          batch.put(String.valueOf(feedsParams.getLong("run-id")),
+                  results == null ? error("Unknown run-id") : new JsonObject().put("status", 0)
+                          .put("results", results));
+        }
+        return new JsonObject().put("status", 0).put("results", batch);
+      }
+      case "stop": {
+        SimulatedRun run = iRuns.get(message.getLong("run-id", -1L));
+        if (run == null)
+          return error("Unknown run-id");
+        run.cancel();
+        return new JsonObject().put("status", 0);
+      }
+      case "stop-all":
+        iRuns.values().forEach(SimulatedRun::cancel);
+        return new JsonObject().put("status", 0);
+      default:
+        return error("Unknown command: " + command);
+    }
+  }
+
+  private boolean isValidSession(String token) {
+    Long expiry = iSessions.get(token);
+    return expiry != null && expiry >= System.currentTimeMillis();
+  }
+
+  private void handleWebSocket(ServerWebSocket ws) {
+    String token = ws.headers().get(cSessionTokenHeader);
+    if (!(iPath + "/subscribe").equals(ws.path()) || (token != null && !isValidSession(token))) {
+      ws.reject();
+      return;
+    }
+
+    // a new subscription on the same socket replaces the previous one
+    long[] timerID = {-1};
+    ws.closeHandler(v -> iVertx.cancelTimer(timerID[0]));
+    ws.handler(buffer -> {
+      JsonObject message = buffer.toJsonObject();
+      count(message.getString("command", ""));
+      JsonObject[] params = {message.getJsonObject("feeds-params")};
+
+      iVertx.cancelTimer(timerID[0]);
+      timerID[0] = iVertx.setPeriodic(cPushIntervalMillis, id -> {
+        JsonObject results = pull(params[0]);
+        if (results == null) {
+          ws.writeFinalTextFrame(error("Unknown run-id").encode());
+          iVertx.cancelTimer(id);
+          ws.close();
+          return;
+        }
+
+        ws.writeFinalTextFrame(new JsonObject().put("status", 0).put("results", results).encode());
+        params[0] = advance(params[0], results);
+        if (results.getJsonObject("status").getString("LifeCycleStatus").contains("Exit"))
+          iVertx.cancelTimer(id);
+      });
+    });
+  }
+
+  private JsonObject pull(JsonObject feedsParams) {
+    SimulatedRun run = iRuns.get(feedsParams.getLong("run-id", -1L));
+    if (run == null)
+      return null;
+
+    int produced = run.produced();
+    JsonObject results = new JsonObject();
+    results.put("status",
+            new JsonObject().put("LifeCycleStatus", run.status()).put("ExecutionTimeMillis", run.executionMillis()));
+
+    for (String[] slice : cSlices) {
+      JsonObject indexParams = feedsParams.getJsonObject(slice[0]);
+      if (indexParams == null)
+        continue;
+
+      int start = indexParams.getInteger("start-index", 0);
+      int end = (int) Math.min(produced, (long) start + indexParams.getInteger("length", 100));
+      results.put(slice[0], new JsonObject().put("NextIndex", Math.max(start, end))
+              .put(slice[1], records(slice[0], start, end)));
+    }
+
+    if (feedsParams.containsKey("portfolio-grids"))
+      results.put("portfolio-grids", run.isRunning() ? new JsonArray() : records("portfolio-grids", 0, produced / 10));
+    if (feedsParams.containsKey("risk-grids"))
+      results.put("risk-grids", run.isRunning() ? new JsonArray() : records("risk-grids", 0, produced / 10));
+
+    return results;
+  }
+
+  private static JsonObject advance(JsonObject feedsParams, JsonObject results) {
+    JsonObject next = feedsParams.copy();
+    for (String[] slice : cSlices) {
+      if (next.containsKey(slice[0]) && results.containsKey(slice[0]))
+        next.getJsonObject(slice[0]).put("start-index", results.getJsonObject(slice[0]).getInteger("NextIndex"));
+    }
+    return next;
+  }
+
+  private static JsonArray records(String kind, int start, int end) {
+    JsonArray ret = new JsonArray();
+    for (int i = start; i < end; i++)
+      ret.add(new JsonObject().put("kind", kind).put("index", i).put("value", 100000.0 + i));
+    return ret;
+  }
+
+  private static JsonObject error(String reason) {
+    return new JsonObject().put("status", 1).put("reason", reason);
+  }
+
+  private class SimulatedRun {
+
+    private final long iStartMillis = System.currentTimeMillis();
+
+    private volatile double iWorkDoneMillis = 0;
+
+    private volatile boolean iCanceled = false;
+
+    private volatile long iExitMillis = 0;
+
+    void work(double millis) {
+      if (isRunning()) {
+        iWorkDoneMillis = Math.min(iRunMillis, iWorkDoneMillis + millis);
+        if (!isRunning())
+          iExitMillis = System.currentTimeMillis();
+      }
+    }
+
+    void cancel() {
+      if (isRunning()) {
+        iCanceled = true;
+        iExitMillis = System.currentTimeMillis();
+      }
+    }
+
+    long executionMillis() {
+      long exitMillis = iExitMillis;
+      return (exitMillis == 0 ? System.currentTimeMillis() : exitMillis) - iStartMillis;
+    }
+
+    boolean isRunning() {
+      return !iCanceled && iWorkDoneMillis < iRunMillis;
+    }
+
+    int produced() {
+      return (int) (iWorkDoneMillis * iFeedsPerSecond / 1000);
+    }
+
+    String status() {
+      if (iCanceled)
+        return "CancelExit";
+      return iWorkDoneMillis < iRunMillis ? "Running" : "NormalExit";
+    }
+  }
+
+  private static void printUsage() {
+    System.out.println("Usage: [-p port] [-path /backend-restful] [-d runMillis] [-f feedsPerSecond] [-c capacity] "
+            + "[-t tokenTtlMillis]");
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int port = 8080;
+    String path = "/backend-restful";
+    long runMillis = 10000;
+    int feedsPerSecond = 20;
+    int capacity = 50;
+    long tokenTtlMillis = 600000;
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-h") || i + 1 >= args.length) {
+        printUsage();
+        return;
+      }
+
+      switch (args[i]) {
+        case "-p":
+          port = Integer.parseInt(args[++i]);
+          break;
+        case "-path":
+          path = args[++i];
+          break;
+        case "-d":
+          runMillis = Long.parseLong(args[++i]);
+          break;
+        case "-f":
+          feedsPerSecond = Integer.parseInt(args[++i]);
+          break;
+        case "-c":
+          capacity = Integer.parseInt(args[++i]);
+          break;
+        case "-t":
+          tokenTtlMillis = Long.parseLong(args[++i]);
+          break;
+        default:
+          printUsage();
+          return;
+      }
+    }
+
+    String url = "http://localhost:" + port + path;
+    create(port, path, runMillis, feedsPerSecond, capacity, tokenTtlMillis)
+            .start(() -> System.out.println("Stand-in facade started, use url " + url));
+    new CountDownLatch(1).await();
+  }
+}
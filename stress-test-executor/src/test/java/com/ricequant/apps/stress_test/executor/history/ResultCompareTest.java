@@ -0,0 +1,54 @@
+package com.ricequant.apps.stress_test.executor.history;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks which changes between two sessions {@link ResultCompare} reports as regressions
+ *
+ * @author chenfeng
+ */
+public class ResultCompareTest {
+
+  @Test
+  public void higherCapacityWithSlowerRunsIsNoRegression() {
+    assertEquals(0, compare(scenario(1, 40, 10000), scenario(2, 60, 15000)));
+  }
+
+  @Test
+  public void slowerRunsAtSameCapacityRegress() {
+    assertEquals(1, compare(scenario(1, 40, 10000), scenario(2, 41, 15000)));
+  }
+
+  @Test
+  public void lowerCapacityRegresses() {
+    assertEquals(1, compare(scenario(1, 40, 10000), scenario(2, 30, 8000)));
+  }
+
+  @Test
+  public void changesWithinTolerancesAreNoRegression() {
+    assertEquals(0, compare(scenario(1, 40, 10000), scenario(2, 39, 10500)));
+  }
+
+  private static int compare(JsonObject before, JsonObject after) {
+    List<ResultCompare.Session> sessions = ResultCompare.sessions(Arrays.asList(before, after));
+    return ResultCompare.compare(sessions.get(0), sessions.get(1), 0.05, 0.1,
+            new PrintStream(new ByteArrayOutputStream()));
+  }
+
+  // a scenario record whose best pass ran every percentile at the same running time
+  private static JsonObject scenario(long session, double capacity, double runningMillis) {
+    JsonObject latency = new JsonObject().put("count", 100L);
+    for (String key : new String[]{"mean", "p50", "p90", "p99", "p999", "max"})
+      latency.put(key, runningMillis);
+    return new JsonObject().put("kind", ResultStore.cKindScenario).put("session", session).put("scenario", "s")
+            .put("mode", "concurrency").put("capacity", capacity).put("latency", latency);
+  }
+}
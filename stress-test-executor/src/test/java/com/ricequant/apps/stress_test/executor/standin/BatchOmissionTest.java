@@ -0,0 +1,82 @@
+package com.ricequant.apps.stress_test.executor.standin;
+
+import com.ricequant.apps.stress_test.client.FacadeClient;
+import com.ricequant.apps.stress_test.client.FacadeClientOptions;
+import com.ricequant.apps.stress_test.client.PlayParams;
+import com.ricequant.apps.stress_test.client.RunTiming;
+import com.ricequant.apps.stress_test.client.StrategyPlayer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks against the {@link StandInFacadeServer} that a run missing from a pull-batch response is pulled again with the
+ * next batch and runs to its end, and that it is only abandoned once it has been missing from as many batches as the
+ * retry policy allows.
+ *
+ * @author chenfeng
+ */
+public class BatchOmissionTest {
+
+  private static final String cPath = "/backend-restful";
+
+  private StandInFacadeServer iServer;
+
+  private FacadeClient iClient;
+
+  @After
+  public void tearDown() {
+    if (iClient != null)
+      iClient.shutdown();
+    if (iServer != null)
+      iServer.stop();
+  }
+
+  @Test
+  public void runMissingOnceSurvives() throws Exception {
+    RunTiming timing = playWithOmissions(1, 5);
+
+    assertEquals("NormalExit", timing.status());
+    assertTrue(iServer.received("pull-batch") >= 2);
+  }
+
+  @Test
+  public void runMissingFromEveryAttemptIsAbandoned() throws Exception {
+    RunTiming timing = playWithOmissions(100, 3);
+
+    assertEquals("ClientAbortExit", timing.status());
+    assertEquals(3, iServer.received("pull-batch"));
+  }
+
+  private RunTiming playWithOmissions(int omissions, int maxAttempts) throws Exception {
+    int port = freePort();
+    iServer = StandInFacadeServer.create(port, cPath, 1000, 20, 10, 600000);
+    CountDownLatch listening = new CountDownLatch(1);
+    iServer.start(listening::countDown);
+    assertTrue(listening.await(10, TimeUnit.SECONDS));
+    iServer.omitFromBatches(omissions);
+
+    iClient = FacadeClient.create(new URL("http://localhost:" + port + cPath), "tester", "secret",
+            new FacadeClientOptions().batchPullWindowMillis(20).minPollDelayMillis(100).maxPollDelayMillis(200)
+                    .pollJitter(0).maxAttempts(maxAttempts));
+
+    CompletableFuture<RunTiming> result = new CompletableFuture<>();
+    StrategyPlayer.create(new PlayParams(), iClient).play(20000, result::complete);
+    return result.get(20, TimeUnit.SECONDS);
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
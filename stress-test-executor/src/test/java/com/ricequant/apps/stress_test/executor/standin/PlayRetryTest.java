@@ -0,0 +1,97 @@
+package com.ricequant.apps.stress_test.executor.standin;
+
+import com.ricequant.apps.stress_test.client.FacadeClient;
+import com.ricequant.apps.stress_test.client.FacadeClientOptions;
+import com.ricequant.apps.stress_test.client.PlayParams;
+import com.ricequant.apps.stress_test.client.PlayResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks against the {@link StandInFacadeServer} that a play is retried when it never reached the facade, and given up
+ * on without a retry once the facade may have started a run for it.
+ *
+ * @author chenfeng
+ */
+public class PlayRetryTest {
+
+  private static final String cPath = "/backend-restful";
+
+  private StandInFacadeServer iServer;
+
+  private FacadeClient iClient;
+
+  @After
+  public void tearDown() {
+    if (iClient != null)
+      iClient.shutdown();
+    if (iServer != null)
+      iServer.stop();
+  }
+
+  @Test
+  public void refusedConnectionIsRetried() throws Exception {
+    int port = freePort();
+    iClient = FacadeClient.create(new URL("http://localhost:" + port + cPath), "tester", "secret",
+            new FacadeClientOptions().maxAttempts(20).retryMinDelayMillis(200).retryMaxDelayMillis(200)
+                    .breakerFailureThreshold(0));
+
+    CompletableFuture<PlayResponse> response = new CompletableFuture<>();
+    iClient.play(new PlayParams(), response::complete);
+
+    // nothing listens yet, so the first attempts are refused
+    long deadline = System.currentTimeMillis() + 10000;
+    while (iClient.metrics().command("play").getFailures() == 0 && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    assertTrue(iClient.metrics().command("play").getFailures() > 0);
+
+    iServer = start(port);
+    PlayResponse ret = response.get(10, TimeUnit.SECONDS);
+    assertTrue(ret.reason(), ret.isSuccess());
+    assertEquals(1, iServer.received("play"));
+    assertTrue(iClient.metrics().command("play").getRetries() > 0);
+    assertEquals(0, iClient.metrics().command("play").getGiveUps());
+  }
+
+  @Test
+  public void timedOutPlayIsNotRetried() throws Exception {
+    int port = freePort();
+    iServer = start(port);
+    iServer.withholdResponses("play", 1);
+    iClient = FacadeClient.create(new URL("http://localhost:" + port + cPath), "tester", "secret",
+            new FacadeClientOptions().maxAttempts(5).requestTimeoutMillis(500).retryMinDelayMillis(100));
+
+    CompletableFuture<PlayResponse> response = new CompletableFuture<>();
+    iClient.play(new PlayParams(), response::complete);
+
+    PlayResponse ret = response.get(10, TimeUnit.SECONDS);
+    assertTrue(ret.isClientFailure());
+    assertEquals(1, iServer.received("play"));
+    assertEquals(0, iClient.metrics().command("play").getRetries());
+    assertEquals(1, iClient.metrics().command("play").getGiveUps());
+  }
+
+  private static StandInFacadeServer start(int port) throws InterruptedException {
+    StandInFacadeServer server = StandInFacadeServer.create(port, cPath, 60000, 20, 10, 600000);
+    CountDownLatch listening = new CountDownLatch(1);
+    server.start(listening::countDown);
+    assertTrue(listening.await(10, TimeUnit.SECONDS));
+    return server;
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}